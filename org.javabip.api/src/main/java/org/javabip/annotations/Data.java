@@ -62,4 +62,13 @@ public @interface Data {
 	 */
 	String[] ports() default {};
 
+	/**
+	 * It tells whether the value of the data may be kept by the executor until the component executes its next
+	 * transition. The default value is true. Data whose value changes without the component executing a transition,
+	 * for example data read from the environment, should not be cached.
+	 * 
+	 * @return true, if the value of the data can be cached between transitions.
+	 */
+	boolean cached() default true;
+
 }
@@ -37,4 +37,12 @@ public @interface Guard {
 	 * @return the name of the guard.
 	 */
 	String name();
+
+	/**
+	 * It tells whether the guard is free of side effects and can be evaluated concurrently with itself. The executor
+	 * may then split large tables of data values across several threads when checking the enabledness of a port.
+	 * 
+	 * @return true, if the guard is pure.
+	 */
+	boolean pure() default false;
 }
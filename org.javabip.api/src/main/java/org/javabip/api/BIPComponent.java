@@ -20,6 +20,7 @@
 
 package org.javabip.api;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +40,17 @@ public interface BIPComponent extends Identifiable, BIPActor {
 	 */
 	void execute(String portID);
 
+	/**
+	 * It enforces the execution of a given enforceable transition requiring data, providing all the data of the
+	 * transition at once. It is equivalent to setting each data and then executing the transition.
+	 * 
+	 * @param portID
+	 *            the port id of the transition being enforced.
+	 * @param data
+	 *            the values of the data required by the transition, indexed by the data name.
+	 */
+	void execute(String portID, Map<String, ?> data);
+
 	/**
 	 * It provides data specified by the name parameter casted to the type provided by clazz parameter.
 	 * 
@@ -52,6 +64,42 @@ public interface BIPComponent extends Identifiable, BIPActor {
 	 */
 	public <T> T getData(String name, Class<T> clazz);
 
+	/**
+	 * It provides several data at once, without any cast.
+	 * 
+	 * @param names
+	 *            the names of the data being requested.
+	 * @return the values of the data, indexed by the data name.
+	 */
+	public Map<String, Object> getData(Collection<String> names);
+
+	/**
+	 * It provides data of a primitive or wrapper type convertible to int, without boxing it.
+	 * 
+	 * @param name
+	 *            the name of the data being requested.
+	 * @return the value of the data.
+	 */
+	public int getIntData(String name);
+
+	/**
+	 * It provides data of a primitive or wrapper type convertible to long, without boxing it.
+	 * 
+	 * @param name
+	 *            the name of the data being requested.
+	 * @return the value of the data.
+	 */
+	public long getLongData(String name);
+
+	/**
+	 * It provides data of a primitive or wrapper type convertible to double, without boxing it.
+	 * 
+	 * @param name
+	 *            the name of the data being requested.
+	 * @return the value of the data.
+	 */
+	public double getDoubleData(String name);
+
 	/**
 	 * It makes it possible to query BIP Component if a given port is enabled for given data valuations.
 	 * 
@@ -73,4 +121,13 @@ public interface BIPComponent extends Identifiable, BIPActor {
 	 */
 	public void setData(String dataName, Object value);
 
+	/**
+	 * Provides several data at once to a BIP component for a given data dependent transition that will be soon
+	 * enforced.
+	 * 
+	 * @param data
+	 *            the values of the data, indexed by the data name.
+	 */
+	public void setData(Map<String, ?> data);
+
 }
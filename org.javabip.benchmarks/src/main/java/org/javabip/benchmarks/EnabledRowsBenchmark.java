@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.annotations.ComponentType;
+import org.javabip.annotations.Data;
+import org.javabip.annotations.Guard;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.api.Port;
+import org.javabip.api.PortType;
+import org.javabip.executor.ExecutorKernel;
+import org.javabip.spec.MemoryMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the enabledness check of a transition for a table of data values, as the engine asks for it. The pure
+ * benchmarks compare the evaluation on one thread with the evaluation split across the threads of the pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnabledRowsBenchmark {
+
+	/**
+	 * A component with a pure guard on data, which may be evaluated in parallel.
+	 */
+	@Ports({ @org.javabip.annotations.Port(name = "p", type = PortType.enforceable) })
+	@ComponentType(initial = "s", name = "org.javabip.benchmarks.Filter")
+	public static class Filter {
+
+		@Transition(name = "p", source = "s", target = "s", guard = "fits & open")
+		public void p(@Data(name = "x") Integer x) {
+		}
+
+		@Guard(name = "fits", pure = true)
+		public boolean fits(@Data(name = "x") Integer x) {
+			return Integer.bitCount(x) % 2 == 0;
+		}
+
+		@Guard(name = "open")
+		public boolean open() {
+			return true;
+		}
+
+	}
+
+	@Param({ "1", "64", "4096" })
+	public int rows;
+
+	private ExecutorKernel memoryMonitor;
+	private Port add;
+	private List<Map<String, Object>> memoryRows;
+
+	private ExecutorKernel filter;
+	private Port p;
+	private List<Map<String, Object>> filterRows;
+
+	@Setup
+	public void setUp() {
+		memoryMonitor = new ExecutorKernel(new MemoryMonitor(rows * 10), "memoryMonitor", true);
+		add = port(memoryMonitor, "add");
+		memoryRows = table("memoryUsage");
+
+		filter = new ExecutorKernel(new Filter(), "filter", true);
+		p = port(filter, "p");
+		filterRows = table("x");
+	}
+
+	private static Port port(ExecutorKernel kernel, String name) {
+		for (Port port : kernel.getBehavior().getEnforceablePorts()) {
+			if (port.getId().equals(name)) {
+				return port;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private List<Map<String, Object>> table(String dataName) {
+		List<Map<String, Object>> table = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < rows; i++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put(dataName, i);
+			table.add(row);
+		}
+		return table;
+	}
+
+	@Benchmark
+	public List<Boolean> checkEnabledness() {
+		return memoryMonitor.checkEnabledness(add, memoryRows);
+	}
+
+	@Benchmark
+	public BitSet enabledRows() {
+		return memoryMonitor.enabledRows(add, memoryRows);
+	}
+
+	@Benchmark
+	public BitSet pureParallel() {
+		return filter.enabledRows(p, filterRows);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dorg.javabip.executor.parallelGuardThreshold=0")
+	public BitSet pureSequential() {
+		return filter.enabledRows(p, filterRows);
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.engine.reference.BddEngine;
+import org.javabip.engine.reference.ReferenceEngine;
+import org.javabip.spec.diningphilosophers.DiningPhilosophersGlueBuilder;
+import org.javabip.spec.diningphilosophers.Fork;
+import org.javabip.spec.diningphilosophers.Philosophers;
+import org.javabip.spec.hanoi.HanoiGlueBuilder;
+import org.javabip.spec.hanoi.HanoiMonitor;
+import org.javabip.spec.hanoi.LeftHanoiPeg;
+import org.javabip.spec.hanoi.MiddleHanoiPeg;
+import org.javabip.spec.hanoi.RightHanoiPeg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cycles per second of the reference engine, each cycle choosing an interaction and executing it by the
+ * components. The interactions are either enumerated or found with binary decision diagrams. The dining philosophers
+ * never stop, whereas the towers of Hanoi are solved from the start for each invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@org.openjdk.jmh.annotations.Fork(1)
+public class EngineCycleBenchmark {
+
+	/**
+	 * The number of disks of the towers of Hanoi, the most the pegs support.
+	 */
+	private static final int DISKS = 8;
+
+	/**
+	 * The number of moves solving the towers of Hanoi, one cycle per move.
+	 */
+	private static final int MOVES = 255;
+
+	/**
+	 * The number of cycles of the dining philosophers awaited by each invocation.
+	 */
+	private static final int CYCLES = 100;
+
+	@State(Scope.Benchmark)
+	public static class DiningPhilosophers {
+
+		@Param({ "3", "10", "50" })
+		public int size;
+
+		@Param({ "explicit", "bdd" })
+		public String search;
+
+		ReferenceEngine engine;
+
+		@Setup
+		public void setUp() {
+			BIPGlue glue = new DiningPhilosophersGlueBuilder().build();
+			engine = newEngine(search);
+			engine.specifyGlue(glue);
+			for (int i = 0; i < size; i++) {
+				engine.register(new Fork(i), "fork" + i, true);
+				engine.register(new Philosophers(i, (i + 1) % size, true), "philosopher" + i, true);
+			}
+			engine.start();
+			engine.execute();
+		}
+
+		@TearDown
+		public void tearDown() {
+			engine.stop();
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class Hanoi {
+
+		@Param({ "explicit", "bdd" })
+		public String search;
+
+		ReferenceEngine engine;
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			BIPGlue glue = new HanoiGlueBuilder(DISKS).build();
+			engine = newEngine(search);
+			engine.specifyGlue(glue);
+			engine.register(new HanoiMonitor(DISKS), "monitor", false);
+			engine.register(new LeftHanoiPeg(DISKS), "left", false);
+			engine.register(new MiddleHanoiPeg(DISKS), "middle", false);
+			engine.register(new RightHanoiPeg(DISKS), "right", false);
+			engine.initialize();
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			engine.stop();
+		}
+
+	}
+
+	private static ReferenceEngine newEngine(String search) {
+		return search.equals("bdd") ? new BddEngine() : new ReferenceEngine();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CYCLES)
+	public long diningPhilosophers(DiningPhilosophers philosophers) {
+		return await(philosophers.engine, philosophers.engine.getNumberOfCycles() + CYCLES);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MOVES)
+	public long hanoi(Hanoi hanoi) {
+		hanoi.engine.start();
+		hanoi.engine.execute();
+		return await(hanoi.engine, MOVES);
+	}
+
+	/*
+	 * The benchmark thread parks while waiting, not to take the processors from the engine and the components.
+	 */
+	private static long await(ReferenceEngine engine, long cycles) {
+		long done;
+		while ((done = engine.getNumberOfCycles()) < cycles) {
+			LockSupport.parkNanos(10000);
+		}
+		return done;
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.executor.ExecutorKernel;
+import org.javabip.executor.MailboxExecutor;
+import org.javabip.executor.TunellingExecutorHandler;
+import org.javabip.spec.ComponentAWithEnvData;
+import org.javabip.spec.ComponentAWithEnvDataInterface;
+import org.javabip.spec.ComponentB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways of calling an executor: directly, through the mailbox of MailboxExecutor, which is drained by
+ * another thread, and through the executor proxy of the component. The proxy is either the one generated at compile
+ * time by the BIP annotation processor, the one created by TunellingExecutorHandler with java.lang.reflect.Proxy, or
+ * the original reflective proxy, which looked up every call.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecutorProxyBenchmark {
+
+	private ExecutorKernel kernel;
+	private MailboxExecutor mailbox;
+	private OrchestratedExecutor generated;
+	private OrchestratedExecutor reflective;
+	private OrchestratedExecutor original;
+	private ComponentAWithEnvDataInterface generatedSpontaneous;
+	private ComponentAWithEnvDataInterface reflectiveSpontaneous;
+	private ComponentAWithEnvDataInterface originalSpontaneous;
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		kernel = new ExecutorKernel(new ComponentB(), "b", true);
+		mailbox = new MailboxExecutor(new ExecutorKernel(new ComponentB(), "b", true));
+		ClassLoader classLoader = getClass().getClassLoader();
+
+		generated = (OrchestratedExecutor) TunellingExecutorHandler.newProxyInstance(classLoader, kernel,
+				new ComponentAWithEnvData(100));
+		reflective = (OrchestratedExecutor) TunellingExecutorHandler.newReflectiveProxyInstance(classLoader, kernel,
+				new ComponentAWithEnvData(100));
+		original = (OrchestratedExecutor) OriginalTunellingHandler.newProxyInstance(classLoader, kernel,
+				new ComponentAWithEnvData(100));
+		if (Proxy.isProxyClass(generated.getClass())) {
+			throw new IllegalStateException("The executor proxy of ComponentAWithEnvData was not generated.");
+		}
+
+		generatedSpontaneous = (ComponentAWithEnvDataInterface) TunellingExecutorHandler.newProxyInstance(
+				classLoader, Stubs.noopExecutor(), new ComponentAWithEnvData(100));
+		reflectiveSpontaneous = (ComponentAWithEnvDataInterface) TunellingExecutorHandler.newReflectiveProxyInstance(
+				classLoader, Stubs.noopExecutor(), new ComponentAWithEnvData(100));
+		originalSpontaneous = (ComponentAWithEnvDataInterface) OriginalTunellingHandler.newProxyInstance(
+				classLoader, Stubs.noopExecutor(), new ComponentAWithEnvData(100));
+	}
+
+	@Benchmark
+	public Integer direct() {
+		return kernel.getData("memoryY", Integer.class);
+	}
+
+	@Benchmark
+	public Integer mailbox() {
+		return mailbox.getData("memoryY", Integer.class);
+	}
+
+	@Benchmark
+	public Integer generated() {
+		return generated.getData("memoryY", Integer.class);
+	}
+
+	@Benchmark
+	public Integer reflective() {
+		return reflective.getData("memoryY", Integer.class);
+	}
+
+	@Benchmark
+	public Integer original() {
+		return original.getData("memoryY", Integer.class);
+	}
+
+	@Benchmark
+	public int directPrimitive() {
+		return kernel.getIntData("memoryY");
+	}
+
+	/*
+	 * The call of the interface method is turned into an inform of the executor.
+	 */
+	@Benchmark
+	public void generatedSpontaneous() {
+		generatedSpontaneous.spontaneousOfA(7);
+	}
+
+	@Benchmark
+	public void reflectiveSpontaneous() {
+		reflectiveSpontaneous.spontaneousOfA(7);
+	}
+
+	@Benchmark
+	public void originalSpontaneous() {
+		originalSpontaneous.spontaneousOfA(7);
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.executor.ExecutorKernel;
+import org.javabip.spec.PResizableBehaviorComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the execution cycle of an executor, ExecutorKernel.step followed by the execution of the transition chosen
+ * by the engine. The component has as many states as its size, the enforceable transition p leads from a state to the
+ * next one and the spontaneous transition sr back to the previous one.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecutorStepBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int size;
+
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	private PResizableBehaviorComponent component;
+	private ExecutorKernel kernel;
+	private Stubs.CountingEngine engine;
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		component = new PResizableBehaviorComponent(false, size);
+		kernel = new ExecutorKernel(component, "p", false);
+		kernel.setLazyGuardEvaluation(lazy);
+		kernel.setProxy(Stubs.noopExecutor());
+		engine = new Stubs.CountingEngine();
+		kernel.register(engine);
+	}
+
+	/*
+	 * When the executor informs the engine, p is executed. In the last state, where p is not possible, the executor
+	 * waits for a spontaneous event, which is given to it.
+	 */
+	@Benchmark
+	public int cycle() {
+		long informs = engine.informs;
+		kernel.step();
+		if (engine.informs != informs) {
+			kernel.execute("p");
+		} else {
+			kernel.inform("sr");
+		}
+		return component.pCounter;
+	}
+
+	@Benchmark
+	public int step() {
+		kernel.step();
+		return component.pCounter;
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.glue.CompiledGlue;
+import org.javabip.glue.GlueBinary;
+import org.javabip.glue.GlueBuilder;
+import org.javabip.glue.GlueXml;
+import org.javabip.spec.hanoi.HanoiGlueBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of the glue of the Hanoi towers, built in Java, read from its XML form with JAXB and with StAX
+ * and read from its binary form, as well as its compilation and the check of an interaction against the compiled glue. The glue grows with the number of pieces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GlueBenchmark {
+
+	@Param({ "1", "3", "10" })
+	public int size;
+
+	private byte[] xml;
+
+	private byte[] binary;
+
+	private BIPGlue glue;
+
+	private CompiledGlue compiled;
+
+	private BitSet interaction;
+
+	@Setup
+	public void setUp() {
+		glue = new HanoiGlueBuilder(size).build();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		glue.toXML(output);
+		xml = output.toByteArray();
+		output = new ByteArrayOutputStream();
+		GlueBinary.toBinary(glue, output);
+		binary = output.toByteArray();
+		compiled = CompiledGlue.compile(glue);
+		interaction = compiled.getInteractions(compiled.getNoOfPorts() - 1).get(0);
+	}
+
+	@Benchmark
+	public BIPGlue build() {
+		return new HanoiGlueBuilder(size).build();
+	}
+
+	@Benchmark
+	public BIPGlue fromXML() {
+		return GlueBuilder.fromXML(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public BIPGlue fromXMLStax() {
+		return GlueXml.fromXML(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public BIPGlue fromBinary() {
+		return GlueBinary.fromBinary(ByteBuffer.wrap(binary));
+	}
+
+	@Benchmark
+	public CompiledGlue compile() {
+		return CompiledGlue.compile(glue);
+	}
+
+	@Benchmark
+	public boolean isInteraction() {
+		return compiled.isInteraction(interaction);
+	}
+
+}
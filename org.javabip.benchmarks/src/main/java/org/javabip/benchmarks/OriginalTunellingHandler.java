@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.javabip.annotations.Data;
+import org.javabip.annotations.Port;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.annotations.Transitions;
+import org.javabip.api.BIPActor;
+import org.javabip.api.BIPComponent;
+import org.javabip.api.Executor;
+import org.javabip.api.Identifiable;
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.api.PortType;
+
+/**
+ * The executor proxy as TunellingExecutorHandler created it before its calls were resolved once into a dispatch table
+ * and before the proxies were generated at compile time, kept to compare them. Each call looks up the spontaneous
+ * ports with a wrapper of the method and is carried out with Method.invoke.
+ */
+final class OriginalTunellingHandler implements InvocationHandler {
+
+	private MethodWithDifferentEquals globalWrapper = new MethodWithDifferentEquals(null);
+
+	static class MethodWithDifferentEquals {
+
+		public Method method;
+
+		public MethodWithDifferentEquals(Method method) {
+			this.method = method;
+		}
+
+		public boolean equals(Object obj) {
+			if (obj != null && obj instanceof MethodWithDifferentEquals) {
+				Method other = ((MethodWithDifferentEquals) obj).method;
+				if (method.getName().equals(other.getName())) {
+					if (!method.getReturnType().equals(other.getReturnType()))
+						return false;
+					Class<?>[] params1 = method.getParameterTypes();
+					Class<?>[] params2 = other.getParameterTypes();
+					if (params1.length == params2.length) {
+						for (int i = 0; i < params1.length; i++) {
+							if (params1[i] != params2[i])
+								return false;
+						}
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		public int hashCode() {
+			return method.getName().hashCode();
+		}
+
+	}
+
+	private OrchestratedExecutor internalExecutor;
+	private Object bipSpec;
+
+	private HashMap<MethodWithDifferentEquals, String> tunellingPortName;
+	private HashMap<MethodWithDifferentEquals, ArrayList<String>> tunellingArgsNames;
+
+	private Method informNoParameters;
+	private Method informWithData;
+
+	OriginalTunellingHandler(OrchestratedExecutor executor, Object bipSpec) throws NoSuchMethodException {
+		this.internalExecutor = executor;
+		this.bipSpec = bipSpec;
+		this.tunellingPortName = new HashMap<MethodWithDifferentEquals, String>();
+		this.tunellingArgsNames = new HashMap<MethodWithDifferentEquals, ArrayList<String>>();
+		this.informNoParameters = BIPActor.class.getDeclaredMethod("inform", String.class);
+		this.informWithData = BIPActor.class.getDeclaredMethod("inform", String.class, Map.class);
+
+		ArrayList<String> namesOfSpontaneousPorts = new ArrayList<String>();
+		for (Port port : bipSpec.getClass().getAnnotation(Ports.class).value()) {
+			if (port.type().equals(PortType.spontaneous)) {
+				namesOfSpontaneousPorts.add(port.name());
+			}
+		}
+
+		for (Method method : bipSpec.getClass().getMethods()) {
+			for (Annotation annotation : method.getAnnotations()) {
+				if (annotation instanceof Transition) {
+					parseTransition(method, (Transition) annotation, namesOfSpontaneousPorts);
+				} else if (annotation instanceof Transitions) {
+					for (Transition transition : ((Transitions) annotation).value()) {
+						parseTransition(method, transition, namesOfSpontaneousPorts);
+					}
+				}
+			}
+		}
+	}
+
+	private void parseTransition(Method method, Transition transition, ArrayList<String> namesOfSpontaneousPorts) {
+		if (!namesOfSpontaneousPorts.contains(transition.name()))
+			return;
+
+		MethodWithDifferentEquals wrapper = new MethodWithDifferentEquals(method);
+		tunellingPortName.put(wrapper, transition.name());
+
+		ArrayList<String> dataNames = new ArrayList<String>();
+		tunellingArgsNames.put(wrapper, dataNames);
+		Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+		for (int i = 0; i < parameterAnnotations.length; i++) {
+			String name = method.getName() + "." + i;
+			for (Annotation annotation : parameterAnnotations[i]) {
+				if (annotation instanceof Data) {
+					name = ((Data) annotation).name();
+				}
+			}
+			dataNames.add(name);
+		}
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		Class<?> declaredClass = method.getDeclaringClass();
+
+		if (OrchestratedExecutor.class.isAssignableFrom(declaredClass)
+				|| Executor.class.isAssignableFrom(declaredClass) || BIPComponent.class.isAssignableFrom(declaredClass)
+				|| Identifiable.class.isAssignableFrom(declaredClass) || BIPActor.class.isAssignableFrom(declaredClass)) {
+			return method.invoke(internalExecutor, args);
+		}
+
+		globalWrapper.method = method;
+		if (tunellingPortName.containsKey(globalWrapper)) {
+			if (args == null || args.length == 0) {
+				return informNoParameters.invoke(internalExecutor, tunellingPortName.get(globalWrapper));
+			}
+			HashMap<String, Object> map = new HashMap<String, Object>();
+			ArrayList<String> argsNames = tunellingArgsNames.get(globalWrapper);
+			for (int i = 0; i < args.length; i++) {
+				map.put(argsNames.get(i), args[i]);
+			}
+			return informWithData.invoke(internalExecutor, tunellingPortName.get(globalWrapper), map);
+		}
+		return method.invoke(bipSpec, args);
+
+	}
+
+	static Object newProxyInstance(ClassLoader classLoader, OrchestratedExecutor executor, Object bipSpec)
+			throws NoSuchMethodException {
+		Class<?>[] interfaces = bipSpec.getClass().getInterfaces();
+		Class<?>[] completeInterfaces = new Class<?>[interfaces.length + 1];
+		System.arraycopy(interfaces, 0, completeInterfaces, 0, interfaces.length);
+		completeInterfaces[interfaces.length] = OrchestratedExecutor.class;
+		return Proxy.newProxyInstance(classLoader, completeInterfaces, new OriginalTunellingHandler(executor, bipSpec));
+	}
+
+}
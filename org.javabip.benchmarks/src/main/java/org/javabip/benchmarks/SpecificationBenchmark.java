@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.executor.ExecutorKernel;
+import org.javabip.spec.MemoryMonitor;
+import org.javabip.spec.PResizableBehaviorComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of executors, that is the parsing of the specification of the components. The first
+ * executor of an annotated class parses the annotations and the guard expressions, the next ones reuse the template
+ * of the class, so the cold creation is measured in fresh JVMs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpecificationBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int size;
+
+	@Benchmark
+	public ExecutorKernel annotated() {
+		return new ExecutorKernel(new MemoryMonitor(100), "memoryMonitor", true);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public ExecutorKernel annotatedCold() {
+		return new ExecutorKernel(new MemoryMonitor(100), "memoryMonitor", true);
+	}
+
+	@Benchmark
+	public ExecutorKernel behaviourBuilder() throws NoSuchMethodException {
+		return new ExecutorKernel(new PResizableBehaviorComponent(false, size), "p", false);
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+
+import org.javabip.api.BIPActor;
+import org.javabip.api.BIPComponent;
+import org.javabip.api.BIPEngine;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.api.Port;
+
+/**
+ * The engine and the executor proxies the benchmarked executors talk to, so that only the executors are measured.
+ */
+final class Stubs {
+
+	private Stubs() {
+	}
+
+	/**
+	 * @return an executor which does nothing, its methods return null, false or 0.
+	 */
+	static OrchestratedExecutor noopExecutor() {
+		return (OrchestratedExecutor) Proxy.newProxyInstance(Stubs.class.getClassLoader(),
+				new Class<?>[] { OrchestratedExecutor.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						Class<?> type = method.getReturnType();
+						if (type == boolean.class) {
+							return false;
+						}
+						if (type.isPrimitive() && type != void.class) {
+							return 0;
+						}
+						return null;
+					}
+				});
+	}
+
+	/**
+	 * An engine which counts the informs it receives.
+	 */
+	static class CountingEngine implements BIPEngine {
+
+		long informs;
+
+		public void specifyGlue(BIPGlue glue) {
+		}
+
+		public BIPActor register(Object component, String id, boolean useAnnotations) {
+			return null;
+		}
+
+		public void inform(BIPComponent component, String currentState, Set<Port> disabledPorts) {
+			informs++;
+		}
+
+		public void informSpecific(BIPComponent decidingComponent, Port decidingPort,
+				Map<BIPComponent, Set<Port>> disabledCombinations) {
+		}
+
+		public void start() {
+		}
+
+		public void stop() {
+		}
+
+		public void execute() {
+		}
+
+		public void initialize() {
+		}
+
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.javabip.api.Guard;
+import org.javabip.executor.guardparser.boolLexer;
+import org.javabip.executor.guardparser.boolParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of guard expressions, with the hand-written parser, with the ANTLR parser and through the cache
+ * of parsed expressions, and their evaluation, by walking the expression tree and with the compiled guard. The
+ * benchmark is in the executor package since the parser and the compiled guard are internal to the executor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GuardBenchmark {
+
+	/**
+	 * The number of guards in the expression.
+	 */
+	@Param({ "1", "4", "16" })
+	public int guards;
+
+	private String expression;
+	private GuardTreeNode tree;
+	private Map<String, Boolean> values;
+	private CompiledGuard compiled;
+	private GuardValuation valuation;
+
+	/*
+	 * The expression alternates conjunctions and disjunctions, one guard in three is negated and the expression is
+	 * parenthesized every four guards.
+	 */
+	@Setup
+	public void setUp() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < guards; i++) {
+			if (i > 0) {
+				builder.append(i % 2 == 0 ? " & " : " | ");
+			}
+			if (i % 4 == 0 && i + 1 < guards) {
+				builder.append('(');
+			}
+			builder.append(i % 3 == 2 ? "!g" : "g").append(i);
+			if (i % 4 == 1) {
+				builder.append(')');
+			}
+		}
+		expression = builder.toString();
+		tree = GuardExpressionParser.parse(expression);
+
+		Random random = new Random(42);
+		values = new HashMap<String, Boolean>();
+		Map<String, Integer> indices = new HashMap<String, Integer>();
+		valuation = new GuardValuation("benchmark", new Guard[guards], new MethodHandle[guards]);
+		for (int i = 0; i < guards; i++) {
+			boolean value = random.nextBoolean();
+			values.put("g" + i, value);
+			indices.put("g" + i, i);
+			valuation.set(i, value);
+		}
+		compiled = new CompiledGuard(tree, indices);
+	}
+
+	@Benchmark
+	public GuardTreeNode parseDescent() {
+		return GuardExpressionParser.parse(expression);
+	}
+
+	@Benchmark
+	public GuardTreeNode parseAntlr() {
+		boolLexer lexer = new boolLexer(new ANTLRInputStream(expression));
+		boolParser parser = new boolParser(new CommonTokenStream(lexer));
+		parser.setBuildParseTree(true);
+		parser.formula();
+		return parser.stack.pop();
+	}
+
+	@Benchmark
+	public GuardTreeNode parseCached() {
+		return GuardExpressionCache.parse(expression);
+	}
+
+	@Benchmark
+	public Boolean evaluateTree() {
+		return tree.evaluate(values);
+	}
+
+	@Benchmark
+	public boolean evaluateCompiled() {
+		return compiled.evaluate(valuation);
+	}
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.Arrays;
+
+/**
+ * A reduced ordered binary decision diagram package, with the operations needed by the symbolic engine. The nodes are
+ * kept in arrays and a BDD is the index of its root node, 0 and 1 being the terminal nodes.
+ * 
+ * The nodes which are not reachable from a referenced node are reclaimed by collect, which must only be called when
+ * every BDD still in use is referenced.
+ */
+final class Bdd {
+
+	static final int FALSE = 0;
+
+	static final int TRUE = 1;
+
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int NOT = 2;
+
+	private static final int CACHE_SIZE = 1 << 16;
+
+	private final int noOfVars;
+
+	private int[] var;
+	private int[] low;
+	private int[] high;
+	private int[] refs;
+
+	/**
+	 * The next node of the same bucket of the unique table, or the next free node.
+	 */
+	private int[] next;
+
+	private int[] buckets;
+
+	private int noOfNodes;
+
+	private int freeNodes = -1;
+
+	private int allocatedSinceCollect;
+
+	private final int[] cacheOp = new int[CACHE_SIZE];
+	private final int[] cacheLeft = new int[CACHE_SIZE];
+	private final int[] cacheRight = new int[CACHE_SIZE];
+	private final int[] cacheResult = new int[CACHE_SIZE];
+
+	Bdd(int noOfVars) {
+		this.noOfVars = noOfVars;
+		int capacity = 1024;
+		var = new int[capacity];
+		low = new int[capacity];
+		high = new int[capacity];
+		refs = new int[capacity];
+		next = new int[capacity];
+		buckets = new int[capacity];
+		Arrays.fill(buckets, -1);
+		Arrays.fill(cacheOp, -1);
+		// the terminal nodes are below every variable
+		var[FALSE] = noOfVars;
+		var[TRUE] = noOfVars;
+		noOfNodes = 2;
+	}
+
+	int noOfVars() {
+		return noOfVars;
+	}
+
+	int ithVar(int v) {
+		return mk(v, FALSE, TRUE);
+	}
+
+	int nithVar(int v) {
+		return mk(v, TRUE, FALSE);
+	}
+
+	int and(int a, int b) {
+		return apply(AND, a, b);
+	}
+
+	int or(int a, int b) {
+		return apply(OR, a, b);
+	}
+
+	int imp(int a, int b) {
+		return apply(OR, not(a), b);
+	}
+
+	int not(int a) {
+		if (a <= TRUE) {
+			return 1 - a;
+		}
+		int slot = slot(NOT, a, a);
+		if (cacheOp[slot] == NOT && cacheLeft[slot] == a) {
+			return cacheResult[slot];
+		}
+		int result = mk(var[a], not(low[a]), not(high[a]));
+		store(slot, NOT, a, a, result);
+		return result;
+	}
+
+	private int apply(int op, int a, int b) {
+		if (op == AND) {
+			if (a == FALSE || b == FALSE) {
+				return FALSE;
+			}
+			if (a == TRUE || a == b) {
+				return b;
+			}
+			if (b == TRUE) {
+				return a;
+			}
+		} else {
+			if (a == TRUE || b == TRUE) {
+				return TRUE;
+			}
+			if (a == FALSE || a == b) {
+				return b;
+			}
+			if (b == FALSE) {
+				return a;
+			}
+		}
+		if (a > b) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		int slot = slot(op, a, b);
+		if (cacheOp[slot] == op && cacheLeft[slot] == a && cacheRight[slot] == b) {
+			return cacheResult[slot];
+		}
+		int result;
+		if (var[a] == var[b]) {
+			result = mk(var[a], apply(op, low[a], low[b]), apply(op, high[a], high[b]));
+		} else if (var[a] < var[b]) {
+			result = mk(var[a], apply(op, low[a], b), apply(op, high[a], b));
+		} else {
+			result = mk(var[b], apply(op, a, low[b]), apply(op, a, high[b]));
+		}
+		store(slot, op, a, b, result);
+		return result;
+	}
+
+	/**
+	 * Provides the BDD true if at least k of the variables are true, the variables being in increasing order.
+	 */
+	int atLeast(int[] vars, int k) {
+		int[] row = new int[k + 1];
+		// row[j] is the BDD of the variables from i on having at least j of them true
+		Arrays.fill(row, FALSE);
+		row[0] = TRUE;
+		for (int i = vars.length - 1; i >= 0; i--) {
+			for (int j = k; j > 0; j--) {
+				row[j] = mk(vars[i], row[j], row[j - 1]);
+			}
+		}
+		return row[k];
+	}
+
+	/**
+	 * Provides the BDD true if at most one of the variables is true, the variables being in increasing order.
+	 */
+	int atMostOne(int[] vars) {
+		int none = TRUE;
+		int one = TRUE;
+		for (int i = vars.length - 1; i >= 0; i--) {
+			one = mk(vars[i], one, none);
+			none = mk(vars[i], none, FALSE);
+		}
+		return one;
+	}
+
+	/**
+	 * Provides a satisfying assignment of the BDD, the variables left free being false.
+	 * 
+	 * @return the assignment, null if the BDD is false.
+	 */
+	boolean[] satOne(int f) {
+		if (f == FALSE) {
+			return null;
+		}
+		boolean[] assignment = new boolean[noOfVars];
+		while (f != TRUE) {
+			if (low[f] != FALSE) {
+				f = low[f];
+			} else {
+				assignment[var[f]] = true;
+				f = high[f];
+			}
+		}
+		return assignment;
+	}
+
+	/**
+	 * Provides the BDD true for the assignment only.
+	 */
+	int cube(boolean[] assignment) {
+		int result = TRUE;
+		for (int v = noOfVars - 1; v >= 0; v--) {
+			result = assignment[v] ? mk(v, FALSE, result) : mk(v, result, FALSE);
+		}
+		return result;
+	}
+
+	int addRef(int f) {
+		refs[f]++;
+		return f;
+	}
+
+	void delRef(int f) {
+		refs[f]--;
+	}
+
+	// ********************************* Nodes ***************************************************
+
+	private int mk(int v, int l, int h) {
+		if (l == h) {
+			return l;
+		}
+		int bucket = hash(v, l, h) & (buckets.length - 1);
+		for (int node = buckets[bucket]; node >= 0; node = next[node]) {
+			if (var[node] == v && low[node] == l && high[node] == h) {
+				return node;
+			}
+		}
+		int node;
+		if (freeNodes >= 0) {
+			node = freeNodes;
+			freeNodes = next[node];
+		} else {
+			if (noOfNodes == var.length) {
+				grow();
+				bucket = hash(v, l, h) & (buckets.length - 1);
+			}
+			node = noOfNodes++;
+		}
+		var[node] = v;
+		low[node] = l;
+		high[node] = h;
+		refs[node] = 0;
+		next[node] = buckets[bucket];
+		buckets[bucket] = node;
+		allocatedSinceCollect++;
+		return node;
+	}
+
+	private void grow() {
+		int capacity = var.length * 2;
+		var = Arrays.copyOf(var, capacity);
+		low = Arrays.copyOf(low, capacity);
+		high = Arrays.copyOf(high, capacity);
+		refs = Arrays.copyOf(refs, capacity);
+		next = Arrays.copyOf(next, capacity);
+		rehash(capacity);
+	}
+
+	private void rehash(int capacity) {
+		buckets = new int[capacity];
+		Arrays.fill(buckets, -1);
+		for (int node = 2; node < noOfNodes; node++) {
+			if (var[node] >= 0) {
+				int bucket = hash(var[node], low[node], high[node]) & (capacity - 1);
+				next[node] = buckets[bucket];
+				buckets[bucket] = node;
+			}
+		}
+	}
+
+	/**
+	 * Reclaims the nodes not reachable from a referenced node, once many nodes were created since the last collection.
+	 */
+	void collect() {
+		if (allocatedSinceCollect < Math.max(noOfNodes / 2, 4096)) {
+			return;
+		}
+		allocatedSinceCollect = 0;
+		boolean[] marked = new boolean[noOfNodes];
+		for (int node = 2; node < noOfNodes; node++) {
+			if (refs[node] > 0 && var[node] >= 0) {
+				mark(node, marked);
+			}
+		}
+		freeNodes = -1;
+		for (int node = noOfNodes - 1; node >= 2; node--) {
+			if (!marked[node]) {
+				var[node] = -1;
+				next[node] = freeNodes;
+				freeNodes = node;
+			}
+		}
+		// the free nodes keep their link in the free list, the other nodes are linked in the unique table again
+		rehash(buckets.length);
+		Arrays.fill(cacheOp, -1);
+	}
+
+	private void mark(int node, boolean[] marked) {
+		while (node > TRUE && !marked[node]) {
+			marked[node] = true;
+			mark(low[node], marked);
+			node = high[node];
+		}
+	}
+
+	private static int hash(int v, int l, int h) {
+		int hash = v * 31 + l;
+		hash = hash * 0x9E3779B1 + h;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int slot(int op, int a, int b) {
+		return hash(op, a, b) & (CACHE_SIZE - 1);
+	}
+
+	private void store(int slot, int op, int a, int b, int result) {
+		cacheOp[slot] = op;
+		cacheLeft[slot] = a;
+		cacheRight[slot] = b;
+		cacheResult[slot] = result;
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The reference engine choosing the interactions with binary decision diagrams instead of enumerating them. The glue
+ * is encoded once the components are registered, and each cycle only encodes again the components whose enabled ports
+ * changed. It suits the glues of many components, where the interactions are too many to be enumerated.
+ */
+public class BddEngine extends ReferenceEngine {
+
+	/**
+	 * Creates the engine, the components being run by the default executor of the mailbox executors.
+	 */
+	public BddEngine() {
+		super();
+	}
+
+	/**
+	 * Creates the engine.
+	 * 
+	 * @param mailboxes
+	 *            the executor running the mailboxes of the components.
+	 */
+	public BddEngine(Executor mailboxes) {
+		super(mailboxes);
+	}
+
+	@Override
+	InteractionFinder newFinder(InteractionTables tables, Participant[] participants) {
+		return new SymbolicInteractionSearch(tables, participants);
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.Map;
+
+/**
+ * The choice of the interaction of a cycle among the ports enabled by the participants.
+ */
+interface InteractionFinder {
+
+	/**
+	 * Searches an interaction, trying the participants from the given one on.
+	 * 
+	 * @param start
+	 *            the participant tried first.
+	 * @return true if an interaction was found.
+	 */
+	boolean find(int start);
+
+	/**
+	 * Provides the local port of the participant in the interaction found, -1 if it does not take part.
+	 */
+	int port(Participant participant);
+
+	/**
+	 * Provides the data to be given to the participant of the interaction found, null if none.
+	 */
+	Map<String, Object> data(Participant participant);
+
+}
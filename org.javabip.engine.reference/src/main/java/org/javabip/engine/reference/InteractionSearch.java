@@ -0,0 +1,271 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The search for an interaction among the ports enabled by the participants. Starting from a port of a participant,
+ * the participants needed by the require constraints of the ports already chosen are added one by one, under the accept
+ * constraints, with backtracking. An interaction is found once every require constraint is met and every participant
+ * needing data is given data which enables its port.
+ */
+final class InteractionSearch implements InteractionFinder {
+
+	private final InteractionTables tables;
+
+	private final Participant[] participants;
+
+	/**
+	 * The local port chosen for each participant, -1 for the participants not in the interaction.
+	 */
+	private final int[] chosen;
+
+	/**
+	 * The data given to each participant of the interaction, null if its port needs none.
+	 */
+	private final Map<String, Object>[] data;
+
+	/**
+	 * The participants of the interaction, in the order they were added.
+	 */
+	private final int[] members;
+
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	InteractionSearch(InteractionTables tables, Participant[] participants) {
+		this.tables = tables;
+		this.participants = participants;
+		this.chosen = new int[participants.length];
+		this.data = new Map[participants.length];
+		this.members = new int[participants.length];
+		Arrays.fill(chosen, -1);
+	}
+
+	public boolean find(int start) {
+		clear();
+		for (int i = 0; i < participants.length; i++) {
+			Participant first = participants[(start + i) % participants.length];
+			for (int port = first.enabled.nextSetBit(0); port >= 0; port = first.enabled.nextSetBit(port + 1)) {
+				add(first, port);
+				if (extend()) {
+					return true;
+				}
+				remove();
+			}
+		}
+		return false;
+	}
+
+	public int port(Participant participant) {
+		return chosen[participant.index];
+	}
+
+	public Map<String, Object> data(Participant participant) {
+		return data[participant.index];
+	}
+
+	/**
+	 * Takes the interaction chosen otherwise, which meets the glue, and gives data to its participants.
+	 * 
+	 * @param ports
+	 *            the local port of each participant, -1 for the participants not in the interaction.
+	 * @return true if every participant needing data is given data which enables its port.
+	 */
+	boolean choose(int[] ports) {
+		clear();
+		for (int i = 0; i < ports.length; i++) {
+			if (ports[i] >= 0) {
+				add(participants[i], ports[i]);
+			}
+		}
+		return provideData();
+	}
+
+	private void clear() {
+		while (size > 0) {
+			remove();
+		}
+	}
+
+	private void add(Participant participant, int port) {
+		chosen[participant.index] = port;
+		members[size++] = participant.index;
+	}
+
+	private void remove() {
+		int index = members[--size];
+		chosen[index] = -1;
+		data[index] = null;
+	}
+
+	private boolean extend() {
+		for (int m = 0; m < size; m++) {
+			Participant member = participants[members[m]];
+			int[][] options = tables.requires[member.globalPorts[chosen[member.index]]];
+			if (options == null || satisfied(member, options)) {
+				continue;
+			}
+			// The first member whose constraint is not met is completed, with each alternative in turn.
+			for (int[] option : options) {
+				int needed = missing(member, option);
+				for (Participant candidate : tables.instances[tables.typeOfPort[needed]]) {
+					int port = candidate.localOfGlobal[needed];
+					if (chosen[candidate.index] >= 0 || port < 0 || !candidate.enabled.get(port)
+							|| !compatible(candidate, port)) {
+						continue;
+					}
+					add(candidate, port);
+					if (extend()) {
+						return true;
+					}
+					remove();
+				}
+			}
+			return false;
+		}
+		return provideData();
+	}
+
+	private boolean satisfied(Participant member, int[][] options) {
+		for (int[] option : options) {
+			if (missing(member, option) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Provides the first port of the alternative which the other members do not provide as many times as needed, -1 if
+	 * the alternative is met.
+	 */
+	private int missing(Participant member, int[] option) {
+		int i = 0;
+		while (i < option.length) {
+			int port = option[i];
+			int needed = 0;
+			for (; i < option.length && option[i] == port; i++) {
+				needed++;
+			}
+			int provided = 0;
+			for (int m = 0; m < size && provided < needed; m++) {
+				Participant other = participants[members[m]];
+				if (other != member && other.globalPorts[chosen[other.index]] == port) {
+					provided++;
+				}
+			}
+			if (provided < needed) {
+				return port;
+			}
+		}
+		return -1;
+	}
+
+	private boolean compatible(Participant candidate, int port) {
+		int global = candidate.globalPorts[port];
+		for (int m = 0; m < size; m++) {
+			Participant member = participants[members[m]];
+			int memberPort = chosen[member.index];
+			int memberGlobal = member.globalPorts[memberPort];
+			if (!tables.accepts(memberGlobal, global) || !tables.accepts(global, memberGlobal)) {
+				return false;
+			}
+			if (member.forbids(memberPort, candidate, port) || candidate.forbids(port, member, memberPort)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gives each member needing data the values of the members wired to it. If several values are possible, the first
+	 * combination enabling the guards of the port is taken.
+	 */
+	private boolean provideData() {
+		for (int m = 0; m < size; m++) {
+			Participant member = participants[members[m]];
+			int port = chosen[member.index];
+			if (member.dataIn[port].length == 0) {
+				continue;
+			}
+			List<Map<String, Object>> rows = rows(member, member.dataIn[port]);
+			if (rows.isEmpty()) {
+				return false;
+			}
+			Map<String, Object> row = null;
+			if (member.guardData[port].length == 0) {
+				row = rows.get(0);
+			} else {
+				List<Boolean> enabled = member.executor.checkEnabledness(member.ports[port], rows);
+				for (int i = 0; i < rows.size() && row == null; i++) {
+					if (enabled.get(i)) {
+						row = rows.get(i);
+					}
+				}
+				if (row == null) {
+					return false;
+				}
+			}
+			data[member.index] = row;
+		}
+		return true;
+	}
+
+	/**
+	 * Provides the combinations of the values which the other members can provide for the data.
+	 */
+	private List<Map<String, Object>> rows(Participant member, String[] dataNames) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		rows.add(new HashMap<String, Object>());
+		for (String dataName : dataNames) {
+			List<Object> values = new ArrayList<Object>();
+			for (String[] source : tables.dataSources(member, dataName)) {
+				for (int m = 0; m < size; m++) {
+					Participant provider = participants[members[m]];
+					if (provider == member || !provider.type.equals(source[0])) {
+						continue;
+					}
+					if (provider.providingPorts.get(source[1]).get(chosen[provider.index])) {
+						values.add(provider.data(source[1]));
+					}
+				}
+			}
+			if (values.isEmpty()) {
+				return new ArrayList<Map<String, Object>>();
+			}
+			List<Map<String, Object>> extended = new ArrayList<Map<String, Object>>(rows.size() * values.size());
+			for (Map<String, Object> row : rows) {
+				for (Object value : values) {
+					Map<String, Object> copy = new HashMap<String, Object>(row);
+					copy.put(dataName, value);
+					extended.add(copy);
+				}
+			}
+			rows = extended;
+		}
+		return rows;
+	}
+
+}
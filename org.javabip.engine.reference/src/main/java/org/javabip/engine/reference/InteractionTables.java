@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.api.DataWire;
+import org.javabip.api.Port;
+import org.javabip.api.PortBase;
+import org.javabip.glue.CompiledGlue;
+
+/**
+ * The glue compiled for the registered components. The ports are numbered across component types, so that the require
+ * and accept constraints are looked up by port number during the search for an interaction.
+ * 
+ * The require and accept constraints are those of the CompiledGlue of the glue, the ports keep their ids in the
+ * compiled glue. The ports of the components which the glue does not mention are numbered after them.
+ */
+final class InteractionTables {
+
+	private final CompiledGlue compiled;
+
+	private final Map<String, Integer> typeIds = new HashMap<String, Integer>();
+
+	private final Map<String, Integer> portIds = new HashMap<String, Integer>();
+
+	private final ArrayList<Integer> portTypes = new ArrayList<Integer>();
+
+	/**
+	 * The type of each port.
+	 */
+	final int[] typeOfPort;
+
+	/**
+	 * The alternatives of the require constraint of each port, each alternative being the sorted ports of the
+	 * components needed. It is null if the port requires nothing specific.
+	 */
+	final int[][][] requires;
+
+	/**
+	 * The participants of each component type.
+	 */
+	final Participant[][] instances;
+
+	/**
+	 * The sources {component type, data name} of the data needed by each component type, keyed by type and data name.
+	 */
+	private final Map<String, List<String[]>> dataSources = new HashMap<String, List<String[]>>();
+
+	InteractionTables(BIPGlue glue, List<Participant> participants) {
+
+		this.compiled = CompiledGlue.compile(glue);
+		for (int id = 0; id < compiled.getNoOfPorts(); id++) {
+			PortBase port = compiled.getPort(id);
+			portId(port.getSpecType(), port.getId());
+		}
+		for (Participant participant : participants) {
+			for (Port port : participant.ports) {
+				portId(participant.type, port.getId());
+			}
+		}
+
+		int noOfPorts = portIds.size();
+		this.typeOfPort = new int[noOfPorts];
+		for (int i = 0; i < noOfPorts; i++) {
+			typeOfPort[i] = portTypes.get(i);
+		}
+
+		this.requires = new int[noOfPorts][][];
+		for (int port = 0; port < compiled.getNoOfPorts(); port++) {
+			if (compiled.hasRequire(port)) {
+				// the ports needed more than once follow each other
+				List<int[]> options = compiled.getRequiredPorts(port);
+				requires[port] = options.toArray(new int[options.size()][]);
+			}
+		}
+
+		List<List<Participant>> ofType = new ArrayList<List<Participant>>();
+		for (int i = 0; i < typeIds.size(); i++) {
+			ofType.add(new ArrayList<Participant>());
+		}
+		for (Participant participant : participants) {
+			ofType.get(typeIds.get(participant.type)).add(participant);
+		}
+		this.instances = new Participant[typeIds.size()][];
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = ofType.get(i).toArray(new Participant[ofType.get(i).size()]);
+		}
+
+		for (DataWire wire : glue.getDataWires()) {
+			String key = wire.getTo().getSpecType() + "#" + wire.getTo().getId();
+			List<String[]> sources = dataSources.get(key);
+			if (sources == null) {
+				sources = new ArrayList<String[]>();
+				dataSources.put(key, sources);
+			}
+			sources.add(new String[] { wire.getFrom().getSpecType(), wire.getFrom().getId() });
+		}
+
+		for (Participant participant : participants) {
+			participant.typeId = typeIds.get(participant.type);
+			participant.globalPorts = new int[participant.ports.length];
+			participant.localOfGlobal = new int[noOfPorts];
+			Arrays.fill(participant.localOfGlobal, -1);
+			for (int i = 0; i < participant.ports.length; i++) {
+				int global = portId(participant.type, participant.ports[i].getId());
+				participant.globalPorts[i] = global;
+				participant.localOfGlobal[global] = i;
+			}
+			for (DataWire wire : glue.getDataWires()) {
+				if (!wire.getFrom().getSpecType().equals(participant.type)) {
+					continue;
+				}
+				BitSet providing = new BitSet(participant.ports.length);
+				for (Port port : participant.behaviour.getDataProvidingPorts(wire.getFrom().getId())) {
+					Integer local = participant.localPorts.get(port.getId());
+					if (local != null) {
+						providing.set(local);
+					}
+				}
+				participant.providingPorts.put(wire.getFrom().getId(), providing);
+			}
+		}
+	}
+
+	private int portId(String type, String port) {
+		String key = type + "#" + port;
+		Integer id = portIds.get(key);
+		if (id == null) {
+			Integer typeId = typeIds.get(type);
+			if (typeId == null) {
+				typeId = typeIds.size();
+				typeIds.put(type, typeId);
+			}
+			id = portIds.size();
+			portIds.put(key, id);
+			portTypes.add(typeId);
+		}
+		return id;
+	}
+
+	/**
+	 * Tells whether the port has an accept constraint.
+	 */
+	boolean hasAccept(int port) {
+		return port < compiled.getNoOfPorts() && compiled.hasAccept(port);
+	}
+
+	/**
+	 * Tells whether the first port may take part in an interaction together with the second one.
+	 */
+	boolean accepts(int port, int other) {
+		return compiled.accepts(port, other);
+	}
+
+	/**
+	 * Provides the sources {component type, data name} of the data needed by the participant, an empty list if the data
+	 * is not wired.
+	 */
+	List<String[]> dataSources(Participant participant, String dataName) {
+		List<String[]> sources = dataSources.get(participant.type + "#" + dataName);
+		if (sources == null) {
+			return Collections.emptyList();
+		}
+		return sources;
+	}
+
+}
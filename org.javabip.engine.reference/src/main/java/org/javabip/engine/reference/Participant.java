@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.javabip.api.Behaviour;
+import org.javabip.api.Data;
+import org.javabip.api.Port;
+import org.javabip.executor.MailboxExecutor;
+
+/**
+ * A component registered within the reference engine. It keeps the enforceable ports of the component indexed by a
+ * local port number, and what the component last told the engine. It is only used by the coordinator thread once the
+ * engine is started.
+ */
+final class Participant {
+
+	final int index;
+
+	final MailboxExecutor executor;
+
+	final Behaviour behaviour;
+
+	final String type;
+
+	/**
+	 * The enforceable ports of the component, the local number of a port is its position.
+	 */
+	final Port[] ports;
+
+	final Map<String, Integer> localPorts;
+
+	/**
+	 * The local numbers of the enforceable ports of each state.
+	 */
+	final Map<String, int[]> stateToPorts;
+
+	/**
+	 * The names of the data needed by the guards of each port.
+	 */
+	final String[][] guardData;
+
+	/**
+	 * The names of the data needed by each port, either by its guards or by its transitions.
+	 */
+	final String[][] dataIn;
+
+	// Set by the interaction tables.
+
+	int typeId;
+
+	int[] globalPorts;
+
+	int[] localOfGlobal;
+
+	/**
+	 * The local ports providing each data wired out of the component.
+	 */
+	final Map<String, BitSet> providingPorts = new HashMap<String, BitSet>();
+
+	// What the component told the engine during the current cycle.
+
+	boolean informed;
+
+	String state;
+
+	final BitSet enabled;
+
+	/**
+	 * The combinations disabled by informSpecific, as {local port, index of the other participant, local port of the
+	 * other participant}.
+	 */
+	final List<int[]> forbidden = new ArrayList<int[]>();
+
+	private final Map<String, Object> dataValues = new HashMap<String, Object>();
+
+	Participant(int index, MailboxExecutor executor, Behaviour behaviour) {
+		this.index = index;
+		this.executor = executor;
+		this.behaviour = behaviour;
+		this.type = behaviour.getComponentType();
+
+		List<Port> enforceable = behaviour.getEnforceablePorts();
+		this.ports = enforceable.toArray(new Port[enforceable.size()]);
+		this.localPorts = new HashMap<String, Integer>();
+		this.guardData = new String[ports.length][];
+		this.dataIn = new String[ports.length][];
+		for (int i = 0; i < ports.length; i++) {
+			localPorts.put(ports[i].getId(), i);
+			Set<String> forGuard = names(behaviour.portToDataInForGuard(ports[i]));
+			Set<String> needed = new LinkedHashSet<String>(forGuard);
+			needed.addAll(names(behaviour.portToDataInForTransition(ports[i])));
+			guardData[i] = forGuard.toArray(new String[forGuard.size()]);
+			dataIn[i] = needed.toArray(new String[needed.size()]);
+		}
+
+		this.stateToPorts = new HashMap<String, int[]>();
+		for (Map.Entry<String, Set<Port>> entry : behaviour.getStateToPorts().entrySet()) {
+			BitSet statePorts = new BitSet(ports.length);
+			for (Port port : entry.getValue()) {
+				Integer local = localPorts.get(port.getId());
+				if (local != null) {
+					statePorts.set(local);
+				}
+			}
+			int[] locals = new int[statePorts.cardinality()];
+			for (int i = statePorts.nextSetBit(0), j = 0; i >= 0; i = statePorts.nextSetBit(i + 1), j++) {
+				locals[j] = i;
+			}
+			stateToPorts.put(entry.getKey(), locals);
+		}
+		this.enabled = new BitSet(ports.length);
+	}
+
+	private static Set<String> names(Iterable<Data<?>> data) {
+		Set<String> names = new LinkedHashSet<String>();
+		if (data != null) {
+			for (Data<?> item : data) {
+				names.add(item.name());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Takes into account the inform of the component, the enabled ports are the enforceable ports of the state which are
+	 * not disabled.
+	 */
+	void inform(String state, Set<Port> disabledPorts) {
+		this.state = state;
+		enabled.clear();
+		int[] statePorts = stateToPorts.get(state);
+		if (statePorts != null) {
+			for (int local : statePorts) {
+				enabled.set(local);
+			}
+		}
+		if (disabledPorts != null) {
+			for (Port port : disabledPorts) {
+				Integer local = localPorts.get(port.getId());
+				if (local != null) {
+					enabled.clear(local);
+				}
+			}
+		}
+		informed = true;
+	}
+
+	void forbid(int port, Participant other, int otherPort) {
+		forbidden.add(new int[] { port, other.index, otherPort });
+	}
+
+	boolean forbids(int port, Participant other, int otherPort) {
+		for (int i = 0; i < forbidden.size(); i++) {
+			int[] combination = forbidden.get(i);
+			if (combination[0] == port && combination[1] == other.index && combination[2] == otherPort) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Provides the value of the data, asked to the component once per cycle.
+	 */
+	Object data(String name) {
+		Object value = dataValues.get(name);
+		if (value == null && !dataValues.containsKey(name)) {
+			value = executor.getData(name, Object.class);
+			dataValues.put(name, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Forgets what the component told during the cycle, once the interaction of the cycle is executed.
+	 */
+	void endCycle() {
+		informed = false;
+		forbidden.clear();
+		dataValues.clear();
+	}
+
+	@Override
+	public String toString() {
+		return executor.getId();
+	}
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javabip.api.BIPActor;
+import org.javabip.api.BIPComponent;
+import org.javabip.api.BIPEngine;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.Port;
+import org.javabip.exceptions.BIPException;
+import org.javabip.executor.ExceptionHelper;
+import org.javabip.executor.ExecutorKernel;
+import org.javabip.executor.MailboxExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-process BIP engine. The require and accept constraints of the glue are compiled into tables when the engine is
+ * initialized, and a single coordinator thread takes the informs of the components in batches. Once every component
+ * has informed, the coordinator searches an interaction, tells its participants to execute it and tells the other
+ * components to go on with their next step.
+ * 
+ * A port without require constraint can be executed alone and a port without accept constraint accepts any port. The
+ * data wired to a component is taken from the participants of the interaction. The components are to be registered
+ * before the engine is started, they are run by mailbox executors.
+ */
+public class ReferenceEngine implements BIPEngine {
+
+	private Logger logger = LoggerFactory.getLogger(ReferenceEngine.class);
+
+	private final Executor mailboxes;
+
+	private final ArrayList<Participant> participants = new ArrayList<Participant>();
+
+	private final Map<BIPComponent, Participant> registered = new IdentityHashMap<BIPComponent, Participant>();
+
+	private final BlockingQueue<Message> messages = new LinkedBlockingQueue<Message>();
+
+	private final AtomicLong cycles = new AtomicLong();
+
+	private BIPGlue glue;
+
+	private InteractionTables tables;
+
+	private InteractionFinder search;
+
+	private Thread coordinator;
+
+	// Used by the coordinator thread only.
+
+	private boolean executing;
+
+	private int waiting;
+
+	private int nextStart;
+
+	private final Runnable coordinate = new Runnable() {
+		public void run() {
+			coordinate();
+		}
+	};
+
+	/**
+	 * Creates the engine, the components being run by the default executor of the mailbox executors.
+	 */
+	public ReferenceEngine() {
+		this(MailboxExecutor.getDefaultExecutor());
+	}
+
+	/**
+	 * Creates the engine.
+	 * 
+	 * @param mailboxes
+	 *            the executor running the mailboxes of the components.
+	 */
+	public ReferenceEngine(Executor mailboxes) {
+		if (mailboxes == null) {
+			throw new IllegalArgumentException("The executor of the mailboxes cannot be null.");
+		}
+		this.mailboxes = mailboxes;
+	}
+
+	public synchronized void specifyGlue(BIPGlue glue) {
+		if (coordinator != null) {
+			throw new BIPException("The glue cannot be changed once the engine is started.");
+		}
+		this.glue = glue;
+		this.tables = null;
+	}
+
+	public synchronized BIPActor register(Object component, String id, boolean useAnnotations) {
+		if (coordinator != null) {
+			throw new BIPException("The component " + id + " cannot be registered once the engine is started.");
+		}
+		ExecutorKernel kernel = new ExecutorKernel(component, id, useAnnotations);
+		MailboxExecutor executor = new MailboxExecutor(kernel, mailboxes);
+		Participant participant = new Participant(participants.size(), executor, kernel.getBehavior());
+		participants.add(participant);
+		registered.put(executor, participant);
+		tables = null;
+		// the informs sent before the engine is started wait in the queue
+		executor.register(this);
+		return executor;
+	}
+
+	public void inform(BIPComponent component, String currentState, Set<Port> disabledPorts) {
+		messages.add(new Message(component, currentState, disabledPorts, null, null));
+	}
+
+	public void informSpecific(BIPComponent decidingComponent, Port decidingPort,
+			Map<BIPComponent, Set<Port>> disabledCombinations) {
+		messages.add(new Message(decidingComponent, null, null, decidingPort, disabledCombinations));
+	}
+
+	public synchronized void initialize() {
+		if (glue == null) {
+			throw new BIPException("The glue must be specified before the engine is initialized.");
+		}
+		Participant[] all = participants.toArray(new Participant[participants.size()]);
+		tables = new InteractionTables(glue, participants);
+		search = newFinder(tables, all);
+	}
+
+	/**
+	 * Creates the search for the interactions, once the glue is compiled.
+	 */
+	InteractionFinder newFinder(InteractionTables tables, Participant[] participants) {
+		return new InteractionSearch(tables, participants);
+	}
+
+	public synchronized void start() {
+		if (coordinator != null) {
+			return;
+		}
+		if (tables == null) {
+			initialize();
+		}
+		waiting = participants.size();
+		coordinator = new Thread(coordinate, "javabip-engine");
+		coordinator.setDaemon(true);
+		coordinator.start();
+	}
+
+	public void execute() {
+		messages.add(Message.EXECUTE);
+	}
+
+	public synchronized void stop() {
+		if (coordinator == null) {
+			return;
+		}
+		messages.add(Message.STOP);
+		try {
+			coordinator.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		coordinator = null;
+		for (Participant participant : participants) {
+			participant.executor.deregister();
+		}
+	}
+
+	/**
+	 * Provides the number of interactions executed since the engine was started.
+	 * 
+	 * @return the number of cycles.
+	 */
+	public long getNumberOfCycles() {
+		return cycles.get();
+	}
+
+	// ******************************** Coordinator **********************************************
+
+	private void coordinate() {
+		ArrayList<Message> batch = new ArrayList<Message>();
+		try {
+			while (true) {
+				batch.add(messages.take());
+				messages.drainTo(batch);
+				for (Message message : batch) {
+					if (message == Message.STOP) {
+						return;
+					}
+					try {
+						handle(message);
+					} catch (RuntimeException e) {
+						ExceptionHelper.printExceptionTrace(logger, e, "The following exception in the engine");
+					}
+				}
+				batch.clear();
+				if (executing && waiting == 0) {
+					try {
+						cycle();
+					} catch (RuntimeException e) {
+						ExceptionHelper.printExceptionTrace(logger, e, "The following exception in the engine cycle");
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.debug("The engine coordinator was interrupted.");
+		}
+	}
+
+	private void handle(Message message) {
+		if (message == Message.EXECUTE) {
+			executing = true;
+			return;
+		}
+		Participant participant = registered.get(message.component);
+		if (participant == null) {
+			logger.warn("Component {} informing the engine is not registered.", message.component);
+			return;
+		}
+		if (message.decidingPort == null) {
+			if (!participant.informed) {
+				waiting--;
+			}
+			participant.inform(message.currentState, message.disabledPorts);
+			return;
+		}
+		Integer port = participant.localPorts.get(message.decidingPort.getId());
+		if (port == null) {
+			return;
+		}
+		for (Map.Entry<BIPComponent, Set<Port>> entry : message.disabledCombinations.entrySet()) {
+			Participant other = registered.get(entry.getKey());
+			if (other == null) {
+				continue;
+			}
+			for (Port otherPort : entry.getValue()) {
+				Integer local = other.localPorts.get(otherPort.getId());
+				if (local != null) {
+					participant.forbid(port, other, local);
+				}
+			}
+		}
+	}
+
+	private void cycle() {
+		if (participants.isEmpty()) {
+			return;
+		}
+		if (!search.find(nextStart)) {
+			logger.debug("No interaction is enabled, the engine waits for the components.");
+			return;
+		}
+		nextStart = (nextStart + 1) % participants.size();
+
+		// The decision is taken before the components are told, as they may inform again right away.
+		String[] ports = new String[participants.size()];
+		ArrayList<Map<String, Object>> data = new ArrayList<Map<String, Object>>(participants.size());
+		for (Participant participant : participants) {
+			int port = search.port(participant);
+			ports[participant.index] = port < 0 ? null : participant.ports[port].getId();
+			data.add(search.data(participant));
+			participant.endCycle();
+		}
+		waiting = participants.size();
+		cycles.incrementAndGet();
+
+		for (Participant participant : participants) {
+			String port = ports[participant.index];
+			Map<String, Object> values = data.get(participant.index);
+			if (port != null && values != null) {
+				participant.executor.execute(port, values);
+			} else {
+				participant.executor.execute(port);
+			}
+		}
+	}
+
+	/**
+	 * An inform, an informSpecific or a command of the engine, queued for the coordinator.
+	 */
+	private static final class Message {
+
+		static final Message EXECUTE = new Message(null, null, null, null, null);
+
+		static final Message STOP = new Message(null, null, null, null, null);
+
+		final BIPComponent component;
+
+		final String currentState;
+
+		final Set<Port> disabledPorts;
+
+		final Port decidingPort;
+
+		final Map<BIPComponent, Set<Port>> disabledCombinations;
+
+		Message(BIPComponent component, String currentState, Set<Port> disabledPorts, Port decidingPort,
+				Map<BIPComponent, Set<Port>> disabledCombinations) {
+			this.component = component;
+			this.currentState = currentState;
+			this.disabledPorts = disabledPorts;
+			this.decidingPort = decidingPort;
+			this.disabledCombinations = disabledCombinations;
+		}
+
+	}
+
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The search for an interaction with binary decision diagrams. There is a variable for each enforceable port of each
+ * participant, true if the port takes part in the interaction.
+ * 
+ * The BDD of the glue is built once, it encodes the require constraints, the accept constraints and the data wires,
+ * which need a provider in the interaction. The BDD of a participant encodes the ports enabled by its last inform, at
+ * most one of them taking part, and the providers whose data enable the guards of its ports needing one data. The BDDs
+ * of the participants are conjoined in a balanced tree, so that each cycle only conjoins again the BDDs of the
+ * participants which changed.
+ * 
+ * An interaction satisfying the BDDs may still be disabled by the guards needing several data, it is then excluded and
+ * another one is taken.
+ * 
+ * The BDD of the providers of a port is kept from one cycle to the next. Its guard is asked again only when the
+ * providers able to provide the data, their enabled providing ports or their data values, compared with equals, have
+ * changed, when the component is in another state or when it took part in the last interaction. A component which does
+ * not take part keeps the answers of its guards, as long as a spontaneous transition does not bring it back to the
+ * same state with different fields.
+ */
+final class SymbolicInteractionSearch implements InteractionFinder {
+
+	private final Bdd bdd;
+
+	private final Participant[] participants;
+
+	/**
+	 * Gives the data to the participants of the interaction taken.
+	 */
+	private final InteractionSearch data;
+
+	/**
+	 * The variable of the first port of each participant.
+	 */
+	private final int[] offsets;
+
+	private final int glue;
+
+	/**
+	 * The BDD true if a port of the participant takes part, for each participant.
+	 */
+	private final int[] anyPort;
+
+	/**
+	 * The BDD of each participant in each of its states, at most one port of the state taking part.
+	 */
+	private final List<Map<String, Integer>> stateBdds = new ArrayList<Map<String, Integer>>();
+
+	/**
+	 * The BDD of the enabled ports of each participant.
+	 */
+	private final int[] enabledBdds;
+
+	/**
+	 * The ports encoded in the BDD of each participant, null if it was not encoded yet.
+	 */
+	private final BitSet[] encoded;
+
+	/**
+	 * The participants which may provide the data of each port of each participant, for the ports whose guards need
+	 * one data.
+	 */
+	private final List<List<List<Provider>>> providers = new ArrayList<List<List<Provider>>>();
+
+	/**
+	 * The last BDD of the providers of each port of each participant, for the ports whose guards need one data, null
+	 * until the guard is asked.
+	 */
+	private final Answer[][] answers;
+
+	private final int leaves;
+
+	/**
+	 * The conjunctions of the BDDs of the participants, as a binary tree whose leaves start at index leaves.
+	 */
+	private final int[] tree;
+
+	private final int[] ports;
+
+	SymbolicInteractionSearch(InteractionTables tables, Participant[] participants) {
+		this.participants = participants;
+		this.data = new InteractionSearch(tables, participants);
+		this.offsets = new int[participants.length];
+		int noOfVars = 0;
+		for (Participant participant : participants) {
+			offsets[participant.index] = noOfVars;
+			noOfVars += participant.ports.length;
+		}
+		this.bdd = new Bdd(noOfVars);
+
+		this.anyPort = new int[participants.length];
+		for (Participant participant : participants) {
+			int any = Bdd.FALSE;
+			for (int port = 0; port < participant.ports.length; port++) {
+				any = bdd.or(any, bdd.ithVar(var(participant, port)));
+			}
+			anyPort[participant.index] = bdd.addRef(any);
+			stateBdds.add(new HashMap<String, Integer>());
+			providers.add(providers(tables, participant));
+		}
+
+		this.glue = bdd.addRef(glue(tables));
+
+		int size = 1;
+		while (size < participants.length) {
+			size *= 2;
+		}
+		this.leaves = size;
+		this.tree = new int[2 * size];
+		Arrays.fill(tree, Bdd.TRUE);
+		this.enabledBdds = new int[participants.length];
+		this.encoded = new BitSet[participants.length];
+		this.ports = new int[participants.length];
+		this.answers = new Answer[participants.length][];
+		for (Participant participant : participants) {
+			answers[participant.index] = new Answer[participant.ports.length];
+		}
+	}
+
+	private int var(Participant participant, int port) {
+		return offsets[participant.index] + port;
+	}
+
+	private int glue(InteractionTables tables) {
+		/*
+		 * Each participant takes part with one port at most. Building the require constraints under this constraint
+		 * keeps them small, as they need not tell apart the ports taken together by a participant.
+		 */
+		int single = Bdd.TRUE;
+		for (Participant participant : participants) {
+			int[] vars = new int[participant.ports.length];
+			for (int port = 0; port < vars.length; port++) {
+				vars[port] = var(participant, port);
+			}
+			single = bdd.and(single, bdd.atMostOne(vars));
+		}
+		bdd.addRef(single);
+
+		List<Integer> constraints = new ArrayList<Integer>();
+		constraints.add(single);
+		for (Participant participant : participants) {
+			for (int port = 0; port < participant.ports.length; port++) {
+				int global = participant.globalPorts[port];
+				int needed = Bdd.TRUE;
+
+				int[][] options = tables.requires[global];
+				if (options != null) {
+					int required = Bdd.FALSE;
+					for (int[] option : options) {
+						required = bdd.or(required, bdd.and(single, option(tables, participant, option)));
+					}
+					needed = bdd.and(needed, required);
+				}
+
+				if (tables.hasAccept(global)) {
+					for (Participant other : participants) {
+						for (int otherPort = 0; other != participant && otherPort < other.ports.length; otherPort++) {
+							if (!tables.accepts(global, other.globalPorts[otherPort])) {
+								needed = bdd.and(needed, bdd.nithVar(var(other, otherPort)));
+							}
+						}
+					}
+				}
+
+				for (String dataName : participant.dataIn[port]) {
+					int provided = Bdd.FALSE;
+					for (String[] source : tables.dataSources(participant, dataName)) {
+						for (Participant provider : participants) {
+							if (provider == participant || !provider.type.equals(source[0])) {
+								continue;
+							}
+							BitSet providing = provider.providingPorts.get(source[1]);
+							for (int i = providing.nextSetBit(0); i >= 0; i = providing.nextSetBit(i + 1)) {
+								provided = bdd.or(provided, bdd.ithVar(var(provider, i)));
+							}
+						}
+					}
+					needed = bdd.and(needed, provided);
+				}
+
+				constraints.add(bdd.addRef(bdd.imp(bdd.ithVar(var(participant, port)), needed)));
+			}
+		}
+
+		// some port takes part
+		int somePort = Bdd.FALSE;
+		for (Participant participant : participants) {
+			somePort = bdd.or(somePort, anyPort[participant.index]);
+		}
+		constraints.add(bdd.addRef(somePort));
+
+		/*
+		 * The constraints are conjoined two by two rather than one after the other, which keeps the intermediate BDDs
+		 * closer to the size of the result.
+		 */
+		while (constraints.size() > 1) {
+			List<Integer> conjunctions = new ArrayList<Integer>();
+			for (int i = 0; i + 1 < constraints.size(); i += 2) {
+				conjunctions.add(bdd.addRef(bdd.and(constraints.get(i), constraints.get(i + 1))));
+				bdd.delRef(constraints.get(i));
+				bdd.delRef(constraints.get(i + 1));
+				bdd.collect();
+			}
+			if (constraints.size() % 2 == 1) {
+				conjunctions.add(constraints.get(constraints.size() - 1));
+			}
+			constraints = conjunctions;
+		}
+		int result = constraints.get(0);
+		bdd.delRef(result);
+		return result;
+	}
+
+	/*
+	 * Each port of the alternative is to be provided by as many other participants as it appears.
+	 */
+	private int option(InteractionTables tables, Participant participant, int[] option) {
+		int result = Bdd.TRUE;
+		int i = 0;
+		while (i < option.length) {
+			int global = option[i];
+			int needed = 0;
+			for (; i < option.length && option[i] == global; i++) {
+				needed++;
+			}
+			BitSet vars = new BitSet();
+			for (Participant other : tables.instances[tables.typeOfPort[global]]) {
+				int port = other.localOfGlobal[global];
+				if (other != participant && port >= 0) {
+					vars.set(var(other, port));
+				}
+			}
+			int[] ordered = new int[vars.cardinality()];
+			for (int v = vars.nextSetBit(0), j = 0; v >= 0; v = vars.nextSetBit(v + 1), j++) {
+				ordered[j] = v;
+			}
+			result = bdd.and(result, bdd.atLeast(ordered, needed));
+		}
+		return result;
+	}
+
+	private List<List<Provider>> providers(InteractionTables tables, Participant participant) {
+		List<List<Provider>> ofPorts = new ArrayList<List<Provider>>();
+		for (int port = 0; port < participant.ports.length; port++) {
+			if (participant.guardData[port].length != 1 || participant.dataIn[port].length != 1) {
+				ofPorts.add(null);
+				continue;
+			}
+			List<Provider> ofPort = new ArrayList<Provider>();
+			for (String[] source : tables.dataSources(participant, participant.dataIn[port][0])) {
+				for (Participant provider : participants) {
+					if (provider != participant && provider.type.equals(source[0])) {
+						ofPort.add(new Provider(provider, source[1]));
+					}
+				}
+			}
+			ofPorts.add(ofPort);
+		}
+		return ofPorts;
+	}
+
+	public boolean find(int start) {
+		for (Participant participant : participants) {
+			if (!participant.enabled.equals(encoded[participant.index])) {
+				encodeEnabled(participant);
+			}
+			int leaf = enabledBdds[participant.index];
+			List<List<Provider>> ofPorts = providers.get(participant.index);
+			for (int port = participant.enabled.nextSetBit(0); port >= 0; port = participant.enabled
+					.nextSetBit(port + 1)) {
+				if (ofPorts.get(port) != null) {
+					leaf = bdd.and(leaf, encodeData(participant, port, ofPorts.get(port)));
+				}
+			}
+			if (leaf != tree[leaves + participant.index]) {
+				setLeaf(participant, leaf);
+			}
+		}
+
+		int interactions = bdd.and(tree[1], glue);
+		for (Participant participant : participants) {
+			for (int[] combination : participant.forbidden) {
+				int both = bdd.and(bdd.ithVar(var(participant, combination[0])),
+						bdd.ithVar(var(participants[combination[1]], combination[2])));
+				interactions = bdd.and(interactions, bdd.not(both));
+			}
+		}
+
+		boolean found = false;
+		for (int i = 0; i < participants.length && !found; i++) {
+			Participant first = participants[(start + i) % participants.length];
+			if (first.enabled.isEmpty()) {
+				continue;
+			}
+			int candidates = bdd.and(interactions, anyPort[first.index]);
+			boolean[] assignment;
+			while (!found && (assignment = bdd.satOne(candidates)) != null) {
+				found = data.choose(ports(assignment));
+				if (!found) {
+					// disabled by the data, it is excluded for the other participants too
+					int excluded = bdd.not(bdd.cube(assignment));
+					candidates = bdd.and(candidates, excluded);
+					interactions = bdd.and(interactions, excluded);
+				}
+			}
+		}
+		if (found) {
+			// the participants execute a transition, which may change the answers of their guards
+			for (Participant participant : participants) {
+				if (ports[participant.index] >= 0) {
+					forget(participant);
+				}
+			}
+		}
+		bdd.collect();
+		return found;
+	}
+
+	private void forget(Participant participant) {
+		Answer[] ofPorts = answers[participant.index];
+		for (int port = 0; port < ofPorts.length; port++) {
+			if (ofPorts[port] != null) {
+				bdd.delRef(ofPorts[port].bdd);
+				ofPorts[port] = null;
+			}
+		}
+	}
+
+	public int port(Participant participant) {
+		return data.port(participant);
+	}
+
+	public Map<String, Object> data(Participant participant) {
+		return data.data(participant);
+	}
+
+	private int[] ports(boolean[] assignment) {
+		for (Participant participant : participants) {
+			ports[participant.index] = -1;
+			for (int port = 0; port < participant.ports.length; port++) {
+				if (assignment[var(participant, port)]) {
+					ports[participant.index] = port;
+				}
+			}
+		}
+		return ports;
+	}
+
+	private void encodeEnabled(Participant participant) {
+		int result = stateBdd(participant, participant.state);
+		int[] statePorts = participant.stateToPorts.get(participant.state);
+		if (statePorts != null) {
+			for (int port : statePorts) {
+				if (!participant.enabled.get(port)) {
+					result = bdd.and(result, bdd.nithVar(var(participant, port)));
+				}
+			}
+		}
+		bdd.addRef(result);
+		bdd.delRef(enabledBdds[participant.index]);
+		enabledBdds[participant.index] = result;
+		encoded[participant.index] = (BitSet) participant.enabled.clone();
+	}
+
+	/*
+	 * The guard of the port is asked at once about the data of all the providers, the port takes part only with a
+	 * provider whose data enables it. The answer is reused while the providers and their data stay the same.
+	 */
+	private int encodeData(Participant participant, int port, List<Provider> ofPort) {
+		BitSet[] enabledPorts = new BitSet[ofPort.size()];
+		Object[] values = new Object[ofPort.size()];
+		for (int i = 0; i < enabledPorts.length; i++) {
+			Provider provider = ofPort.get(i);
+			enabledPorts[i] = (BitSet) provider.ports.clone();
+			enabledPorts[i].and(provider.participant.enabled);
+			if (!enabledPorts[i].isEmpty()) {
+				values[i] = provider.participant.data(provider.dataName);
+			}
+		}
+
+		Answer answer = answers[participant.index][port];
+		if (answer != null && answer.state.equals(participant.state) && Arrays.equals(answer.enabledPorts, enabledPorts)
+				&& Arrays.equals(answer.values, values)) {
+			return answer.bdd;
+		}
+
+		int result = bdd.addRef(askGuard(participant, port, ofPort, enabledPorts, values));
+		if (answer != null) {
+			bdd.delRef(answer.bdd);
+		}
+		answers[participant.index][port] = new Answer(participant.state, enabledPorts, values, result);
+		return result;
+	}
+
+	private int askGuard(Participant participant, int port, List<Provider> ofPort, BitSet[] enabledPorts,
+			Object[] values) {
+		String dataName = participant.dataIn[port][0];
+		List<Provider> asked = new ArrayList<Provider>();
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < enabledPorts.length; i++) {
+			if (!enabledPorts[i].isEmpty()) {
+				Map<String, Object> row = new HashMap<String, Object>();
+				row.put(dataName, values[i]);
+				asked.add(ofPort.get(i));
+				rows.add(row);
+			}
+		}
+		int provided = Bdd.FALSE;
+		if (!rows.isEmpty()) {
+			List<Boolean> enabled = participant.executor.checkEnabledness(participant.ports[port], rows);
+			for (int i = 0; i < asked.size(); i++) {
+				if (!enabled.get(i)) {
+					continue;
+				}
+				Participant provider = asked.get(i).participant;
+				BitSet providing = asked.get(i).ports;
+				for (int p = providing.nextSetBit(0); p >= 0; p = providing.nextSetBit(p + 1)) {
+					if (provider.enabled.get(p)) {
+						provided = bdd.or(provided, bdd.ithVar(var(provider, p)));
+					}
+				}
+			}
+		}
+		return bdd.imp(bdd.ithVar(var(participant, port)), provided);
+	}
+
+	private void setLeaf(Participant participant, int leaf) {
+		int node = leaves + participant.index;
+		bdd.addRef(leaf);
+		bdd.delRef(tree[node]);
+		tree[node] = leaf;
+		for (node /= 2; node >= 1; node /= 2) {
+			int conjunction = bdd.addRef(bdd.and(tree[2 * node], tree[2 * node + 1]));
+			bdd.delRef(tree[node]);
+			tree[node] = conjunction;
+		}
+	}
+
+	private int stateBdd(Participant participant, String state) {
+		Map<String, Integer> ofParticipant = stateBdds.get(participant.index);
+		Integer result = ofParticipant.get(state);
+		if (result == null) {
+			int[] statePorts = participant.stateToPorts.get(state);
+			BitSet inState = new BitSet(participant.ports.length);
+			int[] vars = new int[statePorts == null ? 0 : statePorts.length];
+			for (int i = 0; i < vars.length; i++) {
+				inState.set(statePorts[i]);
+				vars[i] = var(participant, statePorts[i]);
+			}
+			int encoding = bdd.atMostOne(vars);
+			for (int port = 0; port < participant.ports.length; port++) {
+				if (!inState.get(port)) {
+					encoding = bdd.and(encoding, bdd.nithVar(var(participant, port)));
+				}
+			}
+			result = bdd.addRef(encoding);
+			ofParticipant.put(state, result);
+		}
+		return result;
+	}
+
+	/**
+	 * The BDD of the providers of a port, with what it was computed from.
+	 */
+	private static final class Answer {
+
+		final String state;
+
+		/**
+		 * For each provider of the port, its enabled ports among those providing the data.
+		 */
+		final BitSet[] enabledPorts;
+
+		/**
+		 * For each provider of the port, the value of the data, null if no providing port is enabled.
+		 */
+		final Object[] values;
+
+		final int bdd;
+
+		Answer(String state, BitSet[] enabledPorts, Object[] values, int bdd) {
+			this.state = state;
+			this.enabledPorts = enabledPorts;
+			this.values = values;
+			this.bdd = bdd;
+		}
+
+	}
+
+	/**
+	 * A participant providing a data, with the ports through which it provides it.
+	 */
+	private static final class Provider {
+
+		final Participant participant;
+
+		final String dataName;
+
+		final BitSet ports;
+
+		Provider(Participant participant, String dataName) {
+			this.participant = participant;
+			this.dataName = dataName;
+			this.ports = participant.providingPorts.get(dataName);
+		}
+
+	}
+
+}
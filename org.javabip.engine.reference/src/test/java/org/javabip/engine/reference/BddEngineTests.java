@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Runs the examples on the BDD engine and compares it with the reference engine, which enumerates the interactions.
+ */
+public class BddEngineTests {
+
+	@Test
+	public void hanoiMovesMatchTheReferenceEngine() throws InterruptedException {
+		for (int disks = 1; disks <= 6; disks++) {
+			int expected = ExampleSystems.hanoi(new ReferenceEngine(), disks);
+			assertEquals("The moves for " + disks + " pieces", (1 << disks) - 1, expected);
+			assertEquals("The moves for " + disks + " pieces", expected, ExampleSystems.hanoi(new BddEngine(), disks));
+		}
+	}
+
+	/*
+	 * The philosophers never stop, both engines are given the same number of cycles and are to take every fork.
+	 */
+	@Test
+	public void diningMatchesTheReferenceEngine() throws InterruptedException {
+		int[] reference = ExampleSystems.dining(new ReferenceEngine(), 5, 2000);
+		int[] symbolic = ExampleSystems.dining(new BddEngine(), 5, 2000);
+		assertEquals(reference.length, symbolic.length);
+		for (int i = 0; i < symbolic.length; i++) {
+			assertTrue("The fork " + i + " was never taken by the reference engine.", reference[i] > 0);
+			assertTrue("The fork " + i + " was never taken by the BDD engine.", symbolic[i] > 0);
+		}
+	}
+
+}
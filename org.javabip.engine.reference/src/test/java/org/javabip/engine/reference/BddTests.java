@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the operations of Bdd against the truth tables of random formulas, and that the BDDs still referenced keep
+ * their meaning once collect has reclaimed the other nodes and their indices are reused.
+ */
+public class BddTests {
+
+	private static final long SEED = 20161018L;
+
+	@Test
+	public void operationsMatchTheTruthTables() {
+		Random random = new Random(SEED);
+		Bdd bdd = new Bdd(8);
+		List<boolean[]> assignments = allAssignments(8);
+		for (int i = 0; i < 500; i++) {
+			Formula formula = Formula.random(random, 8, 5);
+			int f = formula.build(bdd);
+			check(bdd, f, formula, assignments);
+			// the diagrams are canonical, a formula with the same truth table gives the same node
+			assertEquals(f, bdd.not(bdd.not(f)));
+			assertEquals(f, bdd.or(bdd.and(f, bdd.ithVar(3)), bdd.and(f, bdd.nithVar(3))));
+			assertEquals(Bdd.TRUE, bdd.imp(f, f));
+			assertEquals(Bdd.FALSE, bdd.and(f, bdd.not(f)));
+		}
+	}
+
+	@Test
+	public void cardinalityConstraintsMatchTheTruthTables() {
+		Bdd bdd = new Bdd(8);
+		int[] vars = { 1, 3, 4, 6, 7 };
+		for (int k = 0; k <= vars.length + 1; k++) {
+			int atLeast = bdd.atLeast(vars, k);
+			for (boolean[] assignment : allAssignments(8)) {
+				assertEquals("at least " + k, count(assignment, vars) >= k, holds(bdd, atLeast, assignment));
+			}
+		}
+		int atMostOne = bdd.atMostOne(vars);
+		for (boolean[] assignment : allAssignments(8)) {
+			assertEquals(count(assignment, vars) <= 1, holds(bdd, atMostOne, assignment));
+		}
+		assertEquals(Bdd.TRUE, bdd.atLeast(new int[0], 0));
+		assertEquals(Bdd.FALSE, bdd.atLeast(new int[0], 1));
+		assertEquals(Bdd.TRUE, bdd.atMostOne(new int[0]));
+	}
+
+	@Test
+	public void referencedNodesSurviveCollection() {
+		Random random = new Random(SEED);
+		Bdd bdd = new Bdd(16);
+		List<boolean[]> assignments = randomAssignments(random, 16, 512);
+
+		List<Formula> kept = new ArrayList<Formula>();
+		List<Integer> keptBdds = new ArrayList<Integer>();
+		List<Formula> released = new ArrayList<Formula>();
+		for (int i = 0; i < 100; i++) {
+			Formula formula = Formula.random(random, 16, 6);
+			int f = bdd.addRef(formula.build(bdd));
+			if (i % 2 == 0) {
+				kept.add(formula);
+				keptBdds.add(f);
+			} else {
+				released.add(formula);
+				bdd.delRef(f);
+			}
+		}
+		// random cubes over many variables hardly share nodes, they are enough to trigger a collection
+		int highest = 0;
+		for (boolean[] assignment : randomAssignments(random, 16, 2000)) {
+			highest = Math.max(highest, bdd.cube(assignment));
+		}
+
+		bdd.collect();
+
+		// a node created now takes the index of a reclaimed node, below the indices created before
+		int reused = bdd.cube(randomAssignments(random, 16, 1).get(0));
+		assertTrue("The node " + reused + " was not taken from the reclaimed nodes below " + highest,
+				reused < highest);
+
+		for (int i = 0; i < kept.size(); i++) {
+			check(bdd, keptBdds.get(i), kept.get(i), assignments);
+		}
+		// the referenced nodes are found again in the unique table
+		for (int i = 0; i < kept.size(); i++) {
+			assertEquals((int) keptBdds.get(i), kept.get(i).build(bdd));
+		}
+		// the formulas built again over the reused nodes keep their meaning
+		for (Formula formula : released) {
+			check(bdd, formula.build(bdd), formula, assignments);
+		}
+		for (int i = 0; i < 100; i++) {
+			Formula formula = Formula.random(random, 16, 6);
+			check(bdd, formula.build(bdd), formula, assignments);
+		}
+	}
+
+	private static void check(Bdd bdd, int f, Formula formula, List<boolean[]> assignments) {
+		boolean satisfiable = false;
+		for (boolean[] assignment : assignments) {
+			boolean expected = formula.evaluate(assignment);
+			assertEquals(formula.toString(), expected, holds(bdd, f, assignment));
+			satisfiable |= expected;
+		}
+		boolean[] witness = bdd.satOne(f);
+		if (f == Bdd.FALSE) {
+			assertTrue(formula.toString(), !satisfiable);
+			assertNull(witness);
+		} else {
+			assertTrue(formula.toString(), formula.evaluate(witness));
+		}
+	}
+
+	private static boolean holds(Bdd bdd, int f, boolean[] assignment) {
+		return bdd.and(f, bdd.cube(assignment)) != Bdd.FALSE;
+	}
+
+	private static int count(boolean[] assignment, int[] vars) {
+		int count = 0;
+		for (int v : vars) {
+			if (assignment[v]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static List<boolean[]> allAssignments(int noOfVars) {
+		List<boolean[]> result = new ArrayList<boolean[]>();
+		for (int bits = 0; bits < 1 << noOfVars; bits++) {
+			boolean[] assignment = new boolean[noOfVars];
+			for (int v = 0; v < noOfVars; v++) {
+				assignment[v] = (bits & (1 << v)) != 0;
+			}
+			result.add(assignment);
+		}
+		return result;
+	}
+
+	private static List<boolean[]> randomAssignments(Random random, int noOfVars, int size) {
+		List<boolean[]> result = new ArrayList<boolean[]>();
+		for (int i = 0; i < size; i++) {
+			boolean[] assignment = new boolean[noOfVars];
+			for (int v = 0; v < noOfVars; v++) {
+				assignment[v] = random.nextBoolean();
+			}
+			result.add(assignment);
+		}
+		return result;
+	}
+
+	/*
+	 * A formula over the variables, evaluated directly and built as a BDD.
+	 */
+	private static final class Formula {
+
+		private final char op;
+
+		private final int var;
+
+		private final Formula left;
+
+		private final Formula right;
+
+		private Formula(char op, int var, Formula left, Formula right) {
+			this.op = op;
+			this.var = var;
+			this.left = left;
+			this.right = right;
+		}
+
+		static Formula random(Random random, int noOfVars, int depth) {
+			int choice = depth == 0 ? random.nextInt(2) : random.nextInt(6);
+			switch (choice) {
+			case 0:
+				return new Formula('v', random.nextInt(noOfVars), null, null);
+			case 1:
+				return new Formula('n', random.nextInt(noOfVars), null, null);
+			case 2:
+				return new Formula('!', 0, random(random, noOfVars, depth - 1), null);
+			case 3:
+				return new Formula('&', 0, random(random, noOfVars, depth - 1), random(random, noOfVars, depth - 1));
+			case 4:
+				return new Formula('|', 0, random(random, noOfVars, depth - 1), random(random, noOfVars, depth - 1));
+			default:
+				return new Formula('>', 0, random(random, noOfVars, depth - 1), random(random, noOfVars, depth - 1));
+			}
+		}
+
+		boolean evaluate(boolean[] assignment) {
+			switch (op) {
+			case 'v':
+				return assignment[var];
+			case 'n':
+				return !assignment[var];
+			case '!':
+				return !left.evaluate(assignment);
+			case '&':
+				return left.evaluate(assignment) && right.evaluate(assignment);
+			case '|':
+				return left.evaluate(assignment) || right.evaluate(assignment);
+			default:
+				return !left.evaluate(assignment) || right.evaluate(assignment);
+			}
+		}
+
+		int build(Bdd bdd) {
+			switch (op) {
+			case 'v':
+				return bdd.ithVar(var);
+			case 'n':
+				return bdd.nithVar(var);
+			case '!':
+				return bdd.not(left.build(bdd));
+			case '&':
+				return bdd.and(left.build(bdd), right.build(bdd));
+			case '|':
+				return bdd.or(left.build(bdd), right.build(bdd));
+			default:
+				return bdd.imp(left.build(bdd), right.build(bdd));
+			}
+		}
+
+		public String toString() {
+			switch (op) {
+			case 'v':
+				return "x" + var;
+			case 'n':
+				return "!x" + var;
+			case '!':
+				return "!(" + left + ")";
+			default:
+				return "(" + left + " " + op + " " + right + ")";
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.javabip.spec.diningphilosophers.DiningPhilosophersGlueBuilder;
+import org.javabip.spec.diningphilosophers.Fork;
+import org.javabip.spec.diningphilosophers.Philosophers;
+import org.javabip.spec.hanoi.HanoiGlueBuilder;
+import org.javabip.spec.hanoi.HanoiMonitor;
+import org.javabip.spec.hanoi.LeftHanoiPeg;
+import org.javabip.spec.hanoi.MiddleHanoiPeg;
+import org.javabip.spec.hanoi.RightHanoiPeg;
+
+/**
+ * Runs the systems of org.javabip.spec.examples on an engine: the towers of Hanoi, which end once the pieces are moved,
+ * and the dining philosophers, who keep eating.
+ */
+final class ExampleSystems {
+
+	/**
+	 * The time given to a system to reach its expected state, beyond which the engine is taken as stalled.
+	 */
+	private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * The time during which a finished system is watched for interactions the engine should not execute.
+	 */
+	private static final long QUIET_MILLIS = 100;
+
+	private ExampleSystems() {
+	}
+
+	/**
+	 * Moves the towers of Hanoi and checks that the engine does not stall before the last move, nor executes any
+	 * interaction after it.
+	 * 
+	 * @param engine
+	 *            the engine, which is stopped at the end.
+	 * @param disks
+	 *            the number of pieces.
+	 * @return the number of moves made.
+	 */
+	static int hanoi(ReferenceEngine engine, int disks) throws InterruptedException {
+		long expected = (1L << disks) - 1;
+		engine.specifyGlue(new HanoiGlueBuilder(disks).build());
+		HanoiMonitor monitor = new HanoiMonitor(disks);
+		engine.register(monitor, "monitor", false);
+		engine.register(new LeftHanoiPeg(disks), "left", false);
+		engine.register(new MiddleHanoiPeg(disks), "middle", false);
+		engine.register(new RightHanoiPeg(disks), "right", false);
+		try {
+			engine.start();
+			engine.execute();
+			long start = System.nanoTime();
+			while (engine.getNumberOfCycles() < expected || monitor.getNumberOfMoves() < expected) {
+				if (System.nanoTime() - start > TIMEOUT) {
+					fail("The engine stalled after " + engine.getNumberOfCycles() + " cycles and "
+							+ monitor.getNumberOfMoves() + " moves of " + expected + " for " + disks + " pieces.");
+				}
+				Thread.sleep(1);
+			}
+			Thread.sleep(QUIET_MILLIS);
+			assertEquals("The cycles for " + disks + " pieces", expected, engine.getNumberOfCycles());
+			return monitor.getNumberOfMoves();
+		} finally {
+			engine.stop();
+		}
+	}
+
+	/**
+	 * Lets the philosophers eat until the engine has executed the given number of interactions, and checks that the
+	 * forks were not taken more often than the interactions allow.
+	 * 
+	 * @param engine
+	 *            the engine, which is stopped at the end.
+	 * @param philosophers
+	 *            the number of philosophers, and of forks.
+	 * @param cycles
+	 *            the number of interactions to be executed at least.
+	 * @return the number of times each fork was taken.
+	 */
+	static int[] dining(ReferenceEngine engine, int philosophers, long cycles) throws InterruptedException {
+		engine.specifyGlue(new DiningPhilosophersGlueBuilder().build());
+		Fork[] forks = new Fork[philosophers];
+		for (int i = 0; i < philosophers; i++) {
+			forks[i] = new Fork(i);
+			engine.register(forks[i], "fork" + i, true);
+			engine.register(new Philosophers(i, (i + 1) % philosophers, true), "philosopher" + i, true);
+		}
+		try {
+			engine.start();
+			engine.execute();
+			long start = System.nanoTime();
+			while (engine.getNumberOfCycles() < cycles) {
+				if (System.nanoTime() - start > TIMEOUT) {
+					fail("The engine stalled after " + engine.getNumberOfCycles() + " cycles of " + cycles + ".");
+				}
+				Thread.sleep(1);
+			}
+		} finally {
+			engine.stop();
+		}
+		Thread.sleep(QUIET_MILLIS);
+
+		int[] used = new int[philosophers];
+		long taken = 0;
+		for (int i = 0; i < philosophers; i++) {
+			used[i] = forks[i].noOfTimesUsed();
+			taken += used[i];
+		}
+		/*
+		 * A fork is taken and freed in interactions of their own, and at most every fork is still taken at the end.
+		 * The interactions of the last cycle may still be executing when the engine stops.
+		 */
+		long executed = engine.getNumberOfCycles();
+		assertTrue("The forks were taken " + taken + " times in " + executed + " cycles.",
+				2 * taken <= executed + philosophers + 1);
+		return used;
+	}
+
+}
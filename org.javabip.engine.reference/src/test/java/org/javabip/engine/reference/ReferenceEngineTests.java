@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.engine.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Runs the examples end to end on the reference engine.
+ */
+public class ReferenceEngineTests {
+
+	@Test
+	public void hanoiTowersAreMoved() throws InterruptedException {
+		for (int disks = 1; disks <= 6; disks++) {
+			assertEquals("The moves for " + disks + " pieces", (1 << disks) - 1,
+					ExampleSystems.hanoi(new ReferenceEngine(), disks));
+		}
+	}
+
+	@Test
+	public void diningPhilosophersKeepEating() throws InterruptedException {
+		int[] used = ExampleSystems.dining(new ReferenceEngine(), 5, 2000);
+		for (int i = 0; i < used.length; i++) {
+			assertTrue("The fork " + i + " was never taken.", used[i] > 0);
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Data is asked for many times per interaction, the event has to be enabled explicitly.
+ */
+@Name("org.javabip.DataOut")
+@Label("Data Out")
+@Category({ "JavaBIP", "Executor" })
+@Description("A data out value is asked for")
+@Enabled(false)
+class DataOutEvent extends jdk.jfr.Event {
+
+	@Label("Component Type")
+	String componentType;
+
+	@Label("Data")
+	String data;
+
+	@Label("From Cache")
+	@Description("True if the value computed earlier was returned")
+	boolean fromCache;
+
+}
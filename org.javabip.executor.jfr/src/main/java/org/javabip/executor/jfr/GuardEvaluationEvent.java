@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Guards are evaluated several times per cycle, the event has to be enabled explicitly.
+ */
+@Name("org.javabip.GuardEvaluation")
+@Label("Guard Evaluation")
+@Category({ "JavaBIP", "Executor" })
+@Description("An invocation of a guard method")
+@Enabled(false)
+class GuardEvaluationEvent extends jdk.jfr.Event {
+
+	@Label("Component Type")
+	String componentType;
+
+	@Label("Guard")
+	String guard;
+
+	@Label("With Data")
+	boolean withData;
+
+	@Label("Value")
+	boolean value;
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+import org.javabip.executor.ExecutorEvents;
+
+/**
+ * Records the executor events with Java Flight Recorder. It is found by the executors with the ServiceLoader.
+ * 
+ * Each kind of event is reported by the executors only while its event type is enabled in a running recording, so
+ * that the executors neither time nor create the events of the disabled types. The events spanning an activity are
+ * begun when it starts and committed when it ends, their duration is the one of the activity and the threshold
+ * setting of their type applies. The other events are instant, see their classes.
+ */
+public class JfrExecutorEvents extends ExecutorEvents {
+
+	private final EventType[] types = new EventType[Kind.values().length];
+
+	public JfrExecutorEvents() {
+		types[Kind.STEP.ordinal()] = EventType.getEventType(StepEvent.class);
+		types[Kind.GUARD_EVALUATION.ordinal()] = EventType.getEventType(GuardEvaluationEvent.class);
+		types[Kind.GUARD_FAILURE.ordinal()] = EventType.getEventType(GuardFailureEvent.class);
+		types[Kind.TRANSITION.ordinal()] = EventType.getEventType(TransitionEvent.class);
+		types[Kind.INFORM.ordinal()] = EventType.getEventType(InformEvent.class);
+		types[Kind.SPONTANEOUS_ENQUEUE.ordinal()] = EventType.getEventType(SpontaneousEnqueueEvent.class);
+		types[Kind.SPONTANEOUS_DEQUEUE.ordinal()] = EventType.getEventType(SpontaneousDequeueEvent.class);
+		types[Kind.DATA_OUT.ordinal()] = EventType.getEventType(DataOutEvent.class);
+	}
+
+	@Override
+	public boolean isRecording(Kind kind) {
+		return types[kind.ordinal()].isEnabled();
+	}
+
+	@Override
+	public Object begin(Kind kind) {
+		if (!types[kind.ordinal()].isEnabled()) {
+			return null;
+		}
+		Event event;
+		switch (kind) {
+		case STEP:
+			event = new StepEvent();
+			break;
+		case GUARD_EVALUATION:
+			event = new GuardEvaluationEvent();
+			break;
+		case TRANSITION:
+			event = new TransitionEvent();
+			break;
+		case INFORM:
+			event = new InformEvent();
+			break;
+		case DATA_OUT:
+			event = new DataOutEvent();
+			break;
+		default:
+			throw new IllegalArgumentException("The events of kind " + kind + " are instant, they are not begun.");
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void step(Object begun, String componentId, String componentType, String state, String outcome) {
+		StepEvent event = (StepEvent) begun;
+		event.end();
+		if (event.shouldCommit()) {
+			event.componentId = componentId;
+			event.componentType = componentType;
+			event.state = state;
+			event.outcome = outcome;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void guardEvaluation(Object begun, String componentType, String guard, boolean withData, boolean value) {
+		GuardEvaluationEvent event = (GuardEvaluationEvent) begun;
+		event.end();
+		if (event.shouldCommit()) {
+			event.componentType = componentType;
+			event.guard = guard;
+			event.withData = withData;
+			event.value = value;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void guardFailure(String componentType, String guard, boolean withData, Throwable cause) {
+		GuardFailureEvent event = new GuardFailureEvent();
+		if (event.shouldCommit()) {
+			event.componentType = componentType;
+			event.guard = guard;
+			event.withData = withData;
+			event.exceptionClass = cause.getClass();
+			event.message = cause.getMessage();
+			event.commit();
+		}
+	}
+
+	@Override
+	public void transition(Object begun, String componentType, String transition, String source, String target) {
+		TransitionEvent event = (TransitionEvent) begun;
+		event.end();
+		if (event.shouldCommit()) {
+			event.componentType = componentType;
+			event.transition = transition;
+			event.source = source;
+			event.target = target;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void inform(Object begun, String componentId, String componentType, String state, int disabledPorts) {
+		InformEvent event = (InformEvent) begun;
+		event.end();
+		if (event.shouldCommit()) {
+			event.componentId = componentId;
+			event.componentType = componentType;
+			event.state = state;
+			event.disabledPorts = disabledPorts;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void spontaneousEnqueued(String componentId, String port, boolean withData) {
+		SpontaneousEnqueueEvent event = new SpontaneousEnqueueEvent();
+		if (event.shouldCommit()) {
+			event.componentId = componentId;
+			event.port = port;
+			event.withData = withData;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void spontaneousDequeued(String componentId, String port, long enqueued) {
+		SpontaneousDequeueEvent event = new SpontaneousDequeueEvent();
+		if (event.shouldCommit()) {
+			event.queued = enqueued == 0 ? 0 : System.nanoTime() - enqueued;
+			event.componentId = componentId;
+			event.port = port;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void dataOut(Object begun, String componentType, String data, boolean fromCache) {
+		DataOutEvent event = (DataOutEvent) begun;
+		event.end();
+		if (event.shouldCommit()) {
+			event.componentType = componentType;
+			event.data = data;
+			event.fromCache = fromCache;
+			event.commit();
+		}
+	}
+
+}
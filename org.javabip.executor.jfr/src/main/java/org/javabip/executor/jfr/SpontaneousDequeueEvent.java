@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * An instant event committed when the event is taken, its duration is zero and a threshold set on it has no effect.
+ * The time spent in the queue, measured from another thread, is the field queued.
+ */
+@Name("org.javabip.SpontaneousDequeue")
+@Label("Spontaneous Event Executed")
+@Category({ "JavaBIP", "Executor" })
+@Description("A spontaneous event is taken by an executor to be executed")
+class SpontaneousDequeueEvent extends jdk.jfr.Event {
+
+	@Label("Component Id")
+	String componentId;
+
+	@Label("Port")
+	String port;
+
+	@Label("Queued")
+	@Description("The time the event waited to be executed, 0 if it was received before the recording started")
+	@Timespan(Timespan.NANOSECONDS)
+	long queued;
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.javabip.Step")
+@Label("Executor Step")
+@Category({ "JavaBIP", "Executor" })
+@Description("An execution cycle of an executor")
+class StepEvent extends jdk.jfr.Event {
+
+	@Label("Component Id")
+	String componentId;
+
+	@Label("Component Type")
+	String componentType;
+
+	@Label("State")
+	@Description("The state of the component when the cycle started")
+	String state;
+
+	@Label("Outcome")
+	@Description("What the cycle did: internal, spontaneous, inform, waiting or none")
+	String outcome;
+
+}
@@ -31,6 +31,7 @@ import java.util.Map;
 
 import org.javabip.api.ComponentProvider;
 import org.javabip.api.Data;
+import org.javabip.api.DataOut.AccessType;
 import org.javabip.api.ExecutableBehaviour;
 import org.javabip.api.Guard;
 import org.javabip.api.Port;
@@ -82,6 +83,22 @@ public class BehaviourBuilder {
 	 * @throws BIPException
 	 */
 	public ExecutableBehaviour build(ComponentProvider provider) throws BIPException {
+		return buildBehaviour(provider);
+	}
+
+	/*
+	 * Builds the behaviour and returns it with its implementation type, so the executor can use the index based guard
+	 * evaluation.
+	 */
+	BehaviourImpl buildBehaviour(ComponentProvider provider) throws BIPException {
+		return new BehaviourImpl(buildTemplate(), provider, component);
+	}
+
+	/*
+	 * Builds the part of the behaviour which does not depend on the component instance. When the behaviour comes from
+	 * the annotations of the component class, the template is built once and shared by all the instances of the class.
+	 */
+	BehaviourTemplate buildTemplate() throws BIPException {
 
 		if (componentType == null || componentType.isEmpty()) {
 			throw new NullPointerException("Component type for object " + component + " cannot be null or empty.");
@@ -104,28 +121,18 @@ public class BehaviourBuilder {
 			throw new NullPointerException("The component object of type " + componentType + " cannot be null.");
 		}
 
-		ArrayList<Port> componentPorts = new ArrayList<Port>();
-		// We need to create new ports here as there was no provider information available when the specification was
-		// parsed.
-		for (Port port : this.allPorts.values()) {
-			componentPorts.add(new PortImpl(port.getId(), port.getType(), port.getSpecType(), provider));
+		// Each guard gets an index, compiled guard expressions refer to guards by their index.
+		ArrayList<Guard> indexedGuards = new ArrayList<Guard>(guards.values());
+		HashMap<String, Integer> guardIndices = new HashMap<String, Integer>();
+		for (int i = 0; i < indexedGuards.size(); i++) {
+			guardIndices.put(indexedGuards.get(i).name(), i);
 		}
 
-		Map<String, Port> allEnforceablePorts = new HashMap<String, Port>();
-		for (Port port : componentPorts) {
-			if (port.getType().equals(PortType.enforceable))
-				allEnforceablePorts.put(port.getId(), port);
-		}
-
-		for (DataOutImpl<?> data : dataOut) {
-			data.computeAllowedPort(allEnforceablePorts);
-		}
-
-		return new BehaviourImpl(componentType, currentState, transformIntoExecutableTransition(), componentPorts,
-				states, guards.values(), dataOut, dataOutName, component);
+		return new BehaviourTemplate(componentType, currentState, transformIntoExecutableTransition(guardIndices),
+				new ArrayList<Port>(allPorts.values()), states, indexedGuards, dataOut, dataOutName);
 	}
 
-	private ArrayList<ExecutableTransition> transformIntoExecutableTransition() {
+	private ArrayList<ExecutableTransition> transformIntoExecutableTransition(Map<String, Integer> guardIndices) {
 
 		HashMap<String, Port> mapIdToPort = new HashMap<String, Port>();
 		for (Port port : allPorts.values())
@@ -138,13 +145,15 @@ public class BehaviourBuilder {
 			// TODO DESIGN, what are exactly different ways of specifying that the port is internal. We need to be
 			// specific about it in spec.
 			if (transition.name().equals("")) {
-				transformedAllTransitions.add(new ExecutableTransitionImpl(transition, PortType.internal, guards));
+				transformedAllTransitions.add(new ExecutableTransitionImpl(transition, PortType.internal, guards,
+						guardIndices));
 				continue;
 			}
 
 			PortType transitionPortType = mapIdToPort.get(transition.name()).getType();
 
-			transformedAllTransitions.add(new ExecutableTransitionImpl(transition, transitionPortType, guards));
+			transformedAllTransitions.add(new ExecutableTransitionImpl(transition, transitionPortType, guards,
+					guardIndices));
 		}
 
 		return transformedAllTransitions;
@@ -365,7 +374,23 @@ public class BehaviourBuilder {
 	 *            the list of data required for the guard to be computed
 	 */
 	public void addGuard(String name, Method method, List<Data<?>> data) {
-		guards.put(name, new GuardImpl(name, method, data));
+		addGuard(name, method, data, false);
+	}
+
+	/**
+	 * Allows to add a new guard, telling whether it is free of side effects.
+	 * 
+	 * @param name
+	 *            the name of the guard
+	 * @param method
+	 *            the method the guard represents
+	 * @param data
+	 *            the list of data required for the guard to be computed
+	 * @param pure
+	 *            true, if the guard can be evaluated concurrently for different data values
+	 */
+	public void addGuard(String name, Method method, List<Data<?>> data, boolean pure) {
+		guards.put(name, new GuardImpl(name, method, data, pure));
 	}
 
 	/**
@@ -398,6 +423,46 @@ public class BehaviourBuilder {
 
 	}
 
+	/**
+	 * Allows to add a new output data given the method providing it and the description of the data. Unlike the other
+	 * variants it does not read the annotations of the method, it is used by the generated behaviour factories.
+	 * 
+	 * @param method
+	 *            the method providing the data
+	 * @param name
+	 *            the name of the data
+	 * @param accessType
+	 *            the access type of the data
+	 * @param ports
+	 *            the ports corresponding to the access type of the data
+	 */
+	public void addDataOut(Method method, String name, AccessType accessType, String[] ports) {
+		addDataOut(method, name, accessType, ports, true);
+	}
+
+	/**
+	 * Allows to add a new output data given the method providing it and the description of the data, telling whether
+	 * the value of the data can be cached between transitions.
+	 * 
+	 * @param method
+	 *            the method providing the data
+	 * @param name
+	 *            the name of the data
+	 * @param accessType
+	 *            the access type of the data
+	 * @param ports
+	 *            the ports corresponding to the access type of the data
+	 * @param cached
+	 *            true, if the value of the data can be kept until the component executes its next transition
+	 */
+	public void addDataOut(Method method, String name, AccessType accessType, String[] ports, boolean cached) {
+
+		DataOutImpl<?> data = ReflectionHelper.createData(name, method.getReturnType(), accessType, ports, cached);
+		dataOut.add(data);
+		dataOutName.put(data.name(), getMethodHandleFromMethod(method));
+
+	}
+
 	private MethodHandle getMethodHandleFromMethod(Method method) {
 		MethodType methodType;
 		MethodHandle methodHandle = null;
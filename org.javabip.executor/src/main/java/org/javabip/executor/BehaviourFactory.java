@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import org.javabip.api.Data;
+
+/**
+ * Creates the behaviour builder of a component class without reflecting on its annotations. The implementations are
+ * generated at compile time by the BIP annotation processor, one per class annotated with ComponentType, and are
+ * picked up by SpecificationParser instead of parsing the annotations at runtime.
+ * 
+ * The factory of the class a.b.Outer$Inner is the class a.b.Outer_Inner_BIPBehaviour.
+ * 
+ * A factory is used once per component class, the behaviour it builds becomes the template of all the instances of
+ * the class. The generated factories still look up the annotated methods with Class.getMethod, this reflection is paid
+ * once per class and not per component instance.
+ */
+public abstract class BehaviourFactory {
+
+	/**
+	 * The suffix of the name of a generated behaviour factory.
+	 */
+	public static final String SUFFIX = "_BIPBehaviour";
+
+	/**
+	 * Creates the behaviour builder for the component.
+	 * 
+	 * @param component
+	 *            the component, an instance of the class the factory was generated for.
+	 * @return the behaviour builder filled in with the information of the annotations.
+	 * @throws NoSuchMethodException
+	 *             when the class no longer corresponds to the class the factory was generated from.
+	 */
+	public abstract BehaviourBuilder create(Object component) throws NoSuchMethodException;
+
+	/**
+	 * Creates the data required by a transition or a guard.
+	 * 
+	 * @param dataName
+	 *            the name of the data
+	 * @param type
+	 *            the type of the data
+	 * @return the new Data instance
+	 */
+	protected static <T> Data<T> createData(String dataName, Class<T> type) {
+		return ReflectionHelper.createData(dataName, type);
+	}
+
+}
@@ -19,9 +19,14 @@
 package org.javabip.executor;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -29,8 +34,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.javabip.api.ComponentProvider;
 import org.javabip.api.Data;
-import org.javabip.api.DataOut;
 import org.javabip.api.ExecutableBehaviour;
 import org.javabip.api.Guard;
 import org.javabip.api.Port;
@@ -48,259 +53,259 @@ import org.slf4j.LoggerFactory;
  */
 class BehaviourImpl implements ExecutableBehaviour {
 
-	private String currentState;
+	/**
+	 * The part of the behaviour shared by all the instances of the component class
+	 */
+	private final BehaviourTemplate template;
 
-	private String componentType;
+	private String currentState;
 
-	private Set<String> states;
-	private ArrayList<Port> allPorts;
-	private ArrayList<Port> enforceablePorts;
-	private Map<String, Port> spontaneousPorts;
 	/**
-	 * For each port provides data it needs for guards
+	 * The dense identifier of the current state, used to index the per state transition arrays.
 	 */
-	private Hashtable<Port, Set<Data<?>>> portToDataInForGuard;
+	private int currentStateId;
+
 	/**
-	 * For each port provides data it needs for transitions
+	 * The ports of this component, at the indexes of the ports of the template
 	 */
-	private Hashtable<Port, Set<Data<?>>> portToDataInForTransition;
+	private final Port[] ports;
 
 	/**
-	 * Maps state to its transitions
+	 * For each state identifier, the immutable sets of globally disabled ports computed so far, indexed by the bit mask
+	 * of the disabled transitions within the guarded enforceable transitions of the state. The sets of a state are
+	 * allocated the first time they are needed.
 	 */
-	private Hashtable<String, ArrayList<ExecutableTransition>> stateTransitions;
+	private Set<Port>[][] disabledPortsByState;
+
 	/**
-	 * Maps state to its enforceable ports
+	 * Argument arrays reused by the invocations of guards and transitions, indexed by the number of data the method
+	 * needs.
 	 */
-	private Hashtable<String, Set<Port>> stateToPorts;
-	// TODO DISCUSS since it's a hashtable, there cannot be several transitions with the same name
-	// for different data variables (see theory?)
+	private final Object[][] argsByArity;
+
 	/**
-	 * Gives a Transition instance from two keys - first key is currentState, second key is transition name.
+	 * The method handles of the guards, transitions and data out methods bound to the component instance. A method
+	 * without parameters gets the type ()R, a method with parameters gets the type (Object[])R spreading the array of
+	 * its data values, where R is boolean for guards, void for transitions and Object for data out methods. The handles
+	 * are invoked with invokeExact. They are indexed as the guards, transitions and data out of the template.
 	 */
-	private Hashtable<String, Hashtable<String, ExecutableTransition>> nameToTransition;
-
-	private ArrayList<ExecutableTransition> allTransitions;
-	private ArrayList<ExecutableTransition> internalTransitions;
-	private ArrayList<ExecutableTransition> spontaneousTransitions;
-	private ArrayList<ExecutableTransition> enforceableTransitions;
+	private MethodHandle[] boundGuards;
+	private MethodHandle[] boundTransitions;
+	private MethodHandle[] boundDataOut;
 	/**
-	 * for each enforceable transition get its port instance
+	 * The guards and the transitions with data bound to the slots of their data, of the type (DataSlots)R, see
+	 * DataSlots.bind. The arguments are read from the slots, the primitive ones without boxing. The entries of the
+	 * methods without data are null.
 	 */
-	private Hashtable<ExecutableTransition, Port> transitionToPort;
-
+	private MethodHandle[] slotGuards;
+	private MethodHandle[] slotTransitions;
 	/**
-	 * The list of guards whose evaluation does not depend on data
+	 * The values of the data out variables obtained since the last transition, indexed as the data out of the template.
+	 * A value is valid if its stamp is the number of transitions started so far.
 	 */
-	private ArrayList<Guard> guardsWithoutData;
+	private Object[] dataOutValues;
+	private long[] dataOutStamps;
+	private long transitionsStarted = 1;
 	/**
-	 * The list of guards whose evaluation depends on data
+	 * The data out methods bound with the return types int, long and double, created the first time the data is asked
+	 * for as a primitive value.
 	 */
-	private ArrayList<Guard> guardsWithData;
+	private MethodHandle[] boundIntDataOut;
+	private MethodHandle[] boundLongDataOut;
+	private MethodHandle[] boundDoubleDataOut;
 
+	private ComponentMetrics metrics = ComponentMetrics.NOOP;
 	/**
-	 * The list of dataOut variables for this component
+	 * The valuation reused by the enabledness checks with data
 	 */
-	private ArrayList<DataOutImpl<?>> dataOut;
+	private GuardValuation dataValuation;
 
 	/**
-	 * The map between the name of the out variable and the method computing it
+	 * The structures of the template expressed with the ports of this component, created when they are first asked for
 	 */
-	private Hashtable<String, MethodHandle> dataOutName;
-
-	private Map<String, List<Port>> dataFromTransitionToPorts;
-	private Map<String, List<Port>> dataFromGuardsToPorts;
-	private Map<String, List<Port>> portsNeedingData;
+	private PortViews portViews;
 
-	private Object bipComponent;
-	private Class<?> componentClass;
+	private final Object bipComponent;
+	private final Class<?> componentClass;
 
 	private Logger logger = LoggerFactory.getLogger(BehaviourImpl.class);
 
 	// ******************************** Constructors *********************************************
 
 	/**
-	 * Creation of Behaviour without providing dataOut. However, there can be some dataIn hidden in guards and
-	 * transitions
+	 * Creation of Behaviour of a component from the template of its class.
 	 * 
-	 * @param componentType
-	 * @param currentState
-	 * @param allTransitions
-	 * @param allPorts
-	 * @param states
-	 * @param guards
+	 * @param template
+	 *            the template, possibly shared with the other components of the same class
+	 * @param provider
+	 *            the component provider for the ports
 	 * @param component
 	 * @throws BIPException
 	 */
-	public BehaviourImpl(String componentType, String currentState, ArrayList<ExecutableTransition> allTransitions,
-			ArrayList<Port> allPorts, HashSet<String> states, Collection<Guard> guards, Object component)
+	public BehaviourImpl(BehaviourTemplate template, ComponentProvider provider, Object component)
 			throws BIPException {
 
-		this.componentType = componentType;
-		this.currentState = currentState;
-		this.allTransitions = allTransitions;
-		this.allPorts = allPorts;
-		this.states = new HashSet<String>(states);
-		this.guardsWithoutData = new ArrayList<Guard>();
-		this.guardsWithData = new ArrayList<Guard>();
-		for (Guard guard : guards) {
-			if (guard.hasData()) {
-				this.guardsWithData.add(guard);
-			} else {
-				this.guardsWithoutData.add(guard);
-			}
-		}
+		this.template = template;
+		this.currentState = template.initialState;
+		this.currentStateId = template.stateId(currentState);
 		this.bipComponent = component;
 		this.componentClass = bipComponent.getClass();
 
-		portToDataInForGuard = new Hashtable<Port, Set<Data<?>>>();
-		portToDataInForTransition = new Hashtable<Port, Set<Data<?>>>();
-		dataFromTransitionToPorts = new HashMap<String, List<Port>>();
-		dataFromGuardsToPorts = new HashMap<String, List<Port>>();
-		portsNeedingData = new HashMap<String, List<Port>>();
-		enforceablePorts = new ArrayList<Port>();
-		spontaneousPorts = new Hashtable<String, Port>();
-		for (Port port : allPorts) {
-			if (port.getType() == PortType.enforceable) {
-				enforceablePorts.add(port);
-				portToDataInForGuard.put(port, new HashSet<Data<?>>());
-				portToDataInForTransition.put(port, new HashSet<Data<?>>());
-			}
-			if (port.getType() == PortType.spontaneous)
-				spontaneousPorts.put(port.getId(), port);
+		// We need to create new ports here as the ports of the template are not attached to any component.
+		this.ports = new Port[template.ports.length];
+		for (int i = 0; i < ports.length; i++) {
+			Port port = template.ports[i];
+			ports[i] = new PortImpl(port.getId(), port.getType(), port.getSpecType(), provider);
 		}
+		this.disabledPortsByState = newPortSetsByState(template.states.size());
 
-		stateToPorts = new Hashtable<String, Set<Port>>(states.size());
-		stateTransitions = new Hashtable<String, ArrayList<ExecutableTransition>>();
-		nameToTransition = new Hashtable<String, Hashtable<String, ExecutableTransition>>();
-		for (String state : states) {
-			stateToPorts.put(state, new HashSet<Port>());
-			stateTransitions.put(state, new ArrayList<ExecutableTransition>());
-			nameToTransition.put(state, new Hashtable<String, ExecutableTransition>());
+		argsByArity = new Object[template.maxArity + 1][];
+		for (int arity = 0; arity <= template.maxArity; arity++) {
+			argsByArity[arity] = new Object[arity];
 		}
 
-		HashMap<String, Port> mapIdToPort = new HashMap<String, Port>();
-		for (Port port : allPorts)
-			mapIdToPort.put(port.getId(), port);
-
-		this.internalTransitions = new ArrayList<ExecutableTransition>();
-		this.spontaneousTransitions = new ArrayList<ExecutableTransition>();
-		this.enforceableTransitions = new ArrayList<ExecutableTransition>();
-		for (ExecutableTransition transition : allTransitions) {
-
-			stateTransitions.get(transition.source()).add(transition);
-			nameToTransition.get(transition.source()).put(transition.name(), transition);
+		bindMethodHandles();
 
-			switch (transition.getType()) {
-			case enforceable:
-				enforceableTransitions.add(transition);
-				break;
-
-			case internal:
-				internalTransitions.add(transition);
-				break;
-
-			case spontaneous:
-				spontaneousTransitions.add(transition);
-				break;
+	}
 
-			default:
-				break;
+	/*
+	 * Binds the method handles to the component instance. It is checked here, once, that the methods belong to the
+	 * class of the component.
+	 */
+	private void bindMethodHandles() throws BIPException {
+
+		Guard[] guards = template.guards;
+		boundGuards = new MethodHandle[guards.length];
+		for (int i = 0; i < guards.length; i++) {
+			GuardImpl guard = (GuardImpl) guards[i];
+			checkDeclaringClass(guard.method());
+			try {
+				boundGuards[i] = bind(guard.methodHandle(), boolean.class, template.guardDataNames[i].length);
+			} catch (WrongMethodTypeException e) {
+				throw new BIPException("The guard " + guard.name() + " of component " + template.componentType
+						+ " must return a boolean value.", e);
 			}
 		}
 
-		transitionToPort = new Hashtable<ExecutableTransition, Port>();
-		for (ExecutableTransition transition : enforceableTransitions) {
-
-			Port port = mapIdToPort.get(transition.name());
-
-			transitionToPort.put(transition, port);
-
-			if (transition.hasGuard()) {
-				Set<Data<?>> portGuardData = portToDataInForGuard.get(port);
-				for (Guard guard : transition.transitionGuards()) {
-					portGuardData.addAll(guard.dataRequired());
-					for (Data<?> data : guard.dataRequired()) {
-						// for each data in guard data, add it to guard collection
-						if (!dataFromGuardsToPorts.containsKey(data.name())) {
-							ArrayList<Port> dataPorts = new ArrayList<Port>();
-							dataPorts.add(port);
-							dataFromGuardsToPorts.put(data.name(), dataPorts);
-						} else {
-							if (!dataFromGuardsToPorts.get(data.name()).contains(port)) {
-								dataFromGuardsToPorts.get(data.name()).add(port);
-							}
-						}
-						// for each data in guard data, add it to general collection (if not there)
-						updatePortsNeedingData(port, data);
-					}
-				}
-			}
+		boundTransitions = new MethodHandle[template.allTransitions.size()];
+		for (int i = 0; i < boundTransitions.length; i++) {
+			ExecutableTransition transition = template.allTransitions.get(i);
+			checkDeclaringClass(transition.method());
+			boundTransitions[i] = bind(transition.methodHandle(), void.class, template.transitionArity[i]);
+		}
 
-			// (foreach is in enforceable but not in all)
-			Set<Data<?>> portTransitionData = portToDataInForTransition.get(port);
-			for (Data<?> data : transition.dataRequired()) {
-				// for each data in transitions data, add it to transition collection
-				if (!dataFromTransitionToPorts.containsKey(data.name())) {
-					ArrayList<Port> dataPorts = new ArrayList<Port>();
-					dataPorts.add(port);
-					dataFromTransitionToPorts.put(data.name(), dataPorts);
-				} else {
-					if (!dataFromTransitionToPorts.get(data.name()).contains(port)) {
-						dataFromTransitionToPorts.get(data.name()).add(port);
-					}
-				}
-				// for each data in transition data, add it to general collection (if not there)
-				updatePortsNeedingData(port, data);
-				portTransitionData.add(data);
+		slotGuards = new MethodHandle[guards.length];
+		for (int i = 0; i < guards.length; i++) {
+			if (boundGuards[i] != null && template.guardDataSlots[i].length != 0) {
+				slotGuards[i] = DataSlots.bind(((GuardImpl) guards[i]).methodHandle().bindTo(bipComponent),
+						boolean.class, template.guardDataSlots[i]);
 			}
-
-			Set<Port> stateports = stateToPorts.get(transition.source());
-			if (stateports == null) {
-				throw new BIPException("The source state " + transition.source() + " for transition "
-						+ transition.name() + " is not in the list of states of component " + componentType);
+		}
+		slotTransitions = new MethodHandle[boundTransitions.length];
+		for (int i = 0; i < boundTransitions.length; i++) {
+			if (boundTransitions[i] != null && template.transitionArity[i] != 0
+					&& template.transitionDataSlots[i].length == template.transitionArity[i]) {
+				slotTransitions[i] = DataSlots.bind(template.allTransitions.get(i).methodHandle()
+						.bindTo(bipComponent), void.class, template.transitionDataSlots[i]);
 			}
-			stateports.add(port);
+		}
 
+		boundDataOut = new MethodHandle[template.dataOut.size()];
+		for (int i = 0; i < boundDataOut.length; i++) {
+			boundDataOut[i] = bind(template.dataOutName.get(template.dataOut.get(i).name()), Object.class, 0);
 		}
+		dataOutValues = new Object[boundDataOut.length];
+		dataOutStamps = new long[boundDataOut.length];
 
+		dataValuation = newGuardValuation();
 	}
 
-	private void updatePortsNeedingData(Port port, Data<?> data) {
-		if (!portsNeedingData.containsKey(data.name())) {
-			ArrayList<Port> dataPorts = new ArrayList<Port>();
-			dataPorts.add(port);
-			portsNeedingData.put(data.name(), dataPorts);
-		} else {
-			if (!portsNeedingData.get(data.name()).contains(port)) {
-				portsNeedingData.get(data.name()).add(port);
-			}
+	private void checkDeclaringClass(java.lang.reflect.Method method) throws BIPException {
+		if (!method.getDeclaringClass().isAssignableFrom(componentClass)) {
+			throw new BIPException("The method " + method.getName() + " belongs to the class "
+					+ method.getDeclaringClass().getName() + " but not  to the class of the component "
+					+ componentClass.getName());
 		}
 	}
 
-	/**
-	 * Creation of Behaviour with dataOut.
-	 * 
-	 * @param type
-	 * @param currentState
-	 * @param allTransitions
-	 * @param allPorts
-	 * @param states
-	 * @param guards
-	 * @param dataOut
-	 * @param component
-	 * @throws BIPException
+	/*
+	 * A missing handle has already been reported when the behaviour was built, the invocation fails as it used to.
 	 */
-	public BehaviourImpl(String type, String currentState, ArrayList<ExecutableTransition> allTransitions,
-			ArrayList<Port> allPorts, HashSet<String> states, Collection<Guard> guards,
-			ArrayList<DataOutImpl<?>> dataOut, Hashtable<String, MethodHandle> dataOutName, Object component)
-			throws BIPException {
+	private MethodHandle bind(MethodHandle handle, Class<?> returnType, int noOfParameters) {
+		if (handle == null) {
+			return null;
+		}
+		MethodHandle bound = handle.bindTo(bipComponent);
+		if (noOfParameters == 0) {
+			return bound.asType(MethodType.methodType(returnType));
+		}
+		return bound.asSpreader(Object[].class, noOfParameters).asType(
+				MethodType.methodType(returnType, Object[].class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<Port>[][] newPortSetsByState(int size) {
+		return new Set[size][];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<Port>[] newPortSets(int size) {
+		return new Set[size];
+	}
+
+	/*
+	 * The structures of the template referring to ports, expressed with the ports of this component.
+	 */
+	private final class PortViews {
+
+		private final List<Port> enforceablePorts;
+		private final Map<String, Set<Port>> stateToPorts;
+		private final Map<Port, Set<Data<?>>> portToDataInForGuard;
+		private final Map<Port, Set<Data<?>>> portToDataInForTransition;
+		private final Map<String, List<Port>> portsNeedingData;
+
+		private PortViews() {
+
+			ArrayList<Port> enforceable = new ArrayList<Port>(template.enforceablePorts.length);
+			Hashtable<Port, Set<Data<?>>> dataForGuard = new Hashtable<Port, Set<Data<?>>>();
+			Hashtable<Port, Set<Data<?>>> dataForTransition = new Hashtable<Port, Set<Data<?>>>();
+			for (int i : template.enforceablePorts) {
+				enforceable.add(ports[i]);
+				dataForGuard.put(ports[i], Collections.unmodifiableSet(template.portToDataInForGuard[i]));
+				dataForTransition.put(ports[i], Collections.unmodifiableSet(template.portToDataInForTransition[i]));
+			}
+			this.enforceablePorts = Collections.unmodifiableList(enforceable);
+			this.portToDataInForGuard = Collections.unmodifiableMap(dataForGuard);
+			this.portToDataInForTransition = dataForTransition;
+
+			Hashtable<String, Set<Port>> statePorts = new Hashtable<String, Set<Port>>(template.states.size());
+			for (Map.Entry<String, int[]> entry : template.stateToPorts.entrySet()) {
+				HashSet<Port> portsOfState = new HashSet<Port>();
+				for (int i : entry.getValue()) {
+					portsOfState.add(ports[i]);
+				}
+				statePorts.put(entry.getKey(), Collections.unmodifiableSet(portsOfState));
+			}
+			this.stateToPorts = Collections.unmodifiableMap(statePorts);
 
-		this(type, currentState, allTransitions, allPorts, states, guards, component);
+			HashMap<String, List<Port>> dataPorts = new HashMap<String, List<Port>>();
+			for (Map.Entry<String, int[]> entry : template.portsNeedingData.entrySet()) {
+				ArrayList<Port> portsOfData = new ArrayList<Port>(entry.getValue().length);
+				for (int i : entry.getValue()) {
+					portsOfData.add(ports[i]);
+				}
+				dataPorts.put(entry.getKey(), Collections.unmodifiableList(portsOfData));
+			}
+			this.portsNeedingData = dataPorts;
+		}
 
-		this.dataOut = dataOut;
-		this.dataOutName = dataOutName;
+	}
 
+	private synchronized PortViews portViews() {
+		if (portViews == null) {
+			portViews = new PortViews();
+		}
+		return portViews;
 	}
 
 	// *************************** End of Constructors *******************************************
@@ -310,68 +315,195 @@ class BehaviourImpl implements ExecutableBehaviour {
 		return currentState;
 	}
 
-	private ExecutableTransition getTransition(String state, String transitionName) {
-		return nameToTransition.get(state).get(transitionName);
+	private ExecutableTransition getTransitionFromCurrentState(String transitionName) {
+		return template.nameToTransitionByState.get(currentStateId).get(transitionName);
 	}
 
 	public Set<String> getStates() {
-		return states;
+		return template.states;
 	}
 
 	public Map<String, Set<Port>> getStateToPorts() {
-		return stateToPorts;
+		return portViews().stateToPorts;
 	}
 
 	public Iterable<Port> getAllPorts() {
-		return this.allPorts;
+		return Collections.unmodifiableList(Arrays.asList(ports));
 	}
 
 	public List<Port> getEnforceablePorts() {
-		return enforceablePorts;
+		return portViews().enforceablePorts;
 	}
 
 	public String getComponentType() {
-		return this.componentType;
+		return template.componentType;
 	}
 
 	public Iterable<Guard> getGuardsWithoutData() {
-		return this.guardsWithoutData;
+		return template.guardsWithoutData;
+	}
+
+	/**
+	 * Creates an empty valuation for the guards of this behaviour. The valuation is meant to be reused from one
+	 * execution cycle to the next.
+	 * 
+	 * @return the guard valuation.
+	 */
+	GuardValuation newGuardValuation() {
+		GuardValuation valuation = new GuardValuation(template.componentType, template.guards, boundGuards,
+				slotGuards);
+		valuation.setMetrics(metrics);
+		return valuation;
+	}
+
+	/**
+	 * Sets the recorder of the metrics of the transitions and of the guards evaluated by this behaviour. The
+	 * valuations created by the executor have to be given the recorder as well.
+	 * 
+	 * @param metrics
+	 *            the recorder.
+	 */
+	void setMetrics(ComponentMetrics metrics) {
+		this.metrics = metrics;
+		dataValuation.setMetrics(metrics);
 	}
 
 	public Map<String, MethodHandle> getDataOutMapping() {
-		return dataOutName;
+		return template.dataOutName;
+	}
+
+	/**
+	 * Provides the value of the data out variable. The value is computed at most once between two transitions of the
+	 * component, unless the data is not to be cached.
+	 * 
+	 * @param dataName
+	 *            the name of the data out variable.
+	 * @return the value of the data.
+	 * @throws Throwable
+	 *             the exception thrown by the method computing the data, or NullPointerException if there is no such
+	 *             data.
+	 */
+	Object getDataOutValue(String dataName) throws Throwable {
+		int index = template.dataOutIndex.get(dataName);
+		Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.DATA_OUT);
+		if (dataOutStamps[index] == transitionsStarted) {
+			if (event != null) {
+				ExecutorEvents.INSTANCE.dataOut(event, template.componentType, dataName, true);
+			}
+			return dataOutValues[index];
+		}
+		Object value = boundDataOut[index].invokeExact();
+		if (template.dataOut.get(index).isCached()) {
+			dataOutValues[index] = value;
+			dataOutStamps[index] = transitionsStarted;
+		}
+		if (event != null) {
+			ExecutorEvents.INSTANCE.dataOut(event, template.componentType, dataName, false);
+		}
+		return value;
+	}
+
+	/**
+	 * Provides the value of the data out variable as an int. The primitive accessors invoke the method computing the
+	 * data without boxing its value, they neither read nor fill the cache of data out values.
+	 * 
+	 * @param dataName
+	 *            the name of the data out variable.
+	 * @return the value of the data.
+	 * @throws Throwable
+	 *             the exception thrown by the method computing the data, or IllegalArgumentException if the data is not
+	 *             convertible to int.
+	 */
+	int getIntDataOutValue(String dataName) throws Throwable {
+		if (boundIntDataOut == null) {
+			boundIntDataOut = new MethodHandle[boundDataOut.length];
+		}
+		return (int) primitiveDataOut(boundIntDataOut, dataName, int.class).invokeExact();
+	}
+
+	/**
+	 * Provides the value of the data out variable as a long, see getIntDataOutValue.
+	 */
+	long getLongDataOutValue(String dataName) throws Throwable {
+		if (boundLongDataOut == null) {
+			boundLongDataOut = new MethodHandle[boundDataOut.length];
+		}
+		return (long) primitiveDataOut(boundLongDataOut, dataName, long.class).invokeExact();
+	}
+
+	/**
+	 * Provides the value of the data out variable as a double, see getIntDataOutValue.
+	 */
+	double getDoubleDataOutValue(String dataName) throws Throwable {
+		if (boundDoubleDataOut == null) {
+			boundDoubleDataOut = new MethodHandle[boundDataOut.length];
+		}
+		return (double) primitiveDataOut(boundDoubleDataOut, dataName, double.class).invokeExact();
+	}
+
+	private MethodHandle primitiveDataOut(MethodHandle[] handles, String dataName, Class<?> type) {
+		Integer index = template.dataOutIndex.get(dataName);
+		if (index == null) {
+			throw new IllegalArgumentException("There is no data " + dataName + " in component "
+					+ template.componentType);
+		}
+		MethodHandle handle = handles[index];
+		if (handle == null) {
+			try {
+				handle = bind(template.dataOutName.get(dataName), type, 0);
+			} catch (WrongMethodTypeException e) {
+				throw new IllegalArgumentException("The data " + dataName + " of component " + template.componentType
+						+ " is not convertible to " + type, e);
+			}
+			handles[index] = handle;
+		}
+		return handle;
+	}
+
+	/*
+	 * The data out values obtained so far are no longer valid once the component starts executing a transition, even if
+	 * the transition fails.
+	 */
+	private void invalidateDataOut() {
+		transitionsStarted++;
+		Arrays.fill(dataOutValues, null);
 	}
 
 	public Iterable<Data<?>> portToDataInForTransition(Port port) {
-		return this.portToDataInForTransition.get(port);
+		return portViews().portToDataInForTransition.get(port);
 	}
 
 	public Map<Port, Set<Data<?>>> portToDataInForGuard() {
-		return this.portToDataInForGuard;
+		return portViews().portToDataInForGuard;
 	}
 
 	public Set<Data<?>> portToDataInForGuard(Port port) {
-		return this.portToDataInForGuard.get(port);
+		return portViews().portToDataInForGuard.get(port);
 	}
 
 	public List<Port> portsNeedingData(String dataName) {
-		return portsNeedingData.get(dataName);
+		return portViews().portsNeedingData.get(dataName);
 	}
 
 	public Set<Port> getDataProvidingPorts(String dataName) {
 		if (dataName == null || dataName.isEmpty()) {
 			return new HashSet<Port>();
 		}
-		for (DataOut<?> data : dataOut) {
-			if (data.name().equals(dataName)) {
-				return data.allowedPorts();
-			}
+		Integer index = template.dataOutIndex.get(dataName);
+		if (index == null) {
+			return new HashSet<Port>();
+		}
+		// The data of the template is wired to the ports of the template, they are replaced by the ports of this
+		// component.
+		HashSet<Port> result = new HashSet<Port>();
+		for (Port port : template.dataOut.get(index).allowedPorts()) {
+			result.add(ports[template.portIndex.get(port.getId())]);
 		}
-		return new HashSet<Port>();
+		return result;
 	}
 
 	public List<Transition> getAllTransitions() {
-		List<Transition> result = new ArrayList<Transition>(allTransitions);
+		List<Transition> result = new ArrayList<Transition>(template.allTransitions);
 		return result;
 	}
 
@@ -382,8 +514,8 @@ class BehaviourImpl implements ExecutableBehaviour {
 	@Override
 	public boolean existInCurrentStateAndEnforceableWithData() {
 
-		for (ExecutableTransition transition : stateTransitions.get(currentState)) {
-			if (transition.getType().equals(PortType.enforceable) && transition.hasDataOnGuards()) {
+		for (ExecutableTransition transition : template.enforceableTransitionsByState[currentStateId]) {
+			if (transition.hasDataOnGuards()) {
 				return true;
 			}
 		}
@@ -393,9 +525,13 @@ class BehaviourImpl implements ExecutableBehaviour {
 	@Override
 	public boolean existInCurrentStateAndEnabledEnforceableWithoutData(Map<String, Boolean> guardToValue)
 			throws BIPException {
+		return existInCurrentStateAndEnabledEnforceableWithoutData(valuationOf(guardToValue));
+	}
+
+	boolean existInCurrentStateAndEnabledEnforceableWithoutData(GuardValuation guardToValue) throws BIPException {
 
-		for (ExecutableTransition transition : enforceableTransitions) {
-			if (!transition.hasDataOnGuards() && isInCurrentStateAndEnabled(transition, guardToValue)) {
+		for (ExecutableTransition transition : template.enforceableTransitionsByState[currentStateId]) {
+			if (!transition.hasDataOnGuards() && isEnabled(transition, guardToValue)) {
 				return true;
 			}
 		}
@@ -405,19 +541,23 @@ class BehaviourImpl implements ExecutableBehaviour {
 
 	// TODO: The check that throws exception should be done by the Behaviour builder and not here
 	public boolean transitionNoDataGuardData(String port) throws BIPException {
-		ExecutableTransition transition = this.nameToTransition.get(currentState).get(port);
+		ExecutableTransition transition = getTransitionFromCurrentState(port);
 		if (transition == null) {
 			throw new BIPException("No transition " + port + " from state " + currentState + " in component "
-					+ componentType);
+					+ template.componentType);
 		}
 		return transition.hasDataOnGuards() && !transition.hasData();
 	}
 
 	@Override
 	public boolean existInCurrentStateAndEnabledSpontaneous(Map<String, Boolean> guardToValue) {
+		return existInCurrentStateAndEnabledSpontaneous(valuationOf(guardToValue));
+	}
+
+	boolean existInCurrentStateAndEnabledSpontaneous(GuardValuation guardToValue) {
 
-		for (ExecutableTransition transition : spontaneousTransitions) {
-			if (isInCurrentStateAndEnabled(transition, guardToValue)) {
+		for (ExecutableTransition transition : template.spontaneousTransitionsByState[currentStateId]) {
+			if (isEnabled(transition, guardToValue)) {
 				return true;
 			}
 		}
@@ -426,13 +566,17 @@ class BehaviourImpl implements ExecutableBehaviour {
 
 	@Override
 	public boolean existEnabledInternal(Map<String, Boolean> guardToValue) throws BIPException {
+		return existEnabledInternal(valuationOf(guardToValue));
+	}
+
+	boolean existEnabledInternal(GuardValuation guardToValue) throws BIPException {
 
 		boolean internalEnabled = false;
-		for (ExecutableTransition transition : internalTransitions) {
-			if (isInCurrentStateAndEnabled(transition, guardToValue)) {
+		for (ExecutableTransition transition : template.internalTransitionsByState[currentStateId]) {
+			if (isEnabled(transition, guardToValue)) {
 				if (internalEnabled) {
 					throw new BIPException("Cannot have two enabled internal transitions in the state "
-							+ this.currentState + " in component " + this.componentType);
+							+ this.currentState + " in component " + template.componentType);
 				} else {
 					internalEnabled = true;
 				}
@@ -448,18 +592,18 @@ class BehaviourImpl implements ExecutableBehaviour {
 			throw new IllegalArgumentException("The name of the required port for the component "
 					+ bipComponent.getClass().getName() + " cannot be null or empty.");
 		}
-		return spontaneousPorts.containsKey(port);
+		return template.spontaneousPorts.contains(port);
 	}
 
 	// ************************** End of Transition existence ************************************
 
 	// ************************************** Enabledness ****************************************
 
-	private boolean isInCurrentStateAndEnabled(ExecutableTransition transition, Map<String, Boolean> guardToValue) {
-
-		if (!transition.source().equals(currentState)) {
-			return false;
-		}
+	/*
+	 * The transition is expected to leave the current state, which is guaranteed by looking it up in the per state
+	 * transition arrays.
+	 */
+	private boolean isEnabled(ExecutableTransition transition, GuardValuation guardToValue) {
 
 		if (!transition.hasGuard()) {
 			return true;
@@ -468,98 +612,278 @@ class BehaviourImpl implements ExecutableBehaviour {
 		return transition.guardIsTrue(guardToValue);
 	}
 
+	/*
+	 * The guard values given by name are converted into a valuation, so the callers using the names go through the
+	 * same compiled guard expressions as the executor.
+	 */
+	private GuardValuation valuationOf(Map<String, Boolean> guardToValue) {
+		GuardValuation valuation = newGuardValuation();
+		valuation.assign(guardToValue);
+		return valuation;
+	}
+
 	public boolean hasEnabledTransitionFromCurrentState(String portID, Map<String, Boolean> guardToValue) {
+		return hasEnabledTransitionFromCurrentState(portID, valuationOf(guardToValue));
+	}
 
-		ArrayList<ExecutableTransition> transitions = stateTransitions.get(currentState);
-		for (ExecutableTransition transition : transitions) {
-			if (transition.name().equals(portID)) {
-				return isInCurrentStateAndEnabled(transition, guardToValue);
-			}
+	boolean hasEnabledTransitionFromCurrentState(String portID, GuardValuation guardToValue) {
+
+		ExecutableTransition transition = getTransitionFromCurrentState(portID);
+		if (transition == null) {
+			return false;
 		}
-		return false;
+		return isEnabled(transition, guardToValue);
 	}
 
 	public Set<Port> getGloballyDisabledEnforceablePortsWithoutDataTransfer(Map<String, Boolean> guardToValue) {
-		HashSet<Port> result = new HashSet<Port>();
-		for (ExecutableTransition transition : stateTransitions.get(currentState)) {
-			// Check only enforceable transitions
-			if (transition.getType().equals(PortType.enforceable)) {
+		return getGloballyDisabledEnforceablePortsWithoutDataTransfer(valuationOf(guardToValue));
+	}
 
-				// Enforceable transition must have a guard without data and this guard has to evaluate to false.
-				if (transition.hasGuard() && !transition.hasDataOnGuards() && !transition.guardIsTrue(guardToValue)) {
-					result.add(transitionToPort.get(transition));
+	/**
+	 * Provides the enforceable ports disabled by guards without data. The returned set is immutable and it is shared
+	 * between the cycles which disable the same ports, unless the current state has too many guarded transitions for
+	 * the sets to be cached.
+	 * 
+	 * @param guardToValue
+	 *            the guard values.
+	 * @return the globally disabled ports.
+	 */
+	Set<Port> getGloballyDisabledEnforceablePortsWithoutDataTransfer(GuardValuation guardToValue) {
+		// Enforceable transition must have a guard without data and this guard has to evaluate to false.
+		ExecutableTransition[] transitions = template.guardedEnforceableTransitionsByState[currentStateId];
+		int[] transitionPorts = template.guardedEnforceablePortsByState[currentStateId];
+		if (transitions.length > BehaviourTemplate.MAX_CACHED_DISABLED_TRANSITIONS) {
+			HashSet<Port> result = new HashSet<Port>();
+			for (int i = 0; i < transitions.length; i++) {
+				if (!transitions[i].guardIsTrue(guardToValue)) {
+					result.add(ports[transitionPorts[i]]);
 				}
+			}
+			return result;
+		}
 
+		int disabled = 0;
+		for (int i = 0; i < transitions.length; i++) {
+			if (!transitions[i].guardIsTrue(guardToValue)) {
+				disabled |= 1 << i;
+			}
+		}
+		Set<Port>[] cachedPorts = disabledPortsByState[currentStateId];
+		if (cachedPorts == null) {
+			cachedPorts = newPortSets(1 << transitions.length);
+			disabledPortsByState[currentStateId] = cachedPorts;
+		}
+		Set<Port> result = cachedPorts[disabled];
+		if (result == null) {
+			HashSet<Port> disabledPorts = new HashSet<Port>();
+			for (int i = 0; i < transitions.length; i++) {
+				if ((disabled & (1 << i)) != 0) {
+					disabledPorts.add(ports[transitionPorts[i]]);
+				}
 			}
+			result = Collections.unmodifiableSet(disabledPorts);
+			cachedPorts[disabled] = result;
 		}
 		return result;
 	}
 
 	public Map<String, Boolean> computeGuardsWithoutData(String currentState) {
-		// TODO BUG DESIGN compute only guards needed for this current state, as other
-		// guards not guaranteed to compute properly if executed in the wrong state.
 
 		Hashtable<String, Boolean> guardToValue = new Hashtable<String, Boolean>();
-		ArrayList<ExecutableTransition> transitionsFromState = stateTransitions.get(currentState);
-		for (ExecutableTransition transition : transitionsFromState) {
-			if (transition.hasGuard()) {
-				for (Guard guard : transition.transitionGuards()) {
-					if (this.guardsWithoutData.contains(guard)) {
-						try {
-							Object[] args = new Object[1];
-							args[0] = bipComponent;
-							guardToValue.put(guard.name(), guard.evaluateGuard(args));
-						} catch (IllegalArgumentException e) {
-							e.printStackTrace();
-						}
-					}
-				}
-			}
+		GuardValuation valuation = newGuardValuation();
+		for (int guardIndex : template.guardsWithoutDataByState[template.stateId(currentState)]) {
+			guardToValue.put(template.guards[guardIndex].name(), valuation.evaluate(guardIndex));
 		}
 		return guardToValue;
 	}
 
+	/**
+	 * Evaluates the guards without data needed by the transitions leaving the current state. Only these guards are
+	 * evaluated, as the other guards are not guaranteed to compute properly if executed in the wrong state. If the
+	 * valuation is lazy, the guards are left to be invoked when their value is first needed.
+	 * 
+	 * @param valuation
+	 *            the valuation receiving the guard values, it is cleared first.
+	 */
+	void computeGuardsWithoutData(GuardValuation valuation) {
+
+		int[] guardIndices = template.guardsWithoutDataByState[currentStateId];
+		valuation.startCycle(guardIndices.length);
+		if (valuation.isLazy()) {
+			return;
+		}
+		for (int guardIndex : guardIndices) {
+			valuation.evaluate(guardIndex);
+		}
+	}
+
 	public List<Boolean> checkEnabledness(String port, List<Map<String, Object>> data) throws IllegalAccessException,
 			IllegalArgumentException, InvocationTargetException, BIPException {
 
-		ArrayList<Boolean> result = new ArrayList<Boolean>();
-		ExecutableTransition transition = getTransition(currentState, port);
+		BitSet enabledRows = enabledRows(port, data);
+		ArrayList<Boolean> result = new ArrayList<Boolean>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			result.add(enabledRows.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks the enabledness of the port for every row of a table of data values. The guards without data are invoked
+	 * once for the whole table, only the guards with data are invoked for each row, with reused argument arrays.
+	 * 
+	 * @param port
+	 *            the name of the port.
+	 * @param data
+	 *            the rows of data values, each indexed by the data name.
+	 * @return the indexes of the rows for which the transition of the port is enabled.
+	 * @throws BIPException
+	 */
+	BitSet enabledRows(String port, List<Map<String, Object>> data) throws BIPException {
+
+		BitSet result = new BitSet(data.size());
+		ExecutableTransition transition = getTransitionFromCurrentState(port);
 		// TODO DESIGN, find out why this can happen if the guard is not there,
 		// it does not need data, any data is good, no need to do check Enabledness?
 		// -- I think it does not happen, but it's here just in case
 		if (!transition.hasGuard()) {
-			for (int i = data.size(); i > 0; i--) {
-				result.add(true);
-			}
+			result.set(0, data.size());
 			return result;
 		}
-		// for each different row of the data evaluation table
+
+		GuardValuation guardToValue = dataValuation;
+		guardToValue.clear();
+		int[] guardIndices = transition.guardIndices();
+		for (int guardIndex : guardIndices) {
+			if (!template.guards[guardIndex].hasData()) {
+				guardToValue.evaluate(guardIndex);
+			}
+		}
+
+		if (ParallelGuardEvaluation.applies(template, transition, data.size())) {
+			return ParallelGuardEvaluation.enabledRows(template, boundGuards, transition, guardToValue, data);
+		}
+
+		// The values of the guards with data are overwritten by each row, the values of the guards without data stay.
+		int row = 0;
 		for (Map<String, Object> dataRow : data) {
-			Map<String, Boolean> guardToValue = new Hashtable<String, Boolean>();
-			// for each Guard of this transition
-			for (Guard guard : transition.transitionGuards()) {
-				if (!guard.hasData()) {
-					Object[] args = new Object[1];
-					args[0] = bipComponent;
-					guardToValue.put(guard.name(), guard.evaluateGuard(args));
-				} else {
-					// if it has data,
-					// then for each data it needs add the corresponding value
-					// to the array of its arguments
-					ArrayList<Object> args = new ArrayList<Object>();
-					args.add(bipComponent);
-					for (Data<?> guardData : guard.dataRequired()) {
-						Object value = dataRow.get(guardData.name());
-						args.add(value);
-					}
-					guardToValue.put(guard.name(), guard.evaluateGuard(args.toArray()));
+			for (int guardIndex : guardIndices) {
+				if (template.guards[guardIndex].hasData()) {
+					evaluate(guardToValue, guardIndex, dataRow);
 				}
 			}
-			result.add(transition.guardIsTrue(guardToValue));
+			if (transition.guardIsTrue(guardToValue)) {
+				result.set(row);
+			}
+			row++;
 		}
 		return result;
 	}
 
+	/**
+	 * Checks the enabledness of the port for a single row of data values.
+	 * 
+	 * @param port
+	 *            the name of the port.
+	 * @param dataRow
+	 *            the data values, indexed by the data name.
+	 * @return true, if the transition of the port is enabled for the data values.
+	 * @throws BIPException
+	 */
+	boolean checkEnabledness(String port, Map<String, Object> dataRow) throws BIPException {
+		ExecutableTransition transition = getTransitionFromCurrentState(port);
+		if (!transition.hasGuard()) {
+			return true;
+		}
+		return isEnabled(transition, dataRow);
+	}
+
+	/**
+	 * Checks the enabledness of the port for the data values stored at their slots.
+	 * 
+	 * @param port
+	 *            the name of the port.
+	 * @param dataValues
+	 *            the data values, stored at the slots of the data names.
+	 * @return true, if the transition of the port is enabled for the data values.
+	 * @throws BIPException
+	 */
+	boolean checkEnabledness(String port, DataSlots dataValues) throws BIPException {
+		ExecutableTransition transition = getTransitionFromCurrentState(port);
+		if (!transition.hasGuard()) {
+			return true;
+		}
+		GuardValuation guardToValue = dataValuation;
+		guardToValue.clear();
+		for (int guardIndex : transition.guardIndices()) {
+			Guard guard = template.guards[guardIndex];
+			if (!guard.hasData()) {
+				guardToValue.evaluate(guardIndex);
+			} else {
+				guardToValue.evaluate(guardIndex, dataValues);
+			}
+		}
+		return transition.guardIsTrue(guardToValue);
+	}
+
+	/**
+	 * @return the number of slots for the data values needed by the guards and the transitions.
+	 */
+	int dataSlotCount() {
+		return template.dataSlots.size();
+	}
+
+	/**
+	 * @param dataName
+	 *            the name of the data.
+	 * @return the slot of the data, or -1 if no guard and no transition needs the data.
+	 */
+	int dataSlot(String dataName) {
+		Integer slot = template.dataSlots.get(dataName);
+		return slot == null ? -1 : slot;
+	}
+
+	private boolean isEnabled(ExecutableTransition transition, Map<String, Object> dataRow) {
+		GuardValuation guardToValue = dataValuation;
+		guardToValue.clear();
+		// for each Guard of this transition
+		for (int guardIndex : transition.guardIndices()) {
+			Guard guard = template.guards[guardIndex];
+			if (!guard.hasData()) {
+				guardToValue.evaluate(guardIndex);
+			} else {
+				evaluate(guardToValue, guardIndex, dataRow);
+			}
+		}
+		return transition.guardIsTrue(guardToValue);
+	}
+
+	/*
+	 * Invokes the guard with data, for each data it needs the corresponding value is added to the array of its
+	 * arguments.
+	 */
+	private void evaluate(GuardValuation guardToValue, int guardIndex, Map<String, Object> dataRow) {
+		String[] dataNames = template.guardDataNames[guardIndex];
+		Object[] args = argsByArity[dataNames.length];
+		for (int i = 0; i < dataNames.length; i++) {
+			args[i] = dataRow.get(dataNames[i]);
+		}
+		try {
+			guardToValue.evaluate(guardIndex, args);
+		} finally {
+			releaseArgs(args);
+		}
+	}
+
+	/*
+	 * Clears the data values from a reused argument array, so that the array does not keep them alive.
+	 */
+	private static void releaseArgs(Object[] args) {
+		for (int i = 0; i < args.length; i++) {
+			args[i] = null;
+		}
+	}
+
 	// ******************************* End of enabledness ****************************************
 	// ************************************ Execution ********************************************
 
@@ -570,17 +894,33 @@ class BehaviourImpl implements ExecutableBehaviour {
 			return;
 		}
 		// getTransition works correctly with spontaneous as well, as it addresses the list of all transitions
-		ExecutableTransition transition = getTransition(currentState, portID);
+		ExecutableTransition transition = getTransitionFromCurrentState(portID);
 		invokeMethod(transition, data);
 	}
 
+	/**
+	 * Executes the transition of the port with the data values stored at their slots.
+	 * 
+	 * @param portID
+	 *            the name of the port.
+	 * @param dataValues
+	 *            the data values, stored at the slots of the data names.
+	 */
+	void execute(String portID, DataSlots dataValues) {
+		if (portID == null) {
+			return;
+		}
+		ExecutableTransition transition = getTransitionFromCurrentState(portID);
+		invokeMethod(transition, dataValues);
+	}
+
 	// ExecutorKernel, the owner of BehaviourImpl is checking the correctness of the execution.
 	public void executePort(String portID) throws BIPException {
 		// this component does not take part in the interaction
 		if (portID == null) {
 			return;
 		}
-		ExecutableTransition transition = getTransition(currentState, portID);
+		ExecutableTransition transition = getTransitionFromCurrentState(portID);
 		if (transition == null) { // this shouldn't normally happen
 			throw new BIPException("The spontaneous transition for port " + portID + " cannot be null after inform");
 		}
@@ -588,68 +928,73 @@ class BehaviourImpl implements ExecutableBehaviour {
 	}
 
 	public void executeInternal(Map<String, Boolean> guardToValue) throws BIPException {
+		executeInternal(valuationOf(guardToValue));
+	}
 
-		for (ExecutableTransition transition : stateTransitions.get(currentState)) {
-			if (transition.getType().equals(PortType.internal) && transition.guardIsTrue(guardToValue)) {
+	void executeInternal(GuardValuation guardToValue) throws BIPException {
+
+		for (ExecutableTransition transition : template.internalTransitionsByState[currentStateId]) {
+			if (transition.guardIsTrue(guardToValue)) {
 				invokeMethod(transition);
 				return;
 			}
 		}
 
 		throw new BIPException("There is no enabled internal transition in state " + this.currentState
-				+ " for component " + this.componentType + ". This exception is internal to the implementation.");
+				+ " for component " + template.componentType + ". This exception is internal to the implementation.");
 
 	}
 
 	private void invokeMethod(ExecutableTransition transition) {
 		MethodHandle methodHandle;
-		String errorMessage = "The following exception while executing " + transition.name() + " in component "
-				+ this.componentType;
 		try {
-			logger.info("Invocation: " + transition.name());
-			methodHandle = transition.methodHandle();
-			if (!transition.method().getDeclaringClass().isAssignableFrom(componentClass)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("In component {} INVOCATION of {}", template.componentType, transition.name());
+			}
+			invalidateDataOut();
+			int transitionIndex = template.transitionIndex(transition);
+			methodHandle = boundTransitions[transitionIndex];
+			if (template.transitionArity[transitionIndex] != 0) {
 				throw new IllegalArgumentException("The method " + transition.method().getName()
-						+ " belongs to the class " + transition.method().getDeclaringClass().getName()
-						+ " but not  to the class of the component " + componentClass.getName());
+						+ " requires data, which is not provided when executing " + transition.name());
 			}
-			Object[] args = new Object[1];
-			args[0] = bipComponent;
-			methodHandle.invokeWithArguments(args);
+			Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.TRANSITION);
+			boolean measured = metrics != ComponentMetrics.NOOP;
+			long start = measured ? System.nanoTime() : 0;
+			methodHandle.invokeExact();
 
 			performTransition(transition);
+			if (event != null || measured) {
+				recordTransition(transition, start, event);
+			}
 
-		} catch (SecurityException e) {
-			ExceptionHelper.printExceptionTrace(logger, e, errorMessage);
-		} catch (IllegalAccessException e) {
-			ExceptionHelper.printExceptionTrace(logger, e, errorMessage);
-		} catch (IllegalArgumentException e) {
-			ExceptionHelper.printExceptionTrace(logger, e, errorMessage);
-		} catch (InvocationTargetException e) {
-			ExceptionHelper.printExceptionTrace(logger, e, errorMessage);
-			ExceptionHelper.printExceptionTrace(logger, e.getCause());
-		} catch (BIPException e) {
-			ExceptionHelper.printExceptionTrace(logger, e, errorMessage);
+		} catch (VirtualMachineError e) {
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
+			throw e;
 		} catch (Throwable e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
+			// the exceptions thrown by the transition method are not wrapped when invoked through its handle, any other
+			// failure is logged and the executor goes on with its next step
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
 		}
 	}
 
+	private String invocationError(ExecutableTransition transition) {
+		return "The following exception while executing " + transition.name() + " in component "
+				+ template.componentType;
+	}
+
+	/*
+	 * The data values are given by name.
+	 */
 	private void invokeMethod(ExecutableTransition transition, Map<String, ?> data) {
-		java.lang.reflect.Method componentMethod;
 		MethodHandle methodHandle;
 		try {
-			componentMethod = transition.method();
-			methodHandle = transition.methodHandle();
-			if (!componentMethod.getDeclaringClass().isAssignableFrom(componentClass)) {
-				throw new IllegalArgumentException("The method " + componentMethod.getName() + " belongs to the class "
-						+ componentMethod.getDeclaringClass().getName() + " but not  to the class of the component "
-						+ componentClass.getName());
-			}
+			invalidateDataOut();
+			int transitionIndex = template.transitionIndex(transition);
+			methodHandle = boundTransitions[transitionIndex];
 
-			Object[] args = new Object[componentMethod.getParameterTypes().length + 1];
-			args[0] = bipComponent;
-			int i = 1;
+			Object[] args = argsByArity[template.transitionArity[transitionIndex]];
+			int i = 0;
 			/*
 			 * NOTE dataRequired works in the same manner for enforceable and spontaneous transitions, since it is
 			 * processed by the builder who does not differentiate between them
@@ -662,37 +1007,93 @@ class BehaviourImpl implements ExecutableBehaviour {
 				args[i] = value;
 				i++;
 			}
-			logger.debug("In component " + this.componentType + " INVOCATION of " + transition.name() + " with args "
-					+ data);
-			// if the method is not static, the first param to invokeExact should be treated as instance where to look
-			// for the method
-			methodHandle.invokeWithArguments(args);
+			if (logger.isDebugEnabled()) {
+				logger.debug("In component {} INVOCATION of {} with args {}", new Object[] { template.componentType,
+						transition.name(), Arrays.toString(args) });
+			}
+			Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.TRANSITION);
+			boolean measured = metrics != ComponentMetrics.NOOP;
+			long start = measured ? System.nanoTime() : 0;
+			// the handle is bound to the component instance, its only parameter is the array of the data values
+			try {
+				if (args.length == 0) {
+					methodHandle.invokeExact();
+				} else {
+					methodHandle.invokeExact(args);
+				}
+			} finally {
+				releaseArgs(args);
+			}
+
+			performTransition(transition);
+			if (event != null || measured) {
+				recordTransition(transition, start, event);
+			}
+		} catch (VirtualMachineError e) {
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
+			throw e;
+		} catch (Throwable e) {
+			// the exceptions thrown by the transition method are not wrapped when invoked through its handle, any other
+			// failure is logged and the executor goes on with its next step
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
+		}
+
+	}
+
+	/*
+	 * The data values are given by slot, the transition reads its arguments from the slots of its data.
+	 */
+	private void invokeMethod(ExecutableTransition transition, DataSlots dataValues) {
+		try {
+			invalidateDataOut();
+			int transitionIndex = template.transitionIndex(transition);
+			boolean withData = template.transitionArity[transitionIndex] != 0;
+			if (logger.isDebugEnabled()) {
+				logger.debug("In component {} INVOCATION of {} with args {}", new Object[] { template.componentType,
+						transition.name(),
+						Arrays.toString(dataValues.values(template.transitionDataSlots[transitionIndex])) });
+			}
+			Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.TRANSITION);
+			boolean measured = metrics != ComponentMetrics.NOOP;
+			long start = measured ? System.nanoTime() : 0;
+			if (withData) {
+				slotTransitions[transitionIndex].invokeExact(dataValues);
+			} else {
+				boundTransitions[transitionIndex].invokeExact();
+			}
 
 			performTransition(transition);
-		} catch (SecurityException e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
-		} catch (IllegalAccessException e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
-		} catch (IllegalArgumentException e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
-		} catch (InvocationTargetException e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
-			ExceptionHelper.printExceptionTrace(logger, e.getTargetException());
-		} catch (BIPException e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
+			if (event != null || measured) {
+				recordTransition(transition, start, event);
+			}
+		} catch (VirtualMachineError e) {
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
+			throw e;
 		} catch (Throwable e) {
-			ExceptionHelper.printExceptionTrace(logger, e);
+			// the exceptions thrown by the transition method are not wrapped when invoked through its handle, any other
+			// failure is logged and the executor goes on with its next step
+			ExceptionHelper.printExceptionTrace(logger, e, invocationError(transition));
 		}
+	}
 
+	private void recordTransition(ExecutableTransition transition, long start, Object event) {
+		if (metrics != ComponentMetrics.NOOP) {
+			metrics.transitionExecuted(transition.name(), transition.getType(), System.nanoTime() - start);
+		}
+		if (event != null) {
+			ExecutorEvents.INSTANCE.transition(event, template.componentType, transition.name(), transition.source(),
+					transition.target());
+		}
 	}
 
 	private void performTransition(ExecutableTransition transition) throws BIPException {
 		if (!currentState.equals(transition.source())) {
 			throw new BIPException("Could not perform transition " + transition.name() + " of component "
-					+ componentType + " because the component is in the wrong state " + currentState
+					+ template.componentType + " because the component is in the wrong state " + currentState
 					+ " instead of state " + transition.source());
 		}
 		currentState = transition.target();
+		currentStateId = template.stateId(currentState);
 	}
 
 	// ****************************** End of Execution *******************************************
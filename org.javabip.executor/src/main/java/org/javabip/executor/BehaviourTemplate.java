@@ -0,0 +1,449 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.javabip.api.Data;
+import org.javabip.api.Guard;
+import org.javabip.api.Port;
+import org.javabip.api.PortType;
+import org.javabip.exceptions.BIPException;
+
+/**
+ * The part of the behaviour which is the same for all the instances of a component class: the states, the ports
+ * without their component, the transitions with their compiled guards, the guards and the data, together with the
+ * indexes built over them. It is immutable once constructed, so a single template is shared by all the BehaviourImpl
+ * instances of the class. The ports are referred to by their index in the array of ports, each behaviour instance
+ * creates its own ports at these indexes.
+ */
+final class BehaviourTemplate {
+
+	/**
+	 * The maximal number of guarded enforceable transitions of a state for which the sets of globally disabled ports are
+	 * cached
+	 */
+	static final int MAX_CACHED_DISABLED_TRANSITIONS = 6;
+
+	final String componentType;
+	final String initialState;
+	final Set<String> states;
+
+	/**
+	 * The ports of the component, not attached to any component provider.
+	 */
+	final Port[] ports;
+	final Map<String, Integer> portIndex;
+	final Set<String> spontaneousPorts;
+	final int[] enforceablePorts;
+
+	final List<ExecutableTransition> allTransitions;
+	/**
+	 * For each transition its index within allTransitions, used to index the per instance bound method handles
+	 */
+	private final Map<ExecutableTransition, Integer> transitionIndex;
+	/**
+	 * For each transition index the number of parameters of the transition method
+	 */
+	final int[] transitionArity;
+
+	private final Map<String, Integer> stateToId;
+	final List<Map<String, ExecutableTransition>> nameToTransitionByState;
+	final ExecutableTransition[][] transitionsByState;
+	final ExecutableTransition[][] internalTransitionsByState;
+	final ExecutableTransition[][] spontaneousTransitionsByState;
+	final ExecutableTransition[][] enforceableTransitionsByState;
+
+	/**
+	 * All the guards ordered by their index, as used by GuardValuation and the compiled guard expressions
+	 */
+	final Guard[] guards;
+	final List<Guard> guardsWithoutData;
+	/**
+	 * For each state identifier, the indexes of the guards without data used by the transitions leaving the state
+	 */
+	final int[][] guardsWithoutDataByState;
+	/**
+	 * For each guard index, the names of the data the guard needs, in the order of the guard parameters
+	 */
+	final String[][] guardDataNames;
+	/**
+	 * The slot of each data name needed by a guard or by a transition. The data values provided for a transition are
+	 * stored at these slots, so that the arguments are found by index rather than by name.
+	 */
+	final Map<String, Integer> dataSlots;
+	/**
+	 * For each guard index, the slots of the data the guard needs, in the order of the guard parameters
+	 */
+	final int[][] guardDataSlots;
+	/**
+	 * For each transition index, the slots of the data the transition needs, in the order of the method parameters
+	 */
+	final int[][] transitionDataSlots;
+	/**
+	 * The largest number of parameters of a guard or of a transition method
+	 */
+	final int maxArity;
+
+	/**
+	 * For each state identifier, the enforceable transitions whose guard does not depend on data, and the indexes of
+	 * their ports
+	 */
+	final ExecutableTransition[][] guardedEnforceableTransitionsByState;
+	final int[][] guardedEnforceablePortsByState;
+
+	/**
+	 * For each state, the indexes of its enforceable ports
+	 */
+	final Map<String, int[]> stateToPorts;
+	/**
+	 * For each port index, the data it needs for guards and for transitions, null for the ports which are not
+	 * enforceable
+	 */
+	final Set<Data<?>>[] portToDataInForGuard;
+	final Set<Data<?>>[] portToDataInForTransition;
+	/**
+	 * For each data name, the indexes of the ports needing it
+	 */
+	final Map<String, int[]> portsNeedingData;
+
+	/**
+	 * The dataOut variables, wired to the ports of the template. Their order is the order of the per instance bound
+	 * method handles.
+	 */
+	final List<DataOutImpl<?>> dataOut;
+	final Map<String, Integer> dataOutIndex;
+	/**
+	 * The map between the name of the out variable and the method computing it
+	 */
+	final Map<String, MethodHandle> dataOutName;
+
+	/**
+	 * Creates the template of a behaviour.
+	 * 
+	 * @param componentType
+	 * @param initialState
+	 * @param allTransitions
+	 * @param ports
+	 *            the ports, not attached to any component provider
+	 * @param states
+	 * @param guards
+	 *            the guards ordered by their index
+	 * @param dataOut
+	 * @param dataOutName
+	 * @throws BIPException
+	 */
+	BehaviourTemplate(String componentType, String initialState, List<ExecutableTransition> allTransitions,
+			List<Port> ports, Set<String> states, List<Guard> guards, List<DataOutImpl<?>> dataOut,
+			Map<String, MethodHandle> dataOutName) throws BIPException {
+
+		this.componentType = componentType;
+		this.initialState = initialState;
+		this.states = Collections.unmodifiableSet(new HashSet<String>(states));
+		this.ports = ports.toArray(new Port[ports.size()]);
+		this.allTransitions = Collections.unmodifiableList(new ArrayList<ExecutableTransition>(allTransitions));
+		this.guards = guards.toArray(new Guard[guards.size()]);
+
+		ArrayList<Guard> withoutData = new ArrayList<Guard>();
+		for (Guard guard : guards) {
+			if (!guard.hasData()) {
+				withoutData.add(guard);
+			}
+		}
+		this.guardsWithoutData = Collections.unmodifiableList(withoutData);
+
+		this.portIndex = new HashMap<String, Integer>();
+		HashSet<String> spontaneous = new HashSet<String>();
+		ArrayList<Integer> enforceable = new ArrayList<Integer>();
+		for (int i = 0; i < this.ports.length; i++) {
+			Port port = this.ports[i];
+			portIndex.put(port.getId(), i);
+			if (port.getType() == PortType.enforceable) {
+				enforceable.add(i);
+			}
+			if (port.getType() == PortType.spontaneous) {
+				spontaneous.add(port.getId());
+			}
+		}
+		this.spontaneousPorts = Collections.unmodifiableSet(spontaneous);
+		this.enforceablePorts = toArray(enforceable);
+
+		this.transitionIndex = new IdentityHashMap<ExecutableTransition, Integer>();
+		this.transitionArity = new int[this.allTransitions.size()];
+		int arity = 0;
+		for (int i = 0; i < transitionArity.length; i++) {
+			ExecutableTransition transition = this.allTransitions.get(i);
+			transitionIndex.put(transition, i);
+			transitionArity[i] = transition.method().getParameterTypes().length;
+			arity = Math.max(arity, transitionArity[i]);
+		}
+
+		this.guardDataNames = new String[this.guards.length][];
+		for (int i = 0; i < this.guards.length; i++) {
+			Collection<Data<?>> dataRequired = this.guards[i].dataRequired();
+			guardDataNames[i] = new String[dataRequired.size()];
+			int j = 0;
+			for (Data<?> data : dataRequired) {
+				guardDataNames[i][j++] = data.name();
+			}
+			arity = Math.max(arity, j);
+		}
+		this.maxArity = arity;
+
+		HashMap<String, Integer> slots = new HashMap<String, Integer>();
+		this.guardDataSlots = new int[this.guards.length][];
+		for (int i = 0; i < this.guards.length; i++) {
+			guardDataSlots[i] = new int[guardDataNames[i].length];
+			for (int j = 0; j < guardDataNames[i].length; j++) {
+				guardDataSlots[i][j] = slot(slots, guardDataNames[i][j]);
+			}
+		}
+		this.transitionDataSlots = new int[this.allTransitions.size()][];
+		for (int i = 0; i < transitionDataSlots.length; i++) {
+			ArrayList<Integer> transitionSlots = new ArrayList<Integer>();
+			Iterable<Data<?>> dataRequired = this.allTransitions.get(i).dataRequired();
+			if (dataRequired != null) {
+				for (Data<?> data : dataRequired) {
+					transitionSlots.add(slot(slots, data.name()));
+				}
+			}
+			transitionDataSlots[i] = toArray(transitionSlots);
+		}
+		this.dataSlots = Collections.unmodifiableMap(slots);
+
+		// Transitions by state and name.
+		HashMap<String, ArrayList<ExecutableTransition>> stateTransitions = new HashMap<String, ArrayList<ExecutableTransition>>();
+		HashMap<String, Hashtable<String, ExecutableTransition>> nameToTransition = new HashMap<String, Hashtable<String, ExecutableTransition>>();
+		HashMap<String, Set<Integer>> statePorts = new HashMap<String, Set<Integer>>();
+		for (String state : this.states) {
+			stateTransitions.put(state, new ArrayList<ExecutableTransition>());
+			nameToTransition.put(state, new Hashtable<String, ExecutableTransition>());
+			statePorts.put(state, new HashSet<Integer>());
+		}
+		for (ExecutableTransition transition : this.allTransitions) {
+			if (!stateTransitions.containsKey(transition.source())) {
+				throw new BIPException("The source state " + transition.source() + " for transition "
+						+ transition.name() + " is not in the list of states of component " + componentType);
+			}
+			stateTransitions.get(transition.source()).add(transition);
+			nameToTransition.get(transition.source()).put(transition.name(), transition);
+		}
+
+		// Data needed by the enforceable ports.
+		this.portToDataInForGuard = newDataSets(this.ports.length);
+		this.portToDataInForTransition = newDataSets(this.ports.length);
+		for (int i : enforceablePorts) {
+			portToDataInForGuard[i] = new HashSet<Data<?>>();
+			portToDataInForTransition[i] = new HashSet<Data<?>>();
+		}
+		HashMap<String, Set<Integer>> portsNeedingData = new HashMap<String, Set<Integer>>();
+		for (ExecutableTransition transition : this.allTransitions) {
+			if (transition.getType() != PortType.enforceable) {
+				continue;
+			}
+			int port = portIndex.get(transition.name());
+			if (transition.hasGuard()) {
+				for (Guard guard : transition.transitionGuards()) {
+					portToDataInForGuard[port].addAll(guard.dataRequired());
+					for (Data<?> data : guard.dataRequired()) {
+						addPortNeedingData(portsNeedingData, data.name(), port);
+					}
+				}
+			}
+			for (Data<?> data : transition.dataRequired()) {
+				addPortNeedingData(portsNeedingData, data.name(), port);
+				portToDataInForTransition[port].add(data);
+			}
+			statePorts.get(transition.source()).add(port);
+		}
+		this.portsNeedingData = toArrays(portsNeedingData);
+		this.stateToPorts = toArrays(statePorts);
+
+		// Per state indexes.
+		int noOfStates = this.states.size();
+		HashMap<String, Integer> ids = new HashMap<String, Integer>(noOfStates * 2);
+		ArrayList<Map<String, ExecutableTransition>> byName = new ArrayList<Map<String, ExecutableTransition>>(
+				noOfStates);
+		this.transitionsByState = new ExecutableTransition[noOfStates][];
+		this.internalTransitionsByState = new ExecutableTransition[noOfStates][];
+		this.spontaneousTransitionsByState = new ExecutableTransition[noOfStates][];
+		this.enforceableTransitionsByState = new ExecutableTransition[noOfStates][];
+		this.guardsWithoutDataByState = new int[noOfStates][];
+		this.guardedEnforceableTransitionsByState = new ExecutableTransition[noOfStates][];
+		this.guardedEnforceablePortsByState = new int[noOfStates][];
+
+		ArrayList<ExecutableTransition> internal = new ArrayList<ExecutableTransition>();
+		ArrayList<ExecutableTransition> spontaneousTransitions = new ArrayList<ExecutableTransition>();
+		ArrayList<ExecutableTransition> enforceableTransitions = new ArrayList<ExecutableTransition>();
+		ArrayList<Integer> stateGuards = new ArrayList<Integer>();
+		ArrayList<ExecutableTransition> guardedEnforceable = new ArrayList<ExecutableTransition>();
+		ArrayList<Integer> guardedEnforceablePorts = new ArrayList<Integer>();
+
+		for (String state : this.states) {
+
+			int id = ids.size();
+			ids.put(state, id);
+			byName.add(Collections.unmodifiableMap(nameToTransition.get(state)));
+
+			internal.clear();
+			spontaneousTransitions.clear();
+			enforceableTransitions.clear();
+			stateGuards.clear();
+			guardedEnforceable.clear();
+			guardedEnforceablePorts.clear();
+			ArrayList<ExecutableTransition> transitionsFromState = stateTransitions.get(state);
+			for (ExecutableTransition transition : transitionsFromState) {
+				for (int guardIndex : transition.guardIndices()) {
+					if (!this.guards[guardIndex].hasData() && !stateGuards.contains(guardIndex)) {
+						stateGuards.add(guardIndex);
+					}
+				}
+				switch (transition.getType()) {
+				case enforceable:
+					enforceableTransitions.add(transition);
+					if (transition.hasGuard() && !transition.hasDataOnGuards()) {
+						guardedEnforceable.add(transition);
+						guardedEnforceablePorts.add(portIndex.get(transition.name()));
+					}
+					break;
+				case internal:
+					internal.add(transition);
+					break;
+				case spontaneous:
+					spontaneousTransitions.add(transition);
+					break;
+				default:
+					break;
+				}
+			}
+
+			transitionsByState[id] = transitionsFromState.toArray(new ExecutableTransition[transitionsFromState.size()]);
+			internalTransitionsByState[id] = internal.toArray(new ExecutableTransition[internal.size()]);
+			spontaneousTransitionsByState[id] = spontaneousTransitions
+					.toArray(new ExecutableTransition[spontaneousTransitions.size()]);
+			enforceableTransitionsByState[id] = enforceableTransitions
+					.toArray(new ExecutableTransition[enforceableTransitions.size()]);
+			guardedEnforceableTransitionsByState[id] = guardedEnforceable
+					.toArray(new ExecutableTransition[guardedEnforceable.size()]);
+			guardedEnforceablePortsByState[id] = toArray(guardedEnforceablePorts);
+			guardsWithoutDataByState[id] = toArray(stateGuards);
+		}
+		this.stateToId = ids;
+		this.nameToTransitionByState = Collections.unmodifiableList(byName);
+
+		// Data out, wired to the ports by their index.
+		HashMap<String, Port> allEnforceablePorts = new HashMap<String, Port>();
+		for (int i : enforceablePorts) {
+			allEnforceablePorts.put(this.ports[i].getId(), this.ports[i]);
+		}
+		this.dataOut = Collections.unmodifiableList(new ArrayList<DataOutImpl<?>>(dataOut));
+		this.dataOutIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < this.dataOut.size(); i++) {
+			DataOutImpl<?> data = this.dataOut.get(i);
+			data.computeAllowedPort(allEnforceablePorts);
+			if (!dataOutIndex.containsKey(data.name())) {
+				dataOutIndex.put(data.name(), i);
+			}
+		}
+		this.dataOutName = Collections.unmodifiableMap(new Hashtable<String, MethodHandle>(dataOutName));
+
+		if (!stateToId.containsKey(initialState)) {
+			throw new BIPException("The state " + initialState + " is not in the list of states of component "
+					+ componentType);
+		}
+
+	}
+
+	/**
+	 * Provides the dense identifier of the state.
+	 * 
+	 * @param state
+	 *            the state.
+	 * @return the identifier, indexing the per state arrays.
+	 * @throws BIPException
+	 *             if the state is not a state of the component.
+	 */
+	int stateId(String state) throws BIPException {
+		Integer id = stateToId.get(state);
+		if (id == null) {
+			throw new BIPException("The state " + state + " is not in the list of states of component "
+					+ componentType);
+		}
+		return id;
+	}
+
+	int transitionIndex(ExecutableTransition transition) {
+		return transitionIndex.get(transition);
+	}
+
+	/*
+	 * The slot of the data name, a new slot being assigned to a name seen for the first time.
+	 */
+	private static int slot(Map<String, Integer> slots, String dataName) {
+		Integer slot = slots.get(dataName);
+		if (slot == null) {
+			slot = slots.size();
+			slots.put(dataName, slot);
+		}
+		return slot;
+	}
+
+	private static void addPortNeedingData(Map<String, Set<Integer>> portsNeedingData, String dataName, int port) {
+		Set<Integer> dataPorts = portsNeedingData.get(dataName);
+		if (dataPorts == null) {
+			dataPorts = new LinkedHashSet<Integer>();
+			portsNeedingData.put(dataName, dataPorts);
+		}
+		dataPorts.add(port);
+	}
+
+	private static Map<String, int[]> toArrays(Map<String, Set<Integer>> indexes) {
+		HashMap<String, int[]> result = new HashMap<String, int[]>();
+		for (Map.Entry<String, Set<Integer>> entry : indexes.entrySet()) {
+			result.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	private static int[] toArray(Collection<Integer> indexes) {
+		int[] result = new int[indexes.size()];
+		int i = 0;
+		for (int index : indexes) {
+			result[i++] = index;
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<Data<?>>[] newDataSets(int size) {
+		return new Set[size];
+	}
+
+}
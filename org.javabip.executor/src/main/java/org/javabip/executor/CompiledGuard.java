@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.javabip.exceptions.BIPException;
+
+/**
+ * A guard expression compiled into a flat branching program. Each node of the program tests one guard and continues
+ * with one of two successors depending on the guard value, until the outcome of the expression is known. Negation is
+ * obtained by swapping the successors and the operands of conjunction and disjunction are chained, so the program has
+ * exactly one node per guard occurrence and its evaluation short-circuits the same way as GuardTreeNode.evaluate.
+ * 
+ * The program reads the guard values from a GuardValuation by guard index, it neither compares strings nor allocates.
+ */
+class CompiledGuard {
+
+	private static final int TRUE = -1;
+	private static final int FALSE = -2;
+
+	private int entry;
+
+	/**
+	 * The index of the guard tested by each node.
+	 */
+	private int[] guardIndex;
+
+	/**
+	 * The node to continue with if the guard tested by the node is true, or TRUE/FALSE if the outcome is known.
+	 */
+	private int[] onTrue;
+
+	/**
+	 * The node to continue with if the guard tested by the node is false, or TRUE/FALSE if the outcome is known.
+	 */
+	private int[] onFalse;
+
+	/**
+	 * The distinct indexes of the guards used in the expression.
+	 */
+	private int[] usedGuards;
+
+	private int size;
+
+	/**
+	 * Compiles the guard expression given as a parsed tree.
+	 * 
+	 * @param root
+	 *            the root of the parsed guard expression.
+	 * @param guardIndices
+	 *            the mapping between the guard name and the guard index within the behaviour.
+	 * @throws BIPException
+	 *             when the expression refers to an unknown guard.
+	 */
+	public CompiledGuard(GuardTreeNode root, Map<String, Integer> guardIndices) throws BIPException {
+
+		int noOfLeaves = countLeaves(root);
+		this.guardIndex = new int[noOfLeaves];
+		this.onTrue = new int[noOfLeaves];
+		this.onFalse = new int[noOfLeaves];
+
+		this.entry = compile(root, TRUE, FALSE, guardIndices);
+
+		ArrayList<Integer> distinct = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++) {
+			if (!distinct.contains(guardIndex[i])) {
+				distinct.add(guardIndex[i]);
+			}
+		}
+		this.usedGuards = new int[distinct.size()];
+		for (int i = 0; i < usedGuards.length; i++) {
+			usedGuards[i] = distinct.get(i);
+		}
+	}
+
+	private static int countLeaves(GuardTreeNode node) {
+		if (!node.hasChildren()) {
+			return 1;
+		}
+		int result = 0;
+		for (GuardTreeNode child : node.children) {
+			result += countLeaves(child);
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the entry node of the program computing the expression given by the node, which continues with
+	 * whenTrue or whenFalse once the value of the expression is known. The operand evaluated last is compiled first so
+	 * its entry is known when the operand evaluated first is compiled.
+	 */
+	private int compile(GuardTreeNode node, int whenTrue, int whenFalse, Map<String, Integer> guardIndices) {
+
+		if (node.data.equals("&")) {
+			int second = compile(node.children.get(1), whenTrue, whenFalse, guardIndices);
+			return compile(node.children.get(0), second, whenFalse, guardIndices);
+		}
+		if (node.data.equals("|")) {
+			int second = compile(node.children.get(1), whenTrue, whenFalse, guardIndices);
+			return compile(node.children.get(0), whenTrue, second, guardIndices);
+		}
+		if (node.data.equals("!")) {
+			return compile(node.children.get(0), whenFalse, whenTrue, guardIndices);
+		}
+
+		Integer index = guardIndices.get(node.data);
+		if (index == null) {
+			throw new BIPException("Cannot find publicly accessible guard function " + node.data);
+		}
+
+		int result = size++;
+		guardIndex[result] = index;
+		onTrue[result] = whenTrue;
+		onFalse[result] = whenFalse;
+		return result;
+	}
+
+	/**
+	 * Computes the value of the guard expression.
+	 * 
+	 * @param valuation
+	 *            the guard values.
+	 * @return the guard expression value.
+	 * @throws BIPException
+	 *             when a guard needed to compute the value has not been evaluated.
+	 */
+	public boolean evaluate(GuardValuation valuation) throws BIPException {
+		int node = entry;
+		while (node >= 0) {
+			node = valuation.value(guardIndex[node]) ? onTrue[node] : onFalse[node];
+		}
+		return node == TRUE;
+	}
+
+	/**
+	 * Returns the indexes of the guards used in the expression, each index occurs once.
+	 * 
+	 * @return the indexes of the used guards.
+	 */
+	public int[] usedGuards() {
+		return usedGuards;
+	}
+
+}
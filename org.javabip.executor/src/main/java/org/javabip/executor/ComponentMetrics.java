@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import org.javabip.api.PortType;
+
+/**
+ * Records the metrics of one executor. It is called by the thread executing the component, except for the spontaneous
+ * events which are queued by the thread informing the executor. A recorder shared by several executors must therefore
+ * be thread safe.
+ * 
+ * The executors do not measure anything when their recorder is NOOP.
+ */
+public interface ComponentMetrics {
+
+	/**
+	 * A recorder which drops the metrics.
+	 */
+	public static final ComponentMetrics NOOP = new ComponentMetrics() {
+
+		public void transitionExecuted(String port, PortType type, long nanos) {
+		}
+
+		public void guardEvaluated(String guard, long nanos) {
+		}
+
+		public void guardFailed(String guard) {
+		}
+
+		public void spontaneousEventQueued(String port, int queueDepth) {
+		}
+
+	};
+
+	/**
+	 * A transition was executed.
+	 * 
+	 * @param port
+	 *            the name of the transition.
+	 * @param type
+	 *            the type of the transition.
+	 * @param nanos
+	 *            the time taken by the transition method, in nanoseconds.
+	 */
+	public void transitionExecuted(String port, PortType type, long nanos);
+
+	/**
+	 * A guard was evaluated.
+	 * 
+	 * @param guard
+	 *            the name of the guard.
+	 * @param nanos
+	 *            the time taken by the guard method, in nanoseconds.
+	 */
+	public void guardEvaluated(String guard, long nanos);
+
+	/**
+	 * A guard threw an exception, its value was taken as false. It is reported whether or not the recorder is NOOP.
+	 * 
+	 * @param guard
+	 *            the name of the guard.
+	 */
+	public void guardFailed(String guard);
+
+	/**
+	 * A spontaneous event was queued to be executed.
+	 * 
+	 * @param port
+	 *            the spontaneous port.
+	 * @param queueDepth
+	 *            the number of spontaneous events of the executor waiting to be executed, this one included.
+	 */
+	public void spontaneousEventQueued(String port, int queueDepth);
+
+}
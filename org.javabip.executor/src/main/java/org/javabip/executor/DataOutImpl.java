@@ -40,6 +40,7 @@ class DataOutImpl<T> extends DataImpl<T> implements DataOut<T> {
 	private AccessType portAccessType;
 	private Set<Port> allowedPorts = new HashSet<Port>();
 	private String[] stringPorts;
+	private boolean cached = true;
 
 	public DataOutImpl(String name, Class<T> clazz, AccessType portAccessType, String[] ports) throws BIPException {
 
@@ -61,6 +62,19 @@ class DataOutImpl<T> extends DataImpl<T> implements DataOut<T> {
 
 	}
 
+	public DataOutImpl(String name, Class<T> clazz, AccessType portAccessType, String[] ports, boolean cached)
+			throws BIPException {
+		this(name, clazz, portAccessType, ports);
+		this.cached = cached;
+	}
+
+	/**
+	 * @return true, if the value of the data can be kept until the component executes its next transition.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
 	public Set<Port> allowedPorts() {
 		if (allowedPorts.isEmpty())
 			throw new BIPException(
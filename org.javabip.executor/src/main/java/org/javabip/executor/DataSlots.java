@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * The data values provided for the next transition of an executor, stored at the slots the template of the behaviour
+ * assigns to the data names. A value given as an int, a long or a double is kept in an array of primitive values, a
+ * marker taking its place among the reference values, so that it reaches a primitive parameter of a guard or of a
+ * transition without being boxed.
+ * 
+ * The guards and the transitions are bound to the slots of their data by bind, the resulting handles read each
+ * argument directly from its slot instead of spreading an array of boxed arguments.
+ */
+final class DataSlots {
+
+	/*
+	 * The markers of the slots holding a primitive value, the value is kept as a long, the bits of a double.
+	 */
+	private enum Primitive {
+		INT, LONG, DOUBLE;
+
+		Object box(long bits) {
+			switch (this) {
+			case INT:
+				return (int) bits;
+			case LONG:
+				return bits;
+			default:
+				return Double.longBitsToDouble(bits);
+			}
+		}
+	}
+
+	private static final MethodHandle INT_VALUE;
+	private static final MethodHandle LONG_VALUE;
+	private static final MethodHandle DOUBLE_VALUE;
+	private static final MethodHandle VALUE;
+
+	/*
+	 * The conversions of a reference value to a primitive parameter, the same as when the value is spread from an
+	 * array of arguments.
+	 */
+	private static final MethodHandle TO_INT = MethodHandles.identity(Object.class).asType(
+			MethodType.methodType(int.class, Object.class));
+	private static final MethodHandle TO_LONG = MethodHandles.identity(Object.class).asType(
+			MethodType.methodType(long.class, Object.class));
+	private static final MethodHandle TO_DOUBLE = MethodHandles.identity(Object.class).asType(
+			MethodType.methodType(double.class, Object.class));
+
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			INT_VALUE = lookup.findStatic(DataSlots.class, "intValue",
+					MethodType.methodType(int.class, DataSlots.class, int.class));
+			LONG_VALUE = lookup.findStatic(DataSlots.class, "longValue",
+					MethodType.methodType(long.class, DataSlots.class, int.class));
+			DOUBLE_VALUE = lookup.findStatic(DataSlots.class, "doubleValue",
+					MethodType.methodType(double.class, DataSlots.class, int.class));
+			VALUE = lookup.findStatic(DataSlots.class, "value",
+					MethodType.methodType(Object.class, DataSlots.class, int.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Object[] values;
+	private final long[] primitives;
+
+	DataSlots(int size) {
+		this.values = new Object[size];
+		this.primitives = new long[size];
+	}
+
+	void set(int slot, Object value) {
+		values[slot] = value;
+	}
+
+	void setInt(int slot, int value) {
+		values[slot] = Primitive.INT;
+		primitives[slot] = value;
+	}
+
+	void setLong(int slot, long value) {
+		values[slot] = Primitive.LONG;
+		primitives[slot] = value;
+	}
+
+	void setDouble(int slot, double value) {
+		values[slot] = Primitive.DOUBLE;
+		primitives[slot] = Double.doubleToRawLongBits(value);
+	}
+
+	/**
+	 * Forgets the values, so that the slots do not keep them alive.
+	 */
+	void clear() {
+		Arrays.fill(values, null);
+	}
+
+	/**
+	 * @param slots
+	 *            the slots of the data.
+	 * @return the values of the data, the primitive values being boxed.
+	 */
+	Object[] values(int[] slots) {
+		Object[] result = new Object[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			result[i] = value(this, slots[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Binds the parameters of a method to the slots of its data.
+	 * 
+	 * @param handle
+	 *            the method handle, already bound to the component instance.
+	 * @param returnType
+	 *            the return type of the resulting handle.
+	 * @param slots
+	 *            the slots of the data, in the order of the method parameters.
+	 * @return the handle of the type (DataSlots)R, where R is the given return type.
+	 */
+	static MethodHandle bind(MethodHandle handle, Class<?> returnType, int[] slots) {
+		MethodType type = handle.type().changeReturnType(returnType);
+		MethodHandle target = handle.asType(type);
+		MethodHandle[] arguments = new MethodHandle[slots.length];
+		int[] reorder = new int[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			arguments[i] = MethodHandles.insertArguments(argument(type.parameterType(i)), 1, slots[i]);
+		}
+		return MethodHandles.permuteArguments(MethodHandles.filterArguments(target, 0, arguments),
+				MethodType.methodType(returnType, DataSlots.class), reorder);
+	}
+
+	private static MethodHandle argument(Class<?> parameterType) {
+		if (parameterType == int.class) {
+			return INT_VALUE;
+		}
+		if (parameterType == long.class) {
+			return LONG_VALUE;
+		}
+		if (parameterType == double.class) {
+			return DOUBLE_VALUE;
+		}
+		return VALUE.asType(MethodType.methodType(parameterType, DataSlots.class, int.class));
+	}
+
+	private static Object value(DataSlots data, int slot) {
+		Object value = data.values[slot];
+		if (value instanceof Primitive) {
+			return ((Primitive) value).box(data.primitives[slot]);
+		}
+		return value;
+	}
+
+	private static int intValue(DataSlots data, int slot) throws Throwable {
+		if (data.values[slot] == Primitive.INT) {
+			return (int) data.primitives[slot];
+		}
+		return (int) TO_INT.invokeExact(value(data, slot));
+	}
+
+	private static long longValue(DataSlots data, int slot) throws Throwable {
+		Object value = data.values[slot];
+		if (value == Primitive.INT || value == Primitive.LONG) {
+			return data.primitives[slot];
+		}
+		return (long) TO_LONG.invokeExact(value(data, slot));
+	}
+
+	private static double doubleValue(DataSlots data, int slot) throws Throwable {
+		Object value = data.values[slot];
+		if (value == Primitive.DOUBLE) {
+			return Double.longBitsToDouble(data.primitives[slot]);
+		}
+		if (value == Primitive.INT || value == Primitive.LONG) {
+			return data.primitives[slot];
+		}
+		return (double) TO_DOUBLE.invokeExact(value(data, slot));
+	}
+
+}
@@ -79,6 +79,23 @@ interface ExecutableTransition extends Transition {
 	 */
 	public boolean guardIsTrue(Map<String, Boolean> guardToValue);
 
+	/**
+	 * Defines if the transition guard is true provided the guard values indexed by the guard index. The guard
+	 * expression is compiled when the transition is created, so no guard names are looked up.
+	 * 
+	 * @param valuation
+	 *            the guard values indexed by the guard index within the behaviour
+	 * @return true, if the guard is true
+	 */
+	public boolean guardIsTrue(GuardValuation valuation);
+
+	/**
+	 * Provides the indexes within the behaviour of the guards used in the guard expression of the transition.
+	 * 
+	 * @return the indexes of the guards, each index occurs once
+	 */
+	public int[] guardIndices();
+
 	/**
 	 * Gets the type of the port this transition is associated to.
 	 * 
@@ -23,14 +23,10 @@ import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Map;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
 import org.javabip.api.Data;
 import org.javabip.api.Guard;
 import org.javabip.api.PortType;
 import org.javabip.exceptions.BIPException;
-import org.javabip.executor.guardparser.boolLexer;
-import org.javabip.executor.guardparser.boolParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,17 +41,40 @@ class ExecutableTransitionImpl extends TransitionImpl implements ExecutableTrans
 
 	private PortType portType;
 	private GuardTreeNode guardTree;
+	private CompiledGuard compiledGuard;
+	private boolean hasDataOnGuards;
+
+	private static final int[] NO_GUARDS = new int[0];
 
 	private Logger logger = LoggerFactory.getLogger(ExecutableTransitionImpl.class);
 
-	public ExecutableTransitionImpl(TransitionImpl transition, PortType portType, Map<String, Guard> guards) {
+	/**
+	 * Creates an executable transition and compiles its guard expression.
+	 * 
+	 * @param transition
+	 *            the transition information.
+	 * @param portType
+	 *            the type of the port the transition is associated to.
+	 * @param guards
+	 *            the mapping between the guard name and the guard instance.
+	 * @param guardIndices
+	 *            the mapping between the guard name and the guard index within the behaviour.
+	 */
+	public ExecutableTransitionImpl(TransitionImpl transition, PortType portType, Map<String, Guard> guards,
+			Map<String, Integer> guardIndices) {
 		super(transition);
 		this.portType = portType;
 		if (hasGuard()) {
-			this.guardTree = parseANTLR(guard);
+			this.guardTree = GuardExpressionCache.parse(guard);
 			if (this.guardTree == null)
 				throw new BIPException("Guard expression " + guard + " does not have proper syntax.");
 			this.guardTree.createGuardList(guards);
+			this.compiledGuard = new CompiledGuard(guardTree, guardIndices);
+			for (Guard guard : this.guardTree.guardList()) {
+				if (guard.hasData()) {
+					this.hasDataOnGuards = true;
+				}
+			}
 		}
 	}
 
@@ -92,29 +111,15 @@ class ExecutableTransitionImpl extends TransitionImpl implements ExecutableTrans
 		return this.guardTree.guardList();
 	}
 
-	private GuardTreeNode parseANTLR(String input) {
-		boolLexer lexer = new boolLexer(new ANTLRInputStream(input));
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		boolParser p = new boolParser(tokens);
-		p.setBuildParseTree(true);
-		// p.addParseListener(new boolListener());
-		p.formula();
-		if (!p.stack.empty()) {
-			return p.stack.pop();
-		}
-		return null;
+	public boolean hasDataOnGuards() {
+		return hasDataOnGuards;
 	}
 
-	public boolean hasDataOnGuards() {
+	public int[] guardIndices() {
 		if (!hasGuard()) {
-			return false;
-		}
-		for (Guard guard : this.guardTree.guardList()) {
-			if (guard.hasData()) {
-				return true;
-			}
+			return NO_GUARDS;
 		}
-		return false;
+		return compiledGuard.usedGuards();
 	}
 
 	public boolean hasGuard() {
@@ -149,6 +154,20 @@ class ExecutableTransitionImpl extends TransitionImpl implements ExecutableTrans
 		}
 	}
 
+	public boolean guardIsTrue(GuardValuation valuation) throws BIPException {
+		if (!hasGuard()) {
+			return true;
+		}
+		if (this.compiledGuard.evaluate(valuation)) {
+			logger.debug("Transition {} is enabled.", this.name());
+			return true;
+
+		} else {
+			logger.debug("Transition {} is disabled.", this.name());
+			return false;
+		}
+	}
+
 	@Override
 	public boolean hasData() {
 		return dataRequired.iterator() == null;
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Receives the events describing the activity of the executors, for instance to record them with Java Flight Recorder.
+ * 
+ * The implementation is found with the ServiceLoader, the first implementation which can be loaded is used. If there
+ * is none, the events are dropped. Each kind of event is recorded or not on its own. The executors begin the events
+ * which span an activity when the activity starts and give them back when it ends, begin returns null for the kinds
+ * not recorded so the events cost a single call, which the JIT inlines, when nothing is recorded. The other events are
+ * reported only if isRecording is true for their kind.
+ */
+public abstract class ExecutorEvents {
+
+	/**
+	 * The kinds of events reported by the executors.
+	 */
+	public enum Kind {
+		STEP, GUARD_EVALUATION, GUARD_FAILURE, TRANSITION, INFORM, SPONTANEOUS_ENQUEUE, SPONTANEOUS_DEQUEUE, DATA_OUT
+	}
+
+	/**
+	 * The events receiver used by all the executors.
+	 */
+	public static final ExecutorEvents INSTANCE = load();
+
+	private static ExecutorEvents load() {
+		try {
+			Iterator<ExecutorEvents> implementations = ServiceLoader.load(ExecutorEvents.class,
+					ExecutorEvents.class.getClassLoader()).iterator();
+			while (implementations.hasNext()) {
+				try {
+					return implementations.next();
+				} catch (Throwable e) {
+					// An implementation relying on classes missing from this runtime is skipped.
+				}
+			}
+		} catch (Throwable e) {
+			// The events are not recorded.
+		}
+		return new ExecutorEvents() {
+			@Override
+			public boolean isRecording(Kind kind) {
+				return false;
+			}
+
+			@Override
+			public Object begin(Kind kind) {
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * @param kind
+	 *            the kind of the events.
+	 * @return true if the events of the kind are recorded. The executors do not report them otherwise.
+	 */
+	public abstract boolean isRecording(Kind kind);
+
+	/**
+	 * Begins an event spanning an activity, when the activity starts.
+	 * 
+	 * @param kind
+	 *            the kind of the event, one of STEP, GUARD_EVALUATION, TRANSITION, INFORM and DATA_OUT.
+	 * @return the event begun, which is given back when the activity ends, or null if the events of the kind are not
+	 *         recorded.
+	 */
+	public abstract Object begin(Kind kind);
+
+	/**
+	 * An execution cycle of the executor.
+	 * 
+	 * @param event
+	 *            the event begun when the activity started.
+	 * @param componentId
+	 *            the id of the executor.
+	 * @param componentType
+	 *            the type of the component.
+	 * @param state
+	 *            the state of the component when the cycle started.
+	 * @param outcome
+	 *            what the cycle did: internal, spontaneous, inform, waiting or none.
+	 */
+	public void step(Object event, String componentId, String componentType, String state, String outcome) {
+	}
+
+	/**
+	 * An invocation of a guard method.
+	 * 
+	 * @param event
+	 *            the event begun when the activity started.
+	 * @param componentType
+	 *            the type of the component.
+	 * @param guard
+	 *            the name of the guard.
+	 * @param withData
+	 *            true if data was given to the guard.
+	 * @param value
+	 *            the value of the guard.
+	 */
+	public void guardEvaluation(Object event, String componentType, String guard, boolean withData, boolean value) {
+	}
+
+	/**
+	 * A guard method threw an exception, its value was taken as false.
+	 * 
+	 * @param componentType
+	 *            the type of the component.
+	 * @param guard
+	 *            the name of the guard.
+	 * @param withData
+	 *            true if data was given to the guard.
+	 * @param cause
+	 *            the exception thrown.
+	 */
+	public void guardFailure(String componentType, String guard, boolean withData, Throwable cause) {
+	}
+
+	/**
+	 * An invocation of a transition method.
+	 * 
+	 * @param event
+	 *            the event begun when the activity started.
+	 * @param componentType
+	 *            the type of the component.
+	 * @param transition
+	 *            the name of the transition.
+	 * @param source
+	 *            the source state.
+	 * @param target
+	 *            the target state.
+	 */
+	public void transition(Object event, String componentType, String transition, String source, String target) {
+	}
+
+	/**
+	 * The executor informs the engine of the state of its component.
+	 * 
+	 * @param event
+	 *            the event begun when the activity started.
+	 * @param componentId
+	 *            the id of the executor.
+	 * @param componentType
+	 *            the type of the component.
+	 * @param state
+	 *            the state of the component.
+	 * @param disabledPorts
+	 *            the number of the enforceable ports disabled in the state.
+	 */
+	public void inform(Object event, String componentId, String componentType, String state, int disabledPorts) {
+	}
+
+	/**
+	 * A spontaneous event is received by the executor.
+	 * 
+	 * @param componentId
+	 *            the id of the executor.
+	 * @param port
+	 *            the spontaneous port.
+	 * @param withData
+	 *            true if the event carries data.
+	 */
+	public void spontaneousEnqueued(String componentId, String port, boolean withData) {
+	}
+
+	/**
+	 * A spontaneous event is taken by the executor to be executed.
+	 * 
+	 * @param componentId
+	 *            the id of the executor.
+	 * @param port
+	 *            the spontaneous port.
+	 * @param enqueued
+	 *            the System.nanoTime at which the event was received, or 0 if it was received while these events were
+	 *            not recorded.
+	 */
+	public void spontaneousDequeued(String componentId, String port, long enqueued) {
+	}
+
+	/**
+	 * A data out value is asked for.
+	 * 
+	 * @param event
+	 *            the event begun when the activity started.
+	 * @param componentType
+	 *            the type of the component.
+	 * @param data
+	 *            the name of the data.
+	 * @param fromCache
+	 *            true if the value computed earlier was returned.
+	 */
+	public void dataOut(Object event, String componentType, String data, boolean fromCache) {
+	}
+
+}
@@ -11,11 +11,14 @@ package org.javabip.executor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.javabip.api.BIPActorAware;
 import org.javabip.api.BIPComponent;
@@ -25,14 +28,16 @@ import org.javabip.api.ComponentProvider;
 import org.javabip.api.OrchestratedExecutor;
 import org.javabip.api.Port;
 import org.javabip.api.PortBase;
+import org.javabip.api.PortType;
 import org.javabip.exceptions.BIPException;
+import org.javabip.executor.SpontaneousEventQueue.SpontaneousEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The Kernel Executor which performs the execution of the corresponding BIP Component via its Behaviour. It is not a
  * multi-thread safe executor kernel therefore it should never be directly used. It needs to be proxied to protect it
- * from multi-thread access by for example Akka actor approach.
+ * from multi-thread access by for example Akka actor approach or by MailboxExecutor.
  * 
  * At each execution cycle, the executor checks for the enabled internal, spontaneous and enforceable transition and
  * then either performs a transition or notifies the engine of the disabled ports.
@@ -46,20 +51,35 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 	private BIPEngine engine;
 
-	private ArrayList<String> notifiers = new ArrayList<String>();
-
-	private ArrayList<Map<String, Object>> notifiersData = new ArrayList<Map<String, Object>>();
+	/**
+	 * The spontaneous events received and not yet executed. Events can be added to it from any thread.
+	 */
+	private final SpontaneousEventQueue spontaneousEvents;
 
 	protected boolean registered = false;
 
 	private Logger logger = LoggerFactory.getLogger(ExecutorKernel.class);
 
-	private Map<String, Object> dataEvaluation = new Hashtable<String, Object>();
+	/**
+	 * The data values provided for the next transition, stored at the slots the behaviour assigns to the data names.
+	 */
+	private final DataSlots dataValues;
 
-	boolean waitingForSpontaneous = false;
+	/**
+	 * True if data was provided for the next transition, even data that no guard and no transition needs.
+	 */
+	private boolean dataProvided;
+
+	/**
+	 * True if the executor waits for a spontaneous event to make the next step. The flag is reset by the thread which
+	 * issues the next step.
+	 */
+	final AtomicBoolean waitingForSpontaneous = new AtomicBoolean(false);
 
 	protected OrchestratedExecutor proxy;
 
+	private ComponentMetrics metrics = ComponentMetrics.NOOP;
+
 	/**
 	 * By default, the Executor is created for a component with annotations. If you want to create the Executor for a
 	 * component with behaviour, use another constructor
@@ -88,6 +108,15 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 	public ExecutorKernel(Object bipComponent, String id, boolean useSpec) throws BIPException {
 		super(bipComponent, useSpec);
 		this.id = id;
+		this.guardToValue = behaviourImpl.newGuardValuation();
+		this.dataValues = new DataSlots(behaviourImpl.dataSlotCount());
+		ArrayList<String> spontaneousPorts = new ArrayList<String>();
+		for (Port port : behaviour.getAllPorts()) {
+			if (port.getType() == PortType.spontaneous) {
+				spontaneousPorts.add(port.getId());
+			}
+		}
+		this.spontaneousEvents = new SpontaneousEventQueue(spontaneousPorts);
 	}
 
 	/*
@@ -115,18 +144,18 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 		}
 		this.engine = engine;
 		registered = true;
-		waitingForSpontaneous = false;
+		waitingForSpontaneous.set(false);
 		proxy.step();
 	}
 
 	public void deregister() {
 		this.registered = false;
-		this.waitingForSpontaneous = false;
+		this.waitingForSpontaneous.set(false);
 		this.engine = null;
 	}
 
-	// Computed in guardToValue, used for checks in execute.
-	private Map<String, Boolean> guardToValue;
+	// Computed in guardToValue, used for checks in execute. Reused from one step to the next.
+	private GuardValuation guardToValue;
 
 	/**
 	 * 
@@ -142,69 +171,103 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 		if (!registered)
 			return;
 
-		dataEvaluation.clear();
+		ExecutorEvents events = ExecutorEvents.INSTANCE;
+		Object event = events.begin(ExecutorEvents.Kind.STEP);
+		if (event == null) {
+			cycle();
+			return;
+		}
+		String state = behaviour.getCurrentState();
+		String outcome = cycle();
+		events.step(event, id, behaviour.getComponentType(), state, outcome);
+	}
+
+	/*
+	 * The body of the step, it tells what it did for the events.
+	 */
+	private String cycle() throws BIPException {
+
+		if (dataProvided) {
+			dataValues.clear();
+			dataProvided = false;
+		}
 
-		guardToValue = behaviour.computeGuardsWithoutData(behaviour.getCurrentState());
+		behaviourImpl.computeGuardsWithoutData(guardToValue);
 
 		// we have to compute this in order to be able to raise an exception
-		boolean existInternalTransition = behaviour.existEnabledInternal(guardToValue);
+		boolean existInternalTransition = behaviourImpl.existEnabledInternal(guardToValue);
 
 		if (existInternalTransition) {
 			logger.debug("About to execute internal transition for component {}", id);
-			behaviour.executeInternal(guardToValue);
+			behaviourImpl.executeInternal(guardToValue);
 			logger.debug("Issuing next step message for component {}", id);
 			// Scheduling the next execution step.
 			proxy.step();
 			logger.debug("Finishing current step that has executed an internal transition for component {}", id);
-			return;
+			return "internal";
 		}
 		;
 
-		boolean existSpontaneousTransition = behaviour.existInCurrentStateAndEnabledSpontaneous(guardToValue);
-
-		if (existSpontaneousTransition && !notifiers.isEmpty()) {
+		boolean existSpontaneousTransition = behaviourImpl.existInCurrentStateAndEnabledSpontaneous(guardToValue);
+		// Any event added after this point is noticed before the executor starts waiting for spontaneous events.
+		long lastSeenEvent = spontaneousEvents.lastSequence();
 
-			for (int i = 0; i < notifiers.size(); i++) {
-
-				String port = notifiers.get(i);
-
-				if (behaviour.hasEnabledTransitionFromCurrentState(port, guardToValue)) {
-					logger.debug("About to execute spontaneous transition {} for component {}", port, id);
+		if (existSpontaneousTransition) {
 
-					notifiers.remove(i);
-					Map<String, ?> data = notifiersData.remove(i);
+			// The oldest event among the heads of the queues of the enabled spontaneous ports is executed.
+			int oldestPort = -1;
+			long oldestSequence = Long.MAX_VALUE;
+			for (int i = 0; i < spontaneousEvents.noOfPorts(); i++) {
+				SpontaneousEvent event = spontaneousEvents.peek(i);
+				if (event != null && event.sequence() < oldestSequence
+						&& behaviourImpl.hasEnabledTransitionFromCurrentState(event.port(), guardToValue)) {
+					oldestPort = i;
+					oldestSequence = event.sequence();
+				}
+			}
 
-					// Both notifiers and notifiersData should be LinkedList to perform efficient removal from the
-					// middle.
-					if (data == null) {
-						behaviour.executePort(port);
-					} else {
-						behaviour.execute(port, data);
-					}
+			if (oldestPort >= 0) {
+				SpontaneousEvent event = spontaneousEvents.poll(oldestPort);
+				String port = event.port();
+				if (ExecutorEvents.INSTANCE.isRecording(ExecutorEvents.Kind.SPONTANEOUS_DEQUEUE)) {
+					ExecutorEvents.INSTANCE.spontaneousDequeued(id, port, event.enqueued());
+				}
+				logger.debug("About to execute spontaneous transition {} for component {}", port, id);
 
-					logger.debug("Issuing next step message for component {}", id);
-					// Scheduling the next execution step.
-					proxy.step();
-					logger.debug("Finishing current step that has executed a spontaneous transition for component {}",
-							id);
-					return;
+				Map<String, ?> data = event.data();
+				if (data == null) {
+					behaviour.executePort(port);
+				} else {
+					behaviour.execute(port, data);
 				}
+
+				logger.debug("Issuing next step message for component {}", id);
+				// Scheduling the next execution step.
+				proxy.step();
+				logger.debug("Finishing current step that has executed a spontaneous transition for component {}", id);
+				return "spontaneous";
 			}
 
 		}
 
-		boolean existEnforceableTransition = behaviour
+		boolean existEnforceableTransition = behaviourImpl
 				.existInCurrentStateAndEnabledEnforceableWithoutData(guardToValue)
 				|| behaviour.existInCurrentStateAndEnforceableWithData();
 
-		Set<Port> globallyDisabledPorts = behaviour
+		Set<Port> globallyDisabledPorts = behaviourImpl
 				.getGloballyDisabledEnforceablePortsWithoutDataTransfer(guardToValue);
 
 		if (existEnforceableTransition) {
 			logger.debug("About to execute engine inform for component {}", id);
+			ExecutorEvents events = ExecutorEvents.INSTANCE;
+			Object event = events.begin(ExecutorEvents.Kind.INFORM);
 			engine.inform(proxy, behaviour.getCurrentState(), globallyDisabledPorts);
+			if (event != null) {
+				events.inform(event, id, behaviour.getComponentType(), behaviour.getCurrentState(),
+						globallyDisabledPorts.size());
+			}
 			// Next step will be invoked upon finishing treatment of the message execute.
-			return;
+			return "inform";
 		}
 
 		/*
@@ -220,16 +283,35 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 			 * are no transitions store this information and use it for the next cycles till you get something
 			 * different. When this is done uncomment the next line.
 			 */
-			waitingForSpontaneous = true;
+			waitingForSpontaneous.set(true);
+			// An event added while the queues were scanned did not see the flag set, so it is checked here.
+			if (spontaneousEvents.lastSequence() != lastSeenEvent && waitingForSpontaneous.compareAndSet(true, false)) {
+				logger.debug("Issuing next step message for component {}", id);
+				proxy.step();
+			}
 			// engine.inform(proxy, behaviour.getCurrentState(), globallyDisabledPorts);
 			// Next step will be invoked upon receiving a spontaneous event.
-			return;
+			return "waiting";
 		}
 
 		// throw new BIPException("No transition of known type from state "
 		// + behaviour.getCurrentState() + " in component "
 		// + this.getId());
+		return "none";
+	}
 
+	/**
+	 * Sets the metrics recording the transitions executed, the time taken by the transitions and the guards, and the
+	 * number of spontaneous events waiting. By default nothing is recorded. It is to be called before the executor is
+	 * started.
+	 * 
+	 * @param metrics
+	 *            the metrics, for instance InMemoryExecutorMetrics.
+	 */
+	public void setMetrics(ExecutorMetrics metrics) {
+		this.metrics = metrics.component(behaviour.getComponentType(), id);
+		behaviourImpl.setMetrics(this.metrics);
+		guardToValue.setMetrics(this.metrics);
 	}
 
 	/**
@@ -239,13 +321,13 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 		if (portID != null) {
 
-			if (dataEvaluation.isEmpty()) {
+			if (!dataProvided) {
 
 				if (behaviour.transitionNoDataGuardData(portID)) {
 					behaviour.executePort(portID);
 				}
 
-				else if (!behaviour.existInCurrentStateAndEnabledEnforceableWithoutData(guardToValue))
+				else if (!behaviourImpl.existInCurrentStateAndEnabledEnforceableWithoutData(guardToValue))
 					throw new BIPException("Port " + portID + " is not enabled in the current state");
 				else {
 					behaviour.executePort(portID);
@@ -253,11 +335,8 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 			} else {
 
 				// Performing a check that all data provided make the transition enabled.
-				List<Map<String, Object>> parameter = new ArrayList<Map<String, Object>>();
-				parameter.add(dataEvaluation);
-
 				try {
-					if (!behaviour.checkEnabledness(portID, parameter).get(0)) {
+					if (!behaviourImpl.checkEnabledness(portID, dataValues)) {
 						throw new BIPException("Port with " + portID
 								+ " that requires data is not enabled for the received data");
 					}
@@ -265,7 +344,7 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 					throw new BIPException(e);
 				}
 
-				behaviour.execute(portID, dataEvaluation);
+				behaviourImpl.execute(portID, dataValues);
 			}
 		}
 
@@ -274,6 +353,14 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 	}
 
+	/**
+	 * Executes a transition requiring data, the data being provided together with the port.
+	 */
+	public void execute(String portID, Map<String, ?> data) {
+		setData(data);
+		execute(portID);
+	}
+
 	public void inform(String portID) {
 
 		inform(portID, null);
@@ -291,12 +378,16 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 		logger.info("{} was informed of a spontaneous transition {}", this.getId(), portID);
 
-		notifiers.add(portID);
-		notifiersData.add(data);
+		spontaneousEvents.add(portID, data);
+		if (metrics != ComponentMetrics.NOOP) {
+			metrics.spontaneousEventQueued(portID, spontaneousEvents.size());
+		}
+		if (ExecutorEvents.INSTANCE.isRecording(ExecutorEvents.Kind.SPONTANEOUS_ENQUEUE)) {
+			ExecutorEvents.INSTANCE.spontaneousEnqueued(id, portID, data != null);
+		}
 
-		if (waitingForSpontaneous) {
+		if (waitingForSpontaneous.compareAndSet(true, false)) {
 			logger.debug("Issuing next step message for component {}", id);
-			waitingForSpontaneous = false;
 			proxy.step();
 		}
 
@@ -313,9 +404,7 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 		try {
 			logger.debug("Component {} providing data {}.", behaviour.getComponentType(), name);
-			Object[] args = new Object[1];
-			args[0] = bipComponent;
-			Object methodResult = behaviour.getDataOutMapping().get(name).invokeWithArguments(args);
+			Object methodResult = behaviourImpl.getDataOutValue(name);
 
 			if (!clazz.equals(Object.class) && !methodResult.getClass().isAssignableFrom(clazz)) {
 				result = getPrimitiveData(name, methodResult, clazz);
@@ -329,6 +418,44 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 		return result;
 	}
 
+	public Map<String, Object> getData(Collection<String> names) {
+		HashMap<String, Object> result = new HashMap<String, Object>(names.size() * 2);
+		for (String name : names) {
+			result.put(name, getData(name, Object.class));
+		}
+		return result;
+	}
+
+	public int getIntData(String name) {
+		try {
+			return behaviourImpl.getIntDataOutValue(name);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new BIPException("The data " + name + " of component " + id + " could not be computed.", e);
+		}
+	}
+
+	public long getLongData(String name) {
+		try {
+			return behaviourImpl.getLongDataOutValue(name);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new BIPException("The data " + name + " of component " + id + " could not be computed.", e);
+		}
+	}
+
+	public double getDoubleData(String name) {
+		try {
+			return behaviourImpl.getDoubleDataOutValue(name);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new BIPException("The data " + name + " of component " + id + " could not be computed.", e);
+		}
+	}
+
 	Set<Class<?>> primitiveTypes = new HashSet<Class<?>>(Arrays.<Class<?>> asList(int.class, float.class, double.class,
 			byte.class, long.class, short.class, boolean.class, char.class));
 
@@ -366,6 +493,25 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 		return null;
 	}
 
+	/**
+	 * Checks the enabledness of the port for every row of a table of data values. The guards without data are evaluated
+	 * once for the whole table.
+	 * 
+	 * @param port
+	 *            the port.
+	 * @param data
+	 *            the rows of data values, each indexed by the data name.
+	 * @return the indexes of the rows for which the port is enabled, or null if the enabledness could not be checked.
+	 */
+	public BitSet enabledRows(PortBase port, List<Map<String, Object>> data) {
+		try {
+			return behaviourImpl.enabledRows(port.getId(), data);
+		} catch (BIPException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
 	public BIPComponent component() {
 		if (proxy == null) {
 			throw new BIPException("Proxy to provide multi-thread safety was not provided.");
@@ -374,7 +520,88 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 	}
 
 	public void setData(String dataName, Object data) {
-		this.dataEvaluation.put(dataName, data);
+		setData(behaviourImpl.dataSlot(dataName), data);
+	}
+
+	public void setData(Map<String, ?> data) {
+		for (Map.Entry<String, ?> entry : data.entrySet()) {
+			setData(behaviourImpl.dataSlot(entry.getKey()), entry.getValue());
+		}
+	}
+
+	/**
+	 * Provides the slot of a data, so that the caller resolves the data name once and then provides the data value
+	 * by slot.
+	 * 
+	 * @param dataName
+	 *            the name of the data.
+	 * @return the slot of the data, or -1 if no guard and no transition of the component needs the data.
+	 */
+	public int getDataSlot(String dataName) {
+		return behaviourImpl.dataSlot(dataName);
+	}
+
+	/**
+	 * Provides the value of a data for the next transition.
+	 * 
+	 * @param slot
+	 *            the slot of the data, as given by getDataSlot. The value of a data with the slot -1 is not needed and
+	 *            is not kept.
+	 * @param data
+	 *            the value of the data.
+	 */
+	public void setData(int slot, Object data) {
+		dataProvided = true;
+		if (slot >= 0) {
+			dataValues.set(slot, data);
+		}
+	}
+
+	/**
+	 * Provides the value of a data for the next transition without boxing it. The value reaches the int, long or
+	 * double parameters of the guards and of the transition unboxed, the other parameters get it boxed.
+	 * 
+	 * @param slot
+	 *            the slot of the data, as given by getDataSlot. The value of a data with the slot -1 is not needed and
+	 *            is not kept.
+	 * @param data
+	 *            the value of the data.
+	 */
+	public void setIntData(int slot, int data) {
+		dataProvided = true;
+		if (slot >= 0) {
+			dataValues.setInt(slot, data);
+		}
+	}
+
+	/**
+	 * Provides the value of a data for the next transition without boxing it, see setIntData.
+	 * 
+	 * @param slot
+	 *            the slot of the data, as given by getDataSlot.
+	 * @param data
+	 *            the value of the data.
+	 */
+	public void setLongData(int slot, long data) {
+		dataProvided = true;
+		if (slot >= 0) {
+			dataValues.setLong(slot, data);
+		}
+	}
+
+	/**
+	 * Provides the value of a data for the next transition without boxing it, see setIntData.
+	 * 
+	 * @param slot
+	 *            the slot of the data, as given by getDataSlot.
+	 * @param data
+	 *            the value of the data.
+	 */
+	public void setDoubleData(int slot, double data) {
+		dataProvided = true;
+		if (slot >= 0) {
+			dataValues.setDouble(slot, data);
+		}
 	}
 
 	public String toString() {
@@ -389,6 +616,35 @@ public class ExecutorKernel extends SpecificationParser implements OrchestratedE
 
 	}
 
+	/**
+	 * Switches between the eager and the lazy evaluation of the guards without data. By default the guards are
+	 * evaluated eagerly, at the beginning of each step. In the lazy mode a guard is invoked only if the step needs its
+	 * value and it is invoked at most once per step. Guards which are expensive to compute benefit from the lazy mode,
+	 * guards with side effects are not guaranteed to be invoked in it. The mode is to be chosen before the executor is
+	 * registered.
+	 * 
+	 * @param lazy
+	 *            true, if the guards are to be evaluated on demand
+	 */
+	public void setLazyGuardEvaluation(boolean lazy) {
+		guardToValue.setLazy(lazy);
+	}
+
+	/**
+	 * @return the number of guards without data invoked by the steps of this executor, the guards with data checked for
+	 *         the engine are not counted
+	 */
+	public long getGuardWithoutDataInvocations() {
+		return guardToValue.getGuardWithoutDataInvocations();
+	}
+
+	/**
+	 * @return the number of guard invocations avoided by the lazy evaluation of the guards
+	 */
+	public long getAvoidedGuardInvocations() {
+		return guardToValue.getAvoidedGuardInvocations();
+	}
+
 	public String getType() {
 		return behaviour.getComponentType();
 	}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+/**
+ * Provides the recorders of the metrics of the executors, see ExecutorKernel.setMetrics.
+ */
+public interface ExecutorMetrics {
+
+	/**
+	 * Metrics which are not recorded.
+	 */
+	public static final ExecutorMetrics NOOP = new ExecutorMetrics() {
+		public ComponentMetrics component(String componentType, String componentId) {
+			return ComponentMetrics.NOOP;
+		}
+	};
+
+	/**
+	 * Provides the recorder of the metrics of an executor. It is asked for once, when the metrics are set for the
+	 * executor, so that the recorder can resolve anything it needs per component beforehand.
+	 * 
+	 * @param componentType
+	 *            the type of the component.
+	 * @param componentId
+	 *            the id of the executor.
+	 * @return the recorder of the metrics of the executor.
+	 */
+	public ComponentMetrics component(String componentType, String componentId);
+
+}
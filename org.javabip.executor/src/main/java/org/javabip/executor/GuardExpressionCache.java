@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.javabip.executor.guardparser.boolLexer;
+import org.javabip.executor.guardparser.boolParser;
+
+/**
+ * Memoizes the parsed guard expressions by their text, shared by all the transitions of all the components. The same
+ * guard expression is typically used by every instance of a component type, so it is parsed only once.
+ * 
+ * The cached trees are never handed out, as the trees get bound to the guards of a behaviour. Each transition gets its
+ * own copy of the cached tree, which is much cheaper than parsing the expression again.
+ * 
+ * The cache is bounded by the system property org.javabip.executor.guardCacheSize, 1024 expressions by default. Once
+ * it is full, the new expressions are parsed without being cached.
+ * 
+ * The expressions are parsed by GuardExpressionParser, unless the system property org.javabip.executor.guardParser is
+ * set to antlr, in which case the parser generated by ANTLR is used.
+ */
+public final class GuardExpressionCache {
+
+	private static final int MAX_SIZE = Integer.getInteger("org.javabip.executor.guardCacheSize", 1024);
+
+	private static final boolean USE_ANTLR = "antlr".equalsIgnoreCase(System
+			.getProperty("org.javabip.executor.guardParser"));
+
+	private static final ConcurrentHashMap<String, GuardTreeNode> parsedExpressions = new ConcurrentHashMap<String, GuardTreeNode>();
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private GuardExpressionCache() {
+	}
+
+	/**
+	 * Provides the parsed tree of the guard expression, not yet bound to any guards.
+	 * 
+	 * @param expression
+	 *            the guard expression.
+	 * @return a new tree for the expression, or null if the expression does not have proper syntax.
+	 */
+	static GuardTreeNode parse(String expression) {
+
+		GuardTreeNode parsed = parsedExpressions.get(expression);
+		if (parsed != null) {
+			hits.incrementAndGet();
+			return copy(parsed);
+		}
+
+		misses.incrementAndGet();
+		parsed = USE_ANTLR ? parseANTLR(expression) : GuardExpressionParser.parse(expression);
+		if (parsed == null) {
+			return null;
+		}
+		if (parsedExpressions.size() < MAX_SIZE) {
+			GuardTreeNode cached = parsedExpressions.putIfAbsent(expression, parsed);
+			if (cached != null) {
+				parsed = cached;
+			}
+		}
+		return copy(parsed);
+	}
+
+	/**
+	 * @return the number of guard expressions found in the cache.
+	 */
+	public static long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of guard expressions which had to be parsed.
+	 */
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of guard expressions in the cache.
+	 */
+	public static int size() {
+		return parsedExpressions.size();
+	}
+
+	/**
+	 * Empties the cache and resets the counters.
+	 */
+	public static void clear() {
+		parsedExpressions.clear();
+		hits.set(0);
+		misses.set(0);
+	}
+
+	private static GuardTreeNode parseANTLR(String input) {
+		boolLexer lexer = new boolLexer(new ANTLRInputStream(input));
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		boolParser p = new boolParser(tokens);
+		p.setBuildParseTree(true);
+		// p.addParseListener(new boolListener());
+		p.formula();
+		if (!p.stack.empty()) {
+			return p.stack.pop();
+		}
+		return null;
+	}
+
+	/*
+	 * Copies the structure of the tree, the children are kept in the same order.
+	 */
+	private static GuardTreeNode copy(GuardTreeNode node) {
+		GuardTreeNode result = new GuardTreeNode(node.data);
+		for (GuardTreeNode child : node.children) {
+			copy(child).attachToNode(result);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+/**
+ * A recursive descent parser of guard expressions, building the same trees as the ANTLR parser generated from
+ * guardparser/bool.g4 without loading the ANTLR runtime. The grammar is
+ * 
+ * <pre>
+ * expr        : conjunction ( '|' expr )?
+ * conjunction : term ( '&amp;' conjunction )?
+ * term        : '!'? ident
+ * ident       : ID | '(' expr ')'
+ * </pre>
+ * 
+ * As in the ANTLR parser, the binary operators are right associative and the first child of a binary node is its right
+ * operand. Unlike the ANTLR parser, which stops at the first token it cannot use, the whole input has to be a guard
+ * expression.
+ */
+final class GuardExpressionParser {
+
+	private final String input;
+	private int position;
+
+	private GuardExpressionParser(String input) {
+		this.input = input;
+	}
+
+	/**
+	 * Parses the guard expression.
+	 * 
+	 * @param input
+	 *            the guard expression.
+	 * @return the root of the tree of the expression, or null if the expression does not have proper syntax.
+	 */
+	static GuardTreeNode parse(String input) {
+		GuardExpressionParser parser = new GuardExpressionParser(input);
+		GuardTreeNode root = parser.expression();
+		if (root == null || parser.peek() != -1) {
+			return null;
+		}
+		return root;
+	}
+
+	private GuardTreeNode expression() {
+		GuardTreeNode left = conjunction();
+		if (left == null || peek() != '|') {
+			return left;
+		}
+		position++;
+		GuardTreeNode right = expression();
+		return right == null ? null : binary("|", left, right);
+	}
+
+	private GuardTreeNode conjunction() {
+		GuardTreeNode left = term();
+		if (left == null || peek() != '&') {
+			return left;
+		}
+		position++;
+		GuardTreeNode right = conjunction();
+		return right == null ? null : binary("&", left, right);
+	}
+
+	private GuardTreeNode term() {
+		if (peek() != '!') {
+			return ident();
+		}
+		position++;
+		GuardTreeNode operand = ident();
+		if (operand == null) {
+			return null;
+		}
+		GuardTreeNode negation = new GuardTreeNode("!");
+		operand.attachToNode(negation);
+		return negation;
+	}
+
+	private GuardTreeNode ident() {
+		int c = peek();
+		if (c == '(') {
+			position++;
+			GuardTreeNode inner = expression();
+			if (inner == null || peek() != ')') {
+				return null;
+			}
+			position++;
+			return inner;
+		}
+		if (c == -1 || !isIdentifierStart((char) c)) {
+			return null;
+		}
+		int start = position;
+		while (position < input.length() && isIdentifierPart(input.charAt(position))) {
+			position++;
+		}
+		return new GuardTreeNode(input.substring(start, position));
+	}
+
+	/*
+	 * The right operand is attached first, as done by the ANTLR parser popping its stack.
+	 */
+	private static GuardTreeNode binary(String operator, GuardTreeNode left, GuardTreeNode right) {
+		GuardTreeNode node = new GuardTreeNode(operator);
+		right.attachToNode(node);
+		left.attachToNode(node);
+		return node;
+	}
+
+	/*
+	 * Skips the white space and returns the next character without consuming it, or -1 at the end of the input.
+	 */
+	private int peek() {
+		while (position < input.length()) {
+			char c = input.charAt(position);
+			if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+				return c;
+			}
+			position++;
+		}
+		return -1;
+	}
+
+	private static boolean isIdentifierStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return isIdentifierStart(c) || (c >= '0' && c <= '9');
+	}
+
+}
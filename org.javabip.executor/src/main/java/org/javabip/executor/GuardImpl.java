@@ -47,15 +47,21 @@ class GuardImpl implements Guard {
 	private String name;
 	private Method method;
 	private MethodHandle methodHandle;
+	private boolean pure;
 
 	// The List is used here, because List interface maintains order of its items.
 	// The order is very important since one Guard may have multiple dataIn-s of the same type.
 	private List<Data<?>> dataRequired = new ArrayList<Data<?>>();
 
 	public GuardImpl(String name, Method method, List<Data<?>> dataRequired) {
+		this(name, method, dataRequired, false);
+	}
+
+	public GuardImpl(String name, Method method, List<Data<?>> dataRequired, boolean pure) {
 		this.name = name;
 		this.method = method;
 		this.dataRequired = dataRequired;
+		this.pure = pure;
 		this.methodHandle = getMethodHandleForGuard();
 	}
 
@@ -79,6 +85,13 @@ class GuardImpl implements Guard {
 		return !dataRequired.isEmpty();
 	}
 
+	/**
+	 * @return true, if the guard is free of side effects and can be evaluated by several threads at once.
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+
 	public String toString() {
 
 		StringBuilder result = new StringBuilder();
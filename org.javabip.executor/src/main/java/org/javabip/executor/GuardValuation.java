@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.javabip.api.Guard;
+import org.javabip.exceptions.BIPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the values of the guards of a behaviour indexed by the guard index assigned when the behaviour was built. It
+ * replaces the mapping between guard names and their values on the execution path, so evaluating a compiled guard
+ * expression does neither hashing nor allocation.
+ * 
+ * A valuation is meant to be reused. Clearing it is a constant time operation, the values are only valid if they
+ * were set after the last clear.
+ * 
+ * In the lazy mode the guards without data are not evaluated upfront. A guard without data is invoked the first time
+ * its value is read after the last clear and its value is kept until the next clear, so guards skipped by the short
+ * circuit evaluation of the guard expressions are never invoked.
+ */
+class GuardValuation {
+
+	private Logger logger = LoggerFactory.getLogger(GuardValuation.class);
+
+	private String componentType;
+
+	private Guard[] guards;
+
+	/**
+	 * The guard methods bound to the component instance, see BehaviourImpl.
+	 */
+	private MethodHandle[] boundGuards;
+
+	/**
+	 * The guard methods with data bound to the slots of their data, see DataSlots.bind.
+	 */
+	private MethodHandle[] slotGuards;
+
+	private boolean[] values;
+
+	/**
+	 * For each guard, the epoch in which its value was set. A value is known only if it was set in the current epoch.
+	 */
+	private int[] evaluated;
+
+	private int epoch = 1;
+
+	private boolean lazy;
+
+	private ComponentMetrics metrics = ComponentMetrics.NOOP;
+
+	/**
+	 * The number of guards without data the current cycle may need, and the number of them invoked so far.
+	 */
+	private int guardsNeeded;
+	private int guardsInvokedInCycle;
+
+	/**
+	 * The counts of the guards without data, kept as plain fields since the valuation is only used by the thread of its
+	 * executor.
+	 */
+	private long guardWithoutDataInvocations;
+	private long avoidedGuardInvocations;
+
+	/**
+	 * Creates a valuation for the guards of a behaviour.
+	 * 
+	 * @param componentType
+	 *            the type of the component, for the executor events.
+	 * @param guards
+	 *            the guards of the behaviour, ordered by their index.
+	 * @param boundGuards
+	 *            the guard methods bound to the component instance, ordered by the guard index.
+	 */
+	public GuardValuation(String componentType, Guard[] guards, MethodHandle[] boundGuards) {
+		this(componentType, guards, boundGuards, null);
+	}
+
+	/**
+	 * Creates a valuation for the guards of a behaviour, which can also evaluate the guards with data stored at slots.
+	 * 
+	 * @param componentType
+	 *            the type of the component, for the executor events.
+	 * @param guards
+	 *            the guards of the behaviour, ordered by their index.
+	 * @param boundGuards
+	 *            the guard methods bound to the component instance, ordered by the guard index.
+	 * @param slotGuards
+	 *            the guard methods with data bound to the slots of their data, ordered by the guard index.
+	 */
+	public GuardValuation(String componentType, Guard[] guards, MethodHandle[] boundGuards, MethodHandle[] slotGuards) {
+		this.componentType = componentType;
+		this.guards = guards;
+		this.boundGuards = boundGuards;
+		this.slotGuards = slotGuards;
+		this.values = new boolean[guards.length];
+		this.evaluated = new int[guards.length];
+	}
+
+	/**
+	 * Forgets all the values set so far.
+	 */
+	public void clear() {
+		epoch++;
+		if (epoch == 0) {
+			// The epoch has wrapped around, old stamps could be mistaken for current ones.
+			Arrays.fill(evaluated, 0);
+			epoch = 1;
+		}
+	}
+
+	/**
+	 * Starts a new execution cycle. The values are cleared and the guards invoked lazily during the previous cycle are
+	 * accounted for.
+	 * 
+	 * @param guardsNeeded
+	 *            the number of guards without data the transitions of the current state depend on.
+	 */
+	public void startCycle(int guardsNeeded) {
+		clear();
+		avoidedGuardInvocations += Math.max(0, this.guardsNeeded - guardsInvokedInCycle);
+		this.guardsNeeded = lazy ? guardsNeeded : 0;
+		this.guardsInvokedInCycle = 0;
+	}
+
+	public ComponentMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the recorder of the time taken by the guards evaluated through this valuation.
+	 * 
+	 * @param metrics
+	 *            the recorder.
+	 */
+	public void setMetrics(ComponentMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Invokes the guard without data on the component and sets its value.
+	 * 
+	 * @param guardIndex
+	 *            the index of the guard.
+	 * @return the guard value.
+	 */
+	public boolean evaluate(int guardIndex) {
+		logger.debug("Evaluation of guard {}.", guards[guardIndex].name());
+		Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.GUARD_EVALUATION);
+		boolean measured = metrics != ComponentMetrics.NOOP;
+		long start = measured ? System.nanoTime() : 0;
+		boolean value = false;
+		try {
+			value = (boolean) boundGuards[guardIndex].invokeExact();
+		} catch (Throwable e) {
+			failed(guardIndex, false, e);
+		}
+		if (measured) {
+			metrics.guardEvaluated(guards[guardIndex].name(), System.nanoTime() - start);
+		}
+		if (event != null) {
+			ExecutorEvents.INSTANCE.guardEvaluation(event, componentType, guards[guardIndex].name(), false, value);
+		}
+		guardWithoutDataInvocations++;
+		set(guardIndex, value);
+		return value;
+	}
+
+	/**
+	 * Invokes the guard with data on the component and sets its value.
+	 * 
+	 * @param guardIndex
+	 *            the index of the guard.
+	 * @param data
+	 *            the data values in the order of the guard parameters.
+	 * @return the guard value.
+	 */
+	public boolean evaluate(int guardIndex, Object[] data) {
+		logger.debug("Evaluation of guard {} with args {}.", guards[guardIndex].name(), data);
+		Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.GUARD_EVALUATION);
+		boolean measured = metrics != ComponentMetrics.NOOP;
+		long start = measured ? System.nanoTime() : 0;
+		boolean value = false;
+		try {
+			value = (boolean) boundGuards[guardIndex].invokeExact(data);
+		} catch (Throwable e) {
+			failed(guardIndex, true, e);
+		}
+		if (measured) {
+			metrics.guardEvaluated(guards[guardIndex].name(), System.nanoTime() - start);
+		}
+		if (event != null) {
+			ExecutorEvents.INSTANCE.guardEvaluation(event, componentType, guards[guardIndex].name(), true, value);
+		}
+		set(guardIndex, value);
+		return value;
+	}
+
+	/**
+	 * Invokes the guard with data on the component and sets its value, the data being read from their slots.
+	 * 
+	 * @param guardIndex
+	 *            the index of the guard.
+	 * @param data
+	 *            the data values, stored at the slots of the data names.
+	 * @return the guard value.
+	 */
+	boolean evaluate(int guardIndex, DataSlots data) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Evaluation of guard {} with data at slots.", guards[guardIndex].name());
+		}
+		Object event = ExecutorEvents.INSTANCE.begin(ExecutorEvents.Kind.GUARD_EVALUATION);
+		boolean measured = metrics != ComponentMetrics.NOOP;
+		long start = measured ? System.nanoTime() : 0;
+		boolean value = false;
+		try {
+			value = (boolean) slotGuards[guardIndex].invokeExact(data);
+		} catch (Throwable e) {
+			failed(guardIndex, true, e);
+		}
+		if (measured) {
+			metrics.guardEvaluated(guards[guardIndex].name(), System.nanoTime() - start);
+		}
+		if (event != null) {
+			ExecutorEvents.INSTANCE.guardEvaluation(event, componentType, guards[guardIndex].name(), true, value);
+		}
+		set(guardIndex, value);
+		return value;
+	}
+
+	/*
+	 * A guard which throws is taken as false. The failure is reported to the metrics and the executor events as well
+	 * as logged, since in the lazy mode the guard may be invoked while the transitions are looked for.
+	 */
+	private void failed(int guardIndex, boolean withData, Throwable e) {
+		ExceptionHelper.printExceptionTrace(logger, e, "The guard " + guards[guardIndex].name() + " of component type "
+				+ componentType + " failed and is taken as false.");
+		metrics.guardFailed(guards[guardIndex].name());
+		if (ExecutorEvents.INSTANCE.isRecording(ExecutorEvents.Kind.GUARD_FAILURE)) {
+			ExecutorEvents.INSTANCE.guardFailure(componentType, guards[guardIndex].name(), withData, e);
+		}
+	}
+
+	/**
+	 * @return the number of guards without data invoked through this valuation, the guards with data are not counted.
+	 */
+	public long getGuardWithoutDataInvocations() {
+		return guardWithoutDataInvocations;
+	}
+
+	/**
+	 * @return the number of guards without data that the eager evaluation would have invoked but the lazy evaluation
+	 *         did not need, the current cycle included.
+	 */
+	public long getAvoidedGuardInvocations() {
+		return avoidedGuardInvocations + Math.max(0, guardsNeeded - guardsInvokedInCycle);
+	}
+
+	public void set(int guardIndex, boolean value) {
+		values[guardIndex] = value;
+		evaluated[guardIndex] = epoch;
+	}
+
+	public boolean isEvaluated(int guardIndex) {
+		return evaluated[guardIndex] == epoch;
+	}
+
+	/**
+	 * Returns the value of the guard.
+	 * 
+	 * @param guardIndex
+	 *            the index of the guard.
+	 * @return the guard value.
+	 * @throws BIPException
+	 *             when the guard has not been evaluated and, in the lazy mode, it cannot be evaluated because it
+	 *             depends on data.
+	 */
+	public boolean value(int guardIndex) throws BIPException {
+		if (evaluated[guardIndex] != epoch) {
+			if (lazy && !guards[guardIndex].hasData()) {
+				guardsInvokedInCycle++;
+				return evaluate(guardIndex);
+			}
+			throw new BIPException("Missing evaluation for the guard function " + guards[guardIndex].name());
+		}
+		return values[guardIndex];
+	}
+
+	/**
+	 * Sets the values of the guards given by name. Names which do not correspond to any guard are ignored.
+	 * 
+	 * @param guardToValue
+	 *            the mapping between the guard name and its value.
+	 */
+	public void assign(Map<String, Boolean> guardToValue) {
+		for (int i = 0; i < guards.length; i++) {
+			Boolean value = guardToValue.get(guards[i].name());
+			if (value != null) {
+				set(i, value);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, for instance latencies in nanoseconds. The values are counted in
+ * buckets bounded by powers of two, so that recording a value takes two atomic additions and the percentiles are known
+ * within a factor of two.
+ */
+public final class Histogram {
+
+	private static final int BUCKETS = 64;
+
+	/**
+	 * The bucket 0 counts the value 0, the bucket b > 0 counts the values from 2^(b-1) to 2^b - 1.
+	 */
+	private final AtomicLongArray buckets;
+
+	private final AtomicLong sum;
+
+	public Histogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.sum = new AtomicLong();
+	}
+
+	private Histogram(Histogram histogram) {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, histogram.buckets.get(i));
+		}
+		this.sum = new AtomicLong(histogram.sum.get());
+	}
+
+	/**
+	 * Records a value, a negative value being recorded as 0.
+	 * 
+	 * @param value
+	 *            the value.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+		sum.addAndGet(value);
+	}
+
+	/**
+	 * @return the number of values recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the sum of the values recorded.
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return the mean of the values recorded, or 0 if there is none.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Provides an upper bound of the percentile, the largest value of the bucket in which the percentile lies.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100.
+	 * @return the upper bound of the percentile, or 0 if no value was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = getBucketCounts();
+		long count = 0;
+		for (long bucketCount : counts) {
+			count += bucketCount;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen > 0 && seen >= rank) {
+				return upperBound(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the number of values in each bucket, the bucket 0 holding the value 0 and the bucket b > 0 the values
+	 *         from 2^(b-1) to 2^b - 1.
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+
+	/**
+	 * @return a copy of the histogram, which is not changed by the values recorded later.
+	 */
+	public Histogram snapshot() {
+		return new Histogram(this);
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	public String toString() {
+		return "Histogram(count = " + getCount() + ", mean = " + getMean() + ", p50 = " + getPercentile(50)
+				+ ", p99 = " + getPercentile(99) + ")";
+	}
+
+}
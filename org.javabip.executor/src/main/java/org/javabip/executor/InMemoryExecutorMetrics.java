@@ -0,0 +1,222 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.javabip.api.PortType;
+
+/**
+ * Keeps the metrics of the executors in memory, aggregated per component type. The executors of the components of a
+ * type share one recorder, the transitions are counted per type and their latencies kept per port, the guard latencies
+ * per guard as well as the number of failures of each guard. A snapshot of the metrics can be taken at any time, for instance to be exported.
+ */
+public class InMemoryExecutorMetrics implements ExecutorMetrics {
+
+	private final ConcurrentMap<String, TypeMetrics> metricsByType = new ConcurrentHashMap<String, TypeMetrics>();
+
+	public ComponentMetrics component(String componentType, String componentId) {
+		TypeMetrics metrics = metricsByType.get(componentType);
+		if (metrics == null) {
+			TypeMetrics created = new TypeMetrics();
+			metrics = metricsByType.putIfAbsent(componentType, created);
+			if (metrics == null) {
+				metrics = created;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return the metrics recorded so far, indexed by the component type.
+	 */
+	public Map<String, Snapshot> snapshot() {
+		HashMap<String, Snapshot> result = new HashMap<String, Snapshot>();
+		for (Map.Entry<String, TypeMetrics> entry : metricsByType.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Forgets the metrics recorded so far. The executors keep their recorders, which keep recording.
+	 */
+	public void reset() {
+		for (TypeMetrics metrics : metricsByType.values()) {
+			metrics.reset();
+		}
+	}
+
+	/**
+	 * The metrics of a component type at the time of the snapshot.
+	 */
+	public static final class Snapshot {
+
+		private final Map<PortType, Long> transitions;
+		private final Map<String, Histogram> transitionLatencies;
+		private final Map<String, Histogram> guardLatencies;
+		private final Map<String, Long> guardFailures;
+		private final Histogram spontaneousQueueDepth;
+
+		Snapshot(Map<PortType, Long> transitions, Map<String, Histogram> transitionLatencies,
+				Map<String, Histogram> guardLatencies, Map<String, Long> guardFailures,
+				Histogram spontaneousQueueDepth) {
+			this.transitions = Collections.unmodifiableMap(transitions);
+			this.transitionLatencies = Collections.unmodifiableMap(transitionLatencies);
+			this.guardLatencies = Collections.unmodifiableMap(guardLatencies);
+			this.guardFailures = Collections.unmodifiableMap(guardFailures);
+			this.spontaneousQueueDepth = spontaneousQueueDepth;
+		}
+
+		/**
+		 * @param type
+		 *            the type of the transitions.
+		 * @return the number of transitions of the type executed.
+		 */
+		public long getTransitions(PortType type) {
+			return transitions.get(type);
+		}
+
+		/**
+		 * @return the latencies of the transition methods in nanoseconds, indexed by the transition name.
+		 */
+		public Map<String, Histogram> getTransitionLatencies() {
+			return transitionLatencies;
+		}
+
+		/**
+		 * @return the latencies of the guard methods in nanoseconds, indexed by the guard name.
+		 */
+		public Map<String, Histogram> getGuardLatencies() {
+			return guardLatencies;
+		}
+
+		/**
+		 * @return the number of times each guard threw an exception, indexed by the guard name. The guards which never
+		 *         failed are not present.
+		 */
+		public Map<String, Long> getGuardFailures() {
+			return guardFailures;
+		}
+
+		/**
+		 * @return the number of spontaneous events waiting to be executed, sampled each time an event is queued.
+		 */
+		public Histogram getSpontaneousQueueDepth() {
+			return spontaneousQueueDepth;
+		}
+
+		public String toString() {
+			return "Snapshot(transitions = " + transitions + ", transitionLatencies = " + transitionLatencies
+					+ ", guardLatencies = " + guardLatencies + ", guardFailures = " + guardFailures
+					+ ", spontaneousQueueDepth = " + spontaneousQueueDepth + ")";
+		}
+
+	}
+
+	/*
+	 * The recorder shared by the executors of a component type. The histograms of the ports and guards are created the
+	 * first time they are used.
+	 */
+	private static final class TypeMetrics implements ComponentMetrics {
+
+		private final AtomicLongArray transitions = new AtomicLongArray(PortType.values().length);
+		private final ConcurrentMap<String, Histogram> transitionLatencies = new ConcurrentHashMap<String, Histogram>();
+		private final ConcurrentMap<String, Histogram> guardLatencies = new ConcurrentHashMap<String, Histogram>();
+		private final ConcurrentMap<String, AtomicLong> guardFailures = new ConcurrentHashMap<String, AtomicLong>();
+		private volatile Histogram spontaneousQueueDepth = new Histogram();
+
+		public void transitionExecuted(String port, PortType type, long nanos) {
+			transitions.incrementAndGet(type.ordinal());
+			histogram(transitionLatencies, port).record(nanos);
+		}
+
+		public void guardEvaluated(String guard, long nanos) {
+			histogram(guardLatencies, guard).record(nanos);
+		}
+
+		public void guardFailed(String guard) {
+			AtomicLong failures = guardFailures.get(guard);
+			if (failures == null) {
+				AtomicLong created = new AtomicLong();
+				failures = guardFailures.putIfAbsent(guard, created);
+				if (failures == null) {
+					failures = created;
+				}
+			}
+			failures.incrementAndGet();
+		}
+
+		public void spontaneousEventQueued(String port, int queueDepth) {
+			spontaneousQueueDepth.record(queueDepth);
+		}
+
+		private static Histogram histogram(ConcurrentMap<String, Histogram> histograms, String name) {
+			Histogram histogram = histograms.get(name);
+			if (histogram == null) {
+				Histogram created = new Histogram();
+				histogram = histograms.putIfAbsent(name, created);
+				if (histogram == null) {
+					histogram = created;
+				}
+			}
+			return histogram;
+		}
+
+		Snapshot snapshot() {
+			EnumMap<PortType, Long> transitionCounts = new EnumMap<PortType, Long>(PortType.class);
+			for (PortType type : PortType.values()) {
+				transitionCounts.put(type, transitions.get(type.ordinal()));
+			}
+			HashMap<String, Long> failures = new HashMap<String, Long>();
+			for (Map.Entry<String, AtomicLong> entry : guardFailures.entrySet()) {
+				failures.put(entry.getKey(), entry.getValue().get());
+			}
+			return new Snapshot(transitionCounts, snapshot(transitionLatencies), snapshot(guardLatencies), failures,
+					spontaneousQueueDepth.snapshot());
+		}
+
+		private static Map<String, Histogram> snapshot(Map<String, Histogram> histograms) {
+			HashMap<String, Histogram> result = new HashMap<String, Histogram>();
+			for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().snapshot());
+			}
+			return result;
+		}
+
+		void reset() {
+			for (int i = 0; i < transitions.length(); i++) {
+				transitions.set(i, 0);
+			}
+			transitionLatencies.clear();
+			guardLatencies.clear();
+			guardFailures.clear();
+			spontaneousQueueDepth = new Histogram();
+		}
+
+	}
+
+}
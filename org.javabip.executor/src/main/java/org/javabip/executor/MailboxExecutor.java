@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.javabip.api.BIPEngine;
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.api.PortBase;
+import org.javabip.exceptions.BIPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Protects an ExecutorKernel from multi-thread access by serializing the calls to it through a mailbox. The mailbox
+ * is drained by a task submitted to a java.util.concurrent.Executor whenever it becomes non empty, so no thread is
+ * dedicated to a component and a large number of components can share a few threads.
+ * 
+ * The calls without result (step, execute, setData, register and deregister) are only put into the mailbox. The calls
+ * with result (getData and checkEnabledness) wait until they are processed, unless they are made from within the
+ * mailbox processing itself, in which case they are executed directly. The spontaneous events are handed over to the
+ * kernel directly, as the kernel accepts them from any thread.
+ * 
+ * By default, the mailboxes are drained on virtual threads if the Java runtime provides them, and on a shared pool of
+ * daemon threads otherwise.
+ */
+public class MailboxExecutor implements OrchestratedExecutor {
+
+	/**
+	 * The maximal number of calls processed in one go, after which the mailbox is rescheduled to let the mailboxes of
+	 * other components progress.
+	 */
+	private static final int THROUGHPUT = 64;
+
+	private static Executor defaultExecutor;
+
+	private Logger logger = LoggerFactory.getLogger(MailboxExecutor.class);
+
+	private final ExecutorKernel kernel;
+
+	private final Executor executor;
+
+	private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * True if the mailbox is scheduled or being drained.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	/**
+	 * The thread draining the mailbox, or null.
+	 */
+	private volatile Thread drainingThread;
+
+	private final Runnable drain = new Runnable() {
+		public void run() {
+			drainMailbox();
+		}
+	};
+
+	/**
+	 * Creates the mailbox executor for the kernel, draining the mailbox with the default executor.
+	 * 
+	 * @param kernel
+	 *            the executor kernel to be protected.
+	 */
+	public MailboxExecutor(ExecutorKernel kernel) {
+		this(kernel, getDefaultExecutor());
+	}
+
+	/**
+	 * Creates the mailbox executor for the kernel.
+	 * 
+	 * @param kernel
+	 *            the executor kernel to be protected.
+	 * @param executor
+	 *            the executor running the tasks which drain the mailbox.
+	 */
+	public MailboxExecutor(ExecutorKernel kernel, Executor executor) {
+		if (kernel == null || executor == null) {
+			throw new IllegalArgumentException("The kernel and the executor of a mailbox executor cannot be null.");
+		}
+		this.kernel = kernel;
+		this.executor = executor;
+		kernel.setProxy(this);
+	}
+
+	/**
+	 * Provides the executor shared by the mailbox executors created without an executor. It uses a virtual thread per
+	 * task if the Java runtime supports virtual threads.
+	 * 
+	 * @return the default executor.
+	 */
+	public static synchronized Executor getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				defaultExecutor = (Executor) factory.invoke(null);
+			} catch (Exception e) {
+				// no virtual threads in this Java runtime
+				defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "javabip-mailbox");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+		return defaultExecutor;
+	}
+
+	public ExecutorKernel kernel() {
+		return kernel;
+	}
+
+	// ********************************* Mailbox *************************************************
+
+	private void send(Runnable message) {
+		mailbox.offer(message);
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			executor.execute(drain);
+		}
+	}
+
+	private void drainMailbox() {
+		drainingThread = Thread.currentThread();
+		try {
+			Runnable message;
+			for (int i = 0; i < THROUGHPUT && (message = mailbox.poll()) != null; i++) {
+				try {
+					message.run();
+				} catch (RuntimeException e) {
+					ExceptionHelper.printExceptionTrace(logger, e, "The following exception in the executor of component "
+							+ kernel.getId());
+				}
+			}
+		} finally {
+			drainingThread = null;
+			scheduled.set(false);
+			// a message may have arrived after the last poll, while the mailbox was still marked as scheduled, or the
+			// drain may have been cut short by an error
+			if (!mailbox.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+	private <T> T ask(Callable<T> call) {
+		if (Thread.currentThread() == drainingThread) {
+			try {
+				return call.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new BIPException(e);
+			}
+		}
+		FutureTask<T> result = new FutureTask<T>(call);
+		send(result);
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BIPException("Interrupted while waiting for component " + kernel.getId(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new BIPException(e.getCause());
+		}
+	}
+
+	// ***************************** OrchestratedExecutor ****************************************
+
+	public void step() {
+		send(new Runnable() {
+			public void run() {
+				kernel.step();
+			}
+		});
+	}
+
+	public void execute(final String portID) {
+		send(new Runnable() {
+			public void run() {
+				kernel.execute(portID);
+			}
+		});
+	}
+
+	public void execute(final String portID, final Map<String, ?> data) {
+		send(new Runnable() {
+			public void run() {
+				kernel.execute(portID, data);
+			}
+		});
+	}
+
+	public void setData(final String dataName, final Object value) {
+		send(new Runnable() {
+			public void run() {
+				kernel.setData(dataName, value);
+			}
+		});
+	}
+
+	public void setData(final Map<String, ?> data) {
+		send(new Runnable() {
+			public void run() {
+				kernel.setData(data);
+			}
+		});
+	}
+
+	public <T> T getData(final String name, final Class<T> clazz) {
+		return ask(new Callable<T>() {
+			public T call() {
+				return kernel.getData(name, clazz);
+			}
+		});
+	}
+
+	public Map<String, Object> getData(final Collection<String> names) {
+		return ask(new Callable<Map<String, Object>>() {
+			public Map<String, Object> call() {
+				return kernel.getData(names);
+			}
+		});
+	}
+
+	/*
+	 * The primitive data is read directly when asked from the thread draining the mailbox, so that it is not boxed.
+	 */
+	public int getIntData(final String name) {
+		if (Thread.currentThread() == drainingThread) {
+			return kernel.getIntData(name);
+		}
+		return ask(new Callable<Integer>() {
+			public Integer call() {
+				return kernel.getIntData(name);
+			}
+		});
+	}
+
+	public long getLongData(final String name) {
+		if (Thread.currentThread() == drainingThread) {
+			return kernel.getLongData(name);
+		}
+		return ask(new Callable<Long>() {
+			public Long call() {
+				return kernel.getLongData(name);
+			}
+		});
+	}
+
+	public double getDoubleData(final String name) {
+		if (Thread.currentThread() == drainingThread) {
+			return kernel.getDoubleData(name);
+		}
+		return ask(new Callable<Double>() {
+			public Double call() {
+				return kernel.getDoubleData(name);
+			}
+		});
+	}
+
+	public List<Boolean> checkEnabledness(final PortBase port, final List<Map<String, Object>> data) {
+		return ask(new Callable<List<Boolean>>() {
+			public List<Boolean> call() {
+				return kernel.checkEnabledness(port, data);
+			}
+		});
+	}
+
+	public void inform(String portID) {
+		kernel.inform(portID);
+	}
+
+	public void inform(String portID, Map<String, Object> data) {
+		kernel.inform(portID, data);
+	}
+
+	public void register(final BIPEngine bipEngine) {
+		send(new Runnable() {
+			public void run() {
+				kernel.register(bipEngine);
+			}
+		});
+	}
+
+	public void deregister() {
+		send(new Runnable() {
+			public void run() {
+				kernel.deregister();
+			}
+		});
+	}
+
+	public BIPEngine engine() {
+		return kernel.engine();
+	}
+
+	public String getId() {
+		return kernel.getId();
+	}
+
+	public String getType() {
+		return kernel.getType();
+	}
+
+	public String toString() {
+		return "MailboxExecutor=(" + kernel.toString() + ")";
+	}
+
+}
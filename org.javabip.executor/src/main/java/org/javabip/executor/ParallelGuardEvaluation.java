@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks the enabledness of a transition for the rows of a large table of data values on several threads. It is only
+ * used when all the guards with data of the transition are declared pure, as their methods are then invoked
+ * concurrently on the same component. The guards without data are not invoked again, their values are copied from the
+ * valuation of the executor thread.
+ * 
+ * Tables with at least org.javabip.executor.parallelGuardThreshold rows, 512 by default, are split. A threshold of 0
+ * disables the parallel evaluation.
+ */
+final class ParallelGuardEvaluation extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int THRESHOLD = Integer.getInteger("org.javabip.executor.parallelGuardThreshold", 512);
+
+	/**
+	 * The smallest number of rows evaluated by a single task.
+	 */
+	private static final int MIN_ROWS_PER_TASK = 64;
+
+	/*
+	 * The pool is created the first time a table is split.
+	 */
+	private static final class PoolHolder {
+		static final ForkJoinPool pool = new ForkJoinPool();
+	}
+
+	private final BehaviourTemplate template;
+	private final MethodHandle[] boundGuards;
+	private final ExecutableTransition transition;
+	private final GuardValuation guardsWithoutData;
+	private final List<Map<String, Object>> rows;
+	private final boolean[] enabled;
+	private final int rowsPerTask;
+	private final int from;
+	private final int to;
+
+	private ParallelGuardEvaluation(BehaviourTemplate template, MethodHandle[] boundGuards,
+			ExecutableTransition transition, GuardValuation guardsWithoutData, List<Map<String, Object>> rows,
+			boolean[] enabled, int rowsPerTask, int from, int to) {
+		this.template = template;
+		this.boundGuards = boundGuards;
+		this.transition = transition;
+		this.guardsWithoutData = guardsWithoutData;
+		this.rows = rows;
+		this.enabled = enabled;
+		this.rowsPerTask = rowsPerTask;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Tells whether the table is to be split across several threads.
+	 * 
+	 * @param template
+	 *            the template of the behaviour.
+	 * @param transition
+	 *            the transition which enabledness is checked.
+	 * @param noOfRows
+	 *            the number of rows of the table.
+	 * @return true, if the table is large enough and all the guards with data of the transition are pure.
+	 */
+	static boolean applies(BehaviourTemplate template, ExecutableTransition transition, int noOfRows) {
+		if (THRESHOLD <= 0 || noOfRows < THRESHOLD) {
+			return false;
+		}
+		for (int guardIndex : transition.guardIndices()) {
+			GuardImpl guard = (GuardImpl) template.guards[guardIndex];
+			if (guard.hasData() && !guard.isPure()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the enabledness of the transition for every row of the table.
+	 * 
+	 * @param template
+	 *            the template of the behaviour.
+	 * @param boundGuards
+	 *            the guard methods bound to the component instance.
+	 * @param transition
+	 *            the transition which enabledness is checked.
+	 * @param guardsWithoutData
+	 *            the valuation holding the values of the guards without data of the transition.
+	 * @param data
+	 *            the rows of data values, each indexed by the data name.
+	 * @return the indexes of the rows for which the transition is enabled.
+	 */
+	static BitSet enabledRows(BehaviourTemplate template, MethodHandle[] boundGuards,
+			ExecutableTransition transition, GuardValuation guardsWithoutData, List<Map<String, Object>> data) {
+
+		List<Map<String, Object>> rows = data instanceof RandomAccess ? data
+				: new ArrayList<Map<String, Object>>(data);
+		boolean[] enabled = new boolean[rows.size()];
+		ForkJoinPool pool = PoolHolder.pool;
+		int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, rows.size() / (4 * pool.getParallelism()));
+		pool.invoke(new ParallelGuardEvaluation(template, boundGuards, transition, guardsWithoutData, rows, enabled,
+				rowsPerTask, 0, rows.size()));
+
+		BitSet result = new BitSet(enabled.length);
+		for (int i = 0; i < enabled.length; i++) {
+			if (enabled[i]) {
+				result.set(i);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= rowsPerTask) {
+			evaluateRows();
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new ParallelGuardEvaluation(template, boundGuards, transition, guardsWithoutData, rows, enabled,
+				rowsPerTask, from, middle), new ParallelGuardEvaluation(template, boundGuards, transition,
+				guardsWithoutData, rows, enabled, rowsPerTask, middle, to));
+	}
+
+	/*
+	 * Each task has its own valuation and argument arrays, the tasks only share the guards without data, which are read.
+	 */
+	private void evaluateRows() {
+
+		int[] guardIndices = transition.guardIndices();
+		GuardValuation valuation = new GuardValuation(template.componentType, template.guards, boundGuards);
+		valuation.setMetrics(guardsWithoutData.getMetrics());
+		Object[][] args = new Object[guardIndices.length][];
+		for (int i = 0; i < guardIndices.length; i++) {
+			int guardIndex = guardIndices[i];
+			if (template.guards[guardIndex].hasData()) {
+				args[i] = new Object[template.guardDataNames[guardIndex].length];
+			} else {
+				valuation.set(guardIndex, guardsWithoutData.value(guardIndex));
+			}
+		}
+
+		for (int row = from; row < to; row++) {
+			Map<String, Object> dataRow = rows.get(row);
+			for (int i = 0; i < guardIndices.length; i++) {
+				if (args[i] == null) {
+					continue;
+				}
+				String[] dataNames = template.guardDataNames[guardIndices[i]];
+				for (int j = 0; j < dataNames.length; j++) {
+					args[i][j] = dataRow.get(dataNames[j]);
+				}
+				valuation.evaluate(guardIndices[i], args[i]);
+			}
+			enabled[row] = transition.guardIsTrue(valuation);
+		}
+	}
+
+}
@@ -126,7 +126,7 @@ class ReflectionHelper {
 		String name = dataAnnotation.name();
 		AccessType type = dataAnnotation.accessTypePort();
 		String[] ports = dataAnnotation.ports();
-		return createData(name, method.getReturnType(), type, ports);
+		return createData(name, method.getReturnType(), type, ports, dataAnnotation.cached());
 
 	}
 
@@ -147,4 +147,24 @@ class ReflectionHelper {
 		return new DataOutImpl<T>(dataName, type, accessType, ports);
 	}
 
+	/**
+	 * Created a new output data.
+	 * 
+	 * @param dataName
+	 *            the name of the data
+	 * @param type
+	 *            the class type of the data
+	 * @param accessType
+	 *            the accessType of the data
+	 * @param ports
+	 *            the ports corresponding to the access type of the data
+	 * @param cached
+	 *            true, if the value of the data can be kept until the next transition
+	 * @return a new instance of DataOut
+	 */
+	public static <T> DataOutImpl<T> createData(String dataName, Class<T> type, AccessType accessType,
+			String[] ports, boolean cached) {
+		return new DataOutImpl<T>(dataName, type, accessType, ports, cached);
+	}
+
 }
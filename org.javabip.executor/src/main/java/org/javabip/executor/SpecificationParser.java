@@ -21,6 +21,7 @@ package org.javabip.executor;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.javabip.annotations.ComponentType;
 import org.javabip.annotations.Data;
@@ -41,8 +42,48 @@ public abstract class SpecificationParser implements ComponentProvider {
 
 	protected Object bipComponent;
 	protected ExecutableBehaviour behaviour;
+	// The same behaviour seen through its implementation, giving the executor access to index based guard evaluation.
+	BehaviourImpl behaviourImpl;
 	protected Class<?> componentClass;
 
+	/*
+	 * The templates of the behaviours specified by annotations, built from the first instance of each component class.
+	 */
+	private static final ClassValue<AtomicReference<BehaviourTemplate>> behaviourTemplates = new ClassValue<AtomicReference<BehaviourTemplate>>() {
+
+		@Override
+		protected AtomicReference<BehaviourTemplate> computeValue(Class<?> componentClass) {
+			return new AtomicReference<BehaviourTemplate>();
+		}
+
+	};
+
+	/*
+	 * The behaviour factories generated at compile time by the BIP annotation processor, looked up once per component
+	 * class. The value is null for the classes without a generated factory, their annotations are parsed at runtime.
+	 */
+	private static final ClassValue<BehaviourFactory> behaviourFactories = new ClassValue<BehaviourFactory>() {
+
+		@Override
+		protected BehaviourFactory computeValue(Class<?> componentClass) {
+			String className = componentClass.getName();
+			Package componentPackage = componentClass.getPackage();
+			String packagePrefix = componentPackage == null ? "" : componentPackage.getName() + ".";
+			String factoryName = packagePrefix
+					+ className.substring(packagePrefix.length()).replace('$', '_') + BehaviourFactory.SUFFIX;
+			try {
+				Class<?> factoryClass = Class.forName(factoryName, true, componentClass.getClassLoader());
+				return (BehaviourFactory) factoryClass.newInstance();
+			} catch (ClassNotFoundException e) {
+				return null;
+			} catch (Exception e) {
+				throw new BIPException("The behaviour factory " + factoryName + " of component class "
+						+ className + " could not be instantiated.", e);
+			}
+		}
+
+	};
+
 	/**
 	 * Creates an instance of SpecificationParserю
 	 * 
@@ -57,10 +98,23 @@ public abstract class SpecificationParser implements ComponentProvider {
 		this.componentClass = bipComponent.getClass();
 
 		if (useAnnotationSpec) {
-			this.behaviour = parseAnnotations(bipComponent.getClass()).build(this);
+			// The annotations are the same for all the instances of the class, so is the template of the behaviour.
+			AtomicReference<BehaviourTemplate> cachedTemplate = behaviourTemplates.get(componentClass);
+			BehaviourTemplate template = cachedTemplate.get();
+			if (template == null) {
+				BehaviourFactory factory = behaviourFactories.get(componentClass);
+				BehaviourBuilder builder = factory != null ? createBehaviour(factory, bipComponent)
+						: parseAnnotations(bipComponent, componentClass);
+				template = builder.buildTemplate();
+				if (!cachedTemplate.compareAndSet(null, template)) {
+					template = cachedTemplate.get();
+				}
+			}
+			this.behaviourImpl = new BehaviourImpl(template, this, bipComponent);
 		} else {
-			this.behaviour = getExecutableBehaviour(bipComponent.getClass()).build(this);
+			this.behaviourImpl = getExecutableBehaviour(bipComponent.getClass()).buildBehaviour(this);
 		}
+		this.behaviour = behaviourImpl;
 
 	}
 
@@ -99,7 +153,46 @@ public abstract class SpecificationParser implements ComponentProvider {
 
 	}
 
-	private BehaviourBuilder parseAnnotations(Class<?> componentClass) throws BIPException {
+	/**
+	 * Builds the template of the behaviour of the component from the annotations of its class, the generated
+	 * behaviour factory being ignored. The factories are checked against it.
+	 * 
+	 * @param bipComponent
+	 *            the component, whose class is annotated.
+	 * @return the template of the behaviour.
+	 * @throws BIPException
+	 *             if the annotations do not specify a behaviour.
+	 */
+	static BehaviourTemplate parseTemplate(Object bipComponent) throws BIPException {
+		return parseAnnotations(bipComponent, bipComponent.getClass()).buildTemplate();
+	}
+
+	/**
+	 * Builds the template of the behaviour of the component with the behaviour factory generated for its class.
+	 * 
+	 * @param bipComponent
+	 *            the component, whose class is annotated.
+	 * @return the template of the behaviour, null if no factory was generated for the class.
+	 * @throws BIPException
+	 *             if the factory does not match the class.
+	 */
+	static BehaviourTemplate factoryTemplate(Object bipComponent) throws BIPException {
+		BehaviourFactory factory = behaviourFactories.get(bipComponent.getClass());
+		return factory == null ? null : createBehaviour(factory, bipComponent).buildTemplate();
+	}
+
+	private static BehaviourBuilder createBehaviour(BehaviourFactory factory, Object bipComponent)
+			throws BIPException {
+		try {
+			return factory.create(bipComponent);
+		} catch (NoSuchMethodException e) {
+			throw new BIPException("The behaviour factory of component class " + bipComponent.getClass().getName()
+					+ " does not match the class, it has to be generated again.", e);
+		}
+	}
+
+	private static BehaviourBuilder parseAnnotations(Object bipComponent, Class<?> componentClass)
+			throws BIPException {
 		BehaviourBuilder builder = new BehaviourBuilder(bipComponent);
 
 		String specType = "";
@@ -180,7 +273,7 @@ public abstract class SpecificationParser implements ComponentProvider {
 		return builder;
 	}
 
-	private void addGuard(Method method, org.javabip.annotations.Guard annotation, BehaviourBuilder builder)
+	private static void addGuard(Method method, org.javabip.annotations.Guard annotation, BehaviourBuilder builder)
 			throws BIPException {
 
 		Class<?> returnType = method.getReturnType();
@@ -188,17 +281,18 @@ public abstract class SpecificationParser implements ComponentProvider {
 			throw new BIPException("Guard method " + method.getName() + " should be a boolean function");
 		}
 
-		builder.addGuard(annotation.name(), method, ReflectionHelper.parseDataAnnotations(method));
+		builder.addGuard(annotation.name(), method, ReflectionHelper.parseDataAnnotations(method),
+				annotation.pure());
 
 	}
 
-	private void addData(Method method, Data annotation, BehaviourBuilder builder) {
+	private static void addData(Method method, Data annotation, BehaviourBuilder builder) {
 
 		builder.addDataOut(method, annotation);
 
 	}
 
-	private void addTransitionAndStates(Method method, org.javabip.annotations.Transition transitionAnnotation,
+	private static void addTransitionAndStates(Method method, org.javabip.annotations.Transition transitionAnnotation,
 			BehaviourBuilder builder) {
 
 		builder.addTransitionAndStates(transitionAnnotation.name(), transitionAnnotation.source(),
@@ -206,13 +300,15 @@ public abstract class SpecificationParser implements ComponentProvider {
 
 	}
 
-	private void addPort(org.javabip.annotations.Port portAnnotation, Class<?> componentClass, BehaviourBuilder builder) {
+	private static void addPort(org.javabip.annotations.Port portAnnotation, Class<?> componentClass,
+			BehaviourBuilder builder) {
 
 		builder.addPort(portAnnotation.name(), portAnnotation.type(), componentClass);
 
 	}
 
-	private void addPort(org.javabip.annotations.Port portAnnotation, String specType, BehaviourBuilder builder) {
+	private static void addPort(org.javabip.annotations.Port portAnnotation, String specType,
+			BehaviourBuilder builder) {
 		builder.addPort(portAnnotation.name(), portAnnotation.type(), specType);
 
 	}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the spontaneous events received by an executor until they are executed. The events of each spontaneous port
+ * are kept in a separate lock-free queue in the order of their arrival, so adding an event is a constant time
+ * operation which can be done from any thread. The events are removed by the single thread executing the component.
+ * 
+ * Every event gets a sequence number, which allows to find the oldest event among the heads of the port queues.
+ */
+class SpontaneousEventQueue {
+
+	/**
+	 * A spontaneous event together with the data it carries.
+	 */
+	static class SpontaneousEvent {
+
+		private final long sequence;
+		private final String port;
+		private final Map<String, Object> data;
+		private final long enqueued;
+
+		SpontaneousEvent(long sequence, String port, Map<String, Object> data, long enqueued) {
+			this.sequence = sequence;
+			this.port = port;
+			this.data = data;
+			this.enqueued = enqueued;
+		}
+
+		public long sequence() {
+			return sequence;
+		}
+
+		public String port() {
+			return port;
+		}
+
+		public Map<String, Object> data() {
+			return data;
+		}
+
+		/**
+		 * @return the time at which the event was added, or 0 if the executor events were not recorded then.
+		 */
+		public long enqueued() {
+			return enqueued;
+		}
+
+	}
+
+	private final AtomicLong lastSequence = new AtomicLong();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final String[] ports;
+
+	private final ConcurrentLinkedQueue<SpontaneousEvent>[] queues;
+
+	/**
+	 * Maps the spontaneous port to the index of its queue. It is not modified after construction.
+	 */
+	private final Map<String, Integer> portToIndex;
+
+	/**
+	 * Creates the queues for the spontaneous ports.
+	 * 
+	 * @param ports
+	 *            the names of the spontaneous ports.
+	 */
+	@SuppressWarnings("unchecked")
+	public SpontaneousEventQueue(Iterable<String> ports) {
+		this.portToIndex = new HashMap<String, Integer>();
+		for (String port : ports) {
+			if (!portToIndex.containsKey(port)) {
+				portToIndex.put(port, portToIndex.size());
+			}
+		}
+		this.ports = new String[portToIndex.size()];
+		this.queues = new ConcurrentLinkedQueue[portToIndex.size()];
+		for (Map.Entry<String, Integer> entry : portToIndex.entrySet()) {
+			this.ports[entry.getValue()] = entry.getKey();
+			this.queues[entry.getValue()] = new ConcurrentLinkedQueue<SpontaneousEvent>();
+		}
+	}
+
+	/**
+	 * Adds the event at the end of the queue of its port. It can be called from any thread.
+	 * 
+	 * @param port
+	 *            the spontaneous port.
+	 * @param data
+	 *            the data of the event, or null.
+	 * @return false, if the port is not a spontaneous port.
+	 */
+	public boolean add(String port, Map<String, Object> data) {
+		Integer index = portToIndex.get(port);
+		if (index == null) {
+			return false;
+		}
+		// the time spent in the queue is reported when the event is taken.
+		long enqueued = ExecutorEvents.INSTANCE.isRecording(ExecutorEvents.Kind.SPONTANEOUS_DEQUEUE) ? System.nanoTime()
+				: 0;
+		queues[index].offer(new SpontaneousEvent(lastSequence.incrementAndGet(), port, data, enqueued));
+		size.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return the number of spontaneous ports, each port has its own queue.
+	 */
+	public int noOfPorts() {
+		return ports.length;
+	}
+
+	public String port(int portIndex) {
+		return ports[portIndex];
+	}
+
+	/**
+	 * Returns the oldest event of the port without removing it.
+	 * 
+	 * @param portIndex
+	 *            the index of the port queue.
+	 * @return the event, or null if there is no event for the port.
+	 */
+	public SpontaneousEvent peek(int portIndex) {
+		return queues[portIndex].peek();
+	}
+
+	/**
+	 * Removes the oldest event of the port. Only the thread executing the component removes events, so the removed
+	 * event is the one returned by the last peek.
+	 * 
+	 * @param portIndex
+	 *            the index of the port queue.
+	 * @return the event, or null if there is no event for the port.
+	 */
+	public SpontaneousEvent poll(int portIndex) {
+		SpontaneousEvent event = queues[portIndex].poll();
+		if (event != null) {
+			size.decrementAndGet();
+		}
+		return event;
+	}
+
+	/**
+	 * @return the number of events waiting to be executed. An event being added may not be counted yet.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the sequence number of the last event added, allowing to find out if events arrived in the meantime.
+	 */
+	public long lastSequence() {
+		return lastSequence.get();
+	}
+
+}
@@ -20,12 +20,19 @@
 package org.javabip.executor;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.javabip.annotations.Port;
 import org.javabip.annotations.Ports;
@@ -46,78 +53,160 @@ import org.slf4j.LoggerFactory;
  * It allows to propagate interfaces that specify asynchronous/spontaneous events from BIP Spec to Executor. This makes
  * it possible to interact with executor in a typed manner without using inform function to send the events.
  * 
+ * How a method of the proxy is carried out is resolved at its first call and kept in a dispatch table, so the
+ * following calls neither reflect on the method nor look up the spontaneous ports. The spontaneous methods call inform
+ * on the executor directly, the other methods are delegated through method handles.
+ * 
+ * The classes annotated with ComponentType get their proxy generated at compile time by the BIP annotation processor,
+ * as a class Outer_Inner_BIPProxy next to the class Outer$Inner, which newProxyInstance uses instead of this handler.
  */
 public class TunellingExecutorHandler implements InvocationHandler {
 
 	private Logger logger = LoggerFactory.getLogger(TunellingExecutorHandler.class);
 
-	private MethodWithDifferentEquals globalWrapper = new MethodWithDifferentEquals(null);
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	/**
+	 * The suffix of the name of a proxy generated at compile time.
+	 */
+	public static final String PROXY_SUFFIX = "_BIPProxy";
+
+	/*
+	 * The constructors of the proxies generated at compile time by the BIP annotation processor, looked up once per
+	 * class of BIP spec. The value is null for the classes without a generated proxy.
+	 */
+	private static final ClassValue<Constructor<?>> generatedProxies = new ClassValue<Constructor<?>>() {
+
+		@Override
+		protected Constructor<?> computeValue(Class<?> specClass) {
+			String className = specClass.getName();
+			Package specPackage = specClass.getPackage();
+			String packagePrefix = specPackage == null ? "" : specPackage.getName() + ".";
+			String proxyName = packagePrefix + className.substring(packagePrefix.length()).replace('$', '_')
+					+ PROXY_SUFFIX;
+			try {
+				Class<?> proxyClass = Class.forName(proxyName, true, specClass.getClassLoader());
+				if (!OrchestratedExecutor.class.isAssignableFrom(proxyClass)) {
+					return null;
+				}
+				return proxyClass.getConstructor(OrchestratedExecutor.class, Object.class);
+			} catch (ClassNotFoundException e) {
+				return null;
+			} catch (NoSuchMethodException e) {
+				throw new BIPException("The executor proxy " + proxyName + " of class " + className
+						+ " has no constructor taking the executor and the BIP spec.", e);
+			}
+		}
+
+	};
+
+	private OrchestratedExecutor internalExecutor;
+	private Object bipSpec;
+
+	/**
+	 * The tunneling of each spontaneous transition of the BIP spec, indexed by the method of the transition.
+	 */
+	private HashMap<Method, Tunneling> tunnels;
+
+	/**
+	 * The dispatch of every method of the proxy called so far.
+	 */
+	private ConcurrentHashMap<Method, Dispatch> dispatchTable = new ConcurrentHashMap<Method, Dispatch>();
+
+	/**
+	 * Carries out a call to a method of the proxy.
+	 */
+	private static abstract class Dispatch {
+
+		abstract Object invoke(Object[] args) throws Throwable;
+
+	}
+
+	/**
+	 * Delegates the call to the executor or to the BIP spec through a method handle bound to it.
+	 */
+	private static class Delegation extends Dispatch {
+
+		private final MethodHandle target;
+
+		Delegation(MethodHandle target) {
+			this.target = target;
+		}
+
+		Object invoke(Object[] args) throws Throwable {
+			return target.invokeExact(args == null ? NO_ARGUMENTS : args);
+		}
+
+	}
 
-	class MethodWithDifferentEquals {
+	/**
+	 * Delegates the call to the executor or to the BIP spec reflectively, if the method is not accessible to method
+	 * handles.
+	 */
+	private static class ReflectiveDelegation extends Dispatch {
 
-		public Method method;
+		private final Method method;
+		private final Object target;
 
-		public MethodWithDifferentEquals(Method method) {
+		ReflectiveDelegation(Method method, Object target) {
 			this.method = method;
+			this.target = target;
 		}
 
-		public boolean equals(Object obj) {
-			if (obj != null && obj instanceof MethodWithDifferentEquals) {
-				Method other = ((MethodWithDifferentEquals) obj).method;
-				if (method.getName().equals(other.getName())) {
-					if (!method.getReturnType().equals(other.getReturnType()))
-						return false;
-					/* Avoid unnecessary cloning */
-					Class[] params1 = method.getParameterTypes();
-					Class[] params2 = other.getParameterTypes();
-					if (params1.length == params2.length) {
-						for (int i = 0; i < params1.length; i++) {
-							if (params1[i] != params2[i])
-								return false;
-						}
-						return true;
-					}
-				}
+		Object invoke(Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
 			}
-			return false;
 		}
 
-		public int hashCode() {
-			return method.getName().hashCode();
+	}
+
+	/**
+	 * Turns the call into a spontaneous event, the arguments become the data of the event.
+	 */
+	private class Tunneling extends Dispatch {
+
+		private final String portName;
+		private final String[] argsNames;
+
+		Tunneling(String portName, ArrayList<String> argsNames) {
+			this.portName = portName;
+			this.argsNames = argsNames.toArray(new String[argsNames.size()]);
 		}
 
-	}
+		public String toString() {
+			return "Tunneling(port = " + portName + ", data = " + Arrays.toString(argsNames) + ")";
+		}
 
-	private OrchestratedExecutor internalExecutor;
-	private Object bipSpec;
+		Object invoke(Object[] args) throws Throwable {
+
+			if (args == null || args.length == 0) {
+				// inform without data
+				logger.debug("Tunneled call no parameters.");
+				internalExecutor.inform(portName);
+				return null;
+			}
 
-	private HashMap<MethodWithDifferentEquals, String> tunellingPortName;
-	private HashMap<MethodWithDifferentEquals, ArrayList<String>> tunellingArgsNames;
+			if (args.length != argsNames.length)
+				throw new BIPException("Internal error. Number of arguments does not match. ");
 
-	private Method informNoParameters;
-	private Method informWithData;
+			HashMap<String, Object> map = new HashMap<String, Object>();
+			for (int i = 0; i < args.length; i++) {
+				map.put(argsNames[i], args[i]);
+			}
+			logger.debug("Tunnneled call to port {} with map {} ", portName, map);
+			internalExecutor.inform(portName, map);
+			return null;
+		}
+
+	}
 
 	public TunellingExecutorHandler(OrchestratedExecutor executor, Object bipSpec) {
 		this.internalExecutor = executor;
 		this.bipSpec = bipSpec;
-		this.tunellingPortName = new HashMap<MethodWithDifferentEquals, String>();
-		this.tunellingArgsNames = new HashMap<MethodWithDifferentEquals, ArrayList<String>>();
-
-		try {
-			this.informNoParameters = BIPActor.class.getDeclaredMethod("inform", String.class);
-		} catch (SecurityException e) {
-			throw new BIPException(e);
-		} catch (NoSuchMethodException e) {
-			throw new BIPException(e);
-		}
-
-		try {
-			this.informWithData = BIPActor.class.getDeclaredMethod("inform", String.class, Map.class);
-		} catch (SecurityException e) {
-			throw new BIPException(e);
-		} catch (NoSuchMethodException e) {
-			throw new BIPException(e);
-		}
+		this.tunnels = new HashMap<Method, Tunneling>();
 
 		Class<?> componentClass = bipSpec.getClass();
 
@@ -166,8 +255,7 @@ public class TunellingExecutorHandler implements InvocationHandler {
 		}
 
 		logger.info("Tunneling executor handler for executor {} and bipSpec {} has been created.", executor, bipSpec);
-		logger.debug("TunellingPortNames {}", tunellingPortName);
-		logger.debug("TunnelingArgsNames {}", tunellingArgsNames);
+		logger.debug("Tunnels {}", tunnels);
 
 	}
 
@@ -178,73 +266,113 @@ public class TunellingExecutorHandler implements InvocationHandler {
 			// Transition is not spontaneous.
 			return;
 
-		MethodWithDifferentEquals wrapper = new MethodWithDifferentEquals(method);
-
-		tunellingPortName.put(wrapper, bipTransitionAnnotation.name());
-
 		ArrayList<String> dataNames = new ArrayList<String>();
-		tunellingArgsNames.put(wrapper, dataNames);
 		for (Data<?> data : ReflectionHelper.parseDataAnnotations(method)) {
 			dataNames.add(data.name());
 		}
+		tunnels.put(method, new Tunneling(bipTransitionAnnotation.name(), dataNames));
 
 	}
 
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
+		Dispatch dispatch = dispatchTable.get(method);
+		if (dispatch == null) {
+			dispatch = resolve(method);
+			dispatchTable.putIfAbsent(method, dispatch);
+		}
+		return dispatch.invoke(args);
+
+	}
+
+	/*
+	 * Decides how the calls to the method are carried out. The same method may be resolved concurrently by several
+	 * threads, all of them obtain an equivalent dispatch.
+	 */
+	private Dispatch resolve(Method method) {
+
 		Class<?> declaredClass = method.getDeclaringClass();
 
 		if (OrchestratedExecutor.class.isAssignableFrom(declaredClass)
 				|| Executor.class.isAssignableFrom(declaredClass) || BIPComponent.class.isAssignableFrom(declaredClass)
 				|| Identifiable.class.isAssignableFrom(declaredClass) || BIPActor.class.isAssignableFrom(declaredClass)) {
-			return method.invoke(internalExecutor, args);
-		} else {
-
-			globalWrapper.method = method;
-
-			logger.debug("Calling method {}", method);
-
-			if (tunellingPortName.containsKey(globalWrapper)) {
+			return delegation(method, internalExecutor);
+		}
 
-				if (args == null || args.length == 0) {
-					// inform without data
-					Object[] tunneledArguments = new Object[1];
-					tunneledArguments[0] = tunellingPortName.get(globalWrapper);
-					logger.debug("Tunneled call no parameters.");
-					return informNoParameters.invoke(internalExecutor, tunneledArguments);
-				} else {
-					logger.debug("TunellingPortNames {}", tunellingPortName.get(globalWrapper));
-					logger.debug("TunnelingArgsNames {}", tunellingArgsNames.get(globalWrapper));
-					Object[] tunneledArguments = new Object[2];
-					tunneledArguments[0] = tunellingPortName.get(globalWrapper);
-					HashMap<String, Object> map = new HashMap<String, Object>();
-					ArrayList<String> argsNames = tunellingArgsNames.get(globalWrapper);
+		// The interface method is tunneled if the method of the BIP spec implementing it is a spontaneous transition.
+		try {
+			Method implementation = bipSpec.getClass().getMethod(method.getName(), method.getParameterTypes());
+			Tunneling tunneling = tunnels.get(implementation);
+			if (tunneling != null && implementation.getReturnType() == method.getReturnType()) {
+				logger.debug("Method {} is tunneled to port {}", method, tunneling.portName);
+				return tunneling;
+			}
+		} catch (NoSuchMethodException e) {
+			// The BIP spec does not implement the method, it is delegated to fail as the call would.
+		}
 
-					if (args.length != argsNames.size())
-						throw new BIPException("Internal error. Number of arguments does not match. ");
+		logger.debug("Not tunneled call to method {}", method);
+		return delegation(method, bipSpec);
+	}
 
-					for (int i = 0; i < args.length; i++) {
-						map.put(argsNames.get(i), args[i]);
-					}
+	private Dispatch delegation(Method method, Object target) {
+		try {
+			MethodHandle handle = MethodHandles.publicLookup().unreflect(method).bindTo(target);
+			handle = handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(
+					MethodType.methodType(Object.class, Object[].class));
+			return new Delegation(handle);
+		} catch (IllegalAccessException e) {
+			return new ReflectiveDelegation(method, target);
+		}
+	}
 
-					tunneledArguments[1] = map;
-					logger.debug("Tunnneled call to port {} with map {} ", tunneledArguments[0], tunneledArguments[1]);
-					return informWithData.invoke(internalExecutor, tunneledArguments);
-				}
+	/**
+	 * Creates the proxy of the executor for the BIP spec. The proxy implements the interfaces of the BIP spec and
+	 * OrchestratedExecutor. The proxy generated at compile time by the BIP annotation processor is used if there is
+	 * one, the proxy is created with java.lang.reflect.Proxy otherwise.
+	 * 
+	 * @param classLoader
+	 *            the class loader defining the reflective proxy, the generated proxy is loaded by the class loader of
+	 *            the BIP spec.
+	 * @param executor
+	 *            the executor.
+	 * @param bipSpec
+	 *            the BIP spec.
+	 * @return the proxy.
+	 */
+	public static Object newProxyInstance(ClassLoader classLoader, OrchestratedExecutor executor, Object bipSpec) {
 
-			} else {
-				logger.debug("Not tunneled call to method {}", method);
-				return method.invoke(bipSpec, args);
+		Constructor<?> generated = generatedProxies.get(bipSpec.getClass());
+		if (generated != null) {
+			try {
+				return generated.newInstance(executor, bipSpec);
+			} catch (InvocationTargetException e) {
+				throw new BIPException("The executor proxy of " + bipSpec.getClass().getName()
+						+ " could not be created.", e.getCause());
+			} catch (ReflectiveOperationException e) {
+				throw new BIPException("The executor proxy of " + bipSpec.getClass().getName()
+						+ " could not be created.", e);
 			}
-
 		}
+		return newReflectiveProxyInstance(classLoader, executor, bipSpec);
 
 	}
 
-	public static Object newProxyInstance(ClassLoader classLoader, OrchestratedExecutor executor, Object bipSpec) {
-
-		TunellingExecutorHandler handler = new TunellingExecutorHandler(executor, bipSpec);
+	/**
+	 * Creates the proxy of the executor for the BIP spec with java.lang.reflect.Proxy, even if a proxy was generated
+	 * at compile time.
+	 * 
+	 * @param classLoader
+	 *            the class loader defining the proxy.
+	 * @param executor
+	 *            the executor.
+	 * @param bipSpec
+	 *            the BIP spec.
+	 * @return the proxy.
+	 */
+	public static Object newReflectiveProxyInstance(ClassLoader classLoader, OrchestratedExecutor executor,
+			Object bipSpec) {
 
 		Class<?>[] interfaces = bipSpec.getClass().getInterfaces();
 
@@ -252,6 +380,8 @@ public class TunellingExecutorHandler implements InvocationHandler {
 			throw new IllegalArgumentException(
 					"BIP Spec object does not implement any interface thus no proxy can be created.");
 
+		TunellingExecutorHandler handler = new TunellingExecutorHandler(executor, bipSpec);
+
 		Class<?>[] completeInterfaces = new Class<?>[interfaces.length + 1];
 		System.arraycopy(interfaces, 0, completeInterfaces, 0, interfaces.length);
 		completeInterfaces[interfaces.length] = OrchestratedExecutor.class;
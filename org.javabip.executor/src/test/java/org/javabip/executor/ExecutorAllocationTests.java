@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+
+import org.javabip.annotations.ComponentType;
+import org.javabip.annotations.Data;
+import org.javabip.annotations.Guard;
+import org.javabip.annotations.Port;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.api.BIPActor;
+import org.javabip.api.BIPComponent;
+import org.javabip.api.BIPEngine;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.api.PortType;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks that the execution cycle of an executor, the step informing the engine followed by the execution of the
+ * transition chosen by the engine, does not allocate once the executor is warmed up. The bytes allocated by the
+ * testing thread are taken from the ThreadMXBean of the JVM, the test is skipped if the JVM does not provide them.
+ */
+public class ExecutorAllocationTests {
+
+	private static final int WARMUP_CYCLES = 200000;
+
+	private static final int CYCLES = 100000;
+
+	@Test
+	public void eagerCycleDoesNotAllocate() {
+		assertNoAllocation(false);
+	}
+
+	@Test
+	public void lazyCycleDoesNotAllocate() {
+		assertNoAllocation(true);
+	}
+
+	private void assertNoAllocation(boolean lazy) {
+		com.sun.management.ThreadMXBean threads = threadBean();
+		long threadId = Thread.currentThread().getId();
+
+		Counter component = new Counter();
+		ExecutorKernel kernel = new ExecutorKernel(component, "counter", true);
+		kernel.setLazyGuardEvaluation(lazy);
+		kernel.setProxy(noopExecutor());
+		CountingEngine engine = new CountingEngine();
+		kernel.register(engine);
+
+		cycles(kernel, engine, WARMUP_CYCLES);
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		cycles(kernel, engine, CYCLES);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(WARMUP_CYCLES + CYCLES, component.executed);
+		assertTrue("The executor allocated " + allocated + " bytes in " + CYCLES + " cycles.", allocated < CYCLES);
+	}
+
+	@Test
+	public void primitiveDataCycleDoesNotAllocate() {
+		com.sun.management.ThreadMXBean threads = threadBean();
+		long threadId = Thread.currentThread().getId();
+
+		Accumulator component = new Accumulator();
+		ExecutorKernel kernel = new ExecutorKernel(component, "accumulator", true);
+		kernel.setProxy(noopExecutor());
+		kernel.register(new CountingEngine());
+		int slot = kernel.getDataSlot("amount");
+
+		dataCycles(kernel, slot, WARMUP_CYCLES);
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		dataCycles(kernel, slot, CYCLES);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(WARMUP_CYCLES + CYCLES, component.executed);
+		assertTrue("The executor allocated " + allocated + " bytes in " + CYCLES + " cycles with data.",
+				allocated < CYCLES);
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	private static void cycles(ExecutorKernel kernel, CountingEngine engine, int cycles) {
+		for (int i = 0; i < cycles; i++) {
+			long informs = engine.informs;
+			kernel.step();
+			assertTrue(engine.informs == informs + 1);
+			kernel.execute("p");
+		}
+	}
+
+	/*
+	 * The amounts are out of the range of the cached Integer values, so that boxing them would allocate.
+	 */
+	private static void dataCycles(ExecutorKernel kernel, int slot, int cycles) {
+		for (int i = 0; i < cycles; i++) {
+			kernel.step();
+			kernel.setIntData(slot, 1000 + i % 1000);
+			kernel.execute("r");
+		}
+	}
+
+	private static OrchestratedExecutor noopExecutor() {
+		return (OrchestratedExecutor) Proxy.newProxyInstance(ExecutorAllocationTests.class.getClassLoader(),
+				new Class<?>[] { OrchestratedExecutor.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						Class<?> type = method.getReturnType();
+						if (type == boolean.class) {
+							return false;
+						}
+						if (type.isPrimitive() && type != void.class) {
+							return 0;
+						}
+						return null;
+					}
+				});
+	}
+
+	@Ports({ @Port(name = "p", type = PortType.enforceable), @Port(name = "q", type = PortType.enforceable) })
+	@ComponentType(initial = "zero", name = "org.javabip.executor.Counter")
+	public static class Counter {
+
+		int executed;
+
+		@Transition(name = "p", source = "zero", target = "one", guard = "isEnabled & !isStopped")
+		public void first() {
+			executed++;
+		}
+
+		@Transition(name = "p", source = "one", target = "zero", guard = "isEnabled")
+		public void second() {
+			executed++;
+		}
+
+		@Transition(name = "q", source = "one", target = "zero", guard = "isStopped")
+		public void stop() {
+		}
+
+		@Guard(name = "isEnabled")
+		public boolean isEnabled() {
+			return true;
+		}
+
+		@Guard(name = "isStopped")
+		public boolean isStopped() {
+			return false;
+		}
+
+	}
+
+	@Ports({ @Port(name = "r", type = PortType.enforceable) })
+	@ComponentType(initial = "idle", name = "org.javabip.executor.Accumulator")
+	public static class Accumulator {
+
+		int executed;
+
+		long total;
+
+		@Transition(name = "r", source = "idle", target = "idle", guard = "isAcceptable")
+		public void add(@Data(name = "amount") int amount) {
+			executed++;
+			total += amount;
+		}
+
+		@Guard(name = "isAcceptable")
+		public boolean isAcceptable(@Data(name = "amount") int amount) {
+			return amount >= 1000;
+		}
+
+	}
+
+	static class CountingEngine implements BIPEngine {
+
+		long informs;
+
+		public void specifyGlue(BIPGlue glue) {
+		}
+
+		public BIPActor register(Object component, String id, boolean useAnnotations) {
+			return null;
+		}
+
+		public void inform(BIPComponent component, String currentState, Set<org.javabip.api.Port> disabledPorts) {
+			informs++;
+		}
+
+		public void informSpecific(BIPComponent decidingComponent, org.javabip.api.Port decidingPort,
+				Map<BIPComponent, Set<org.javabip.api.Port>> disabledCombinations) {
+		}
+
+		public void start() {
+		}
+
+		public void stop() {
+		}
+
+		public void execute() {
+		}
+
+		public void initialize() {
+		}
+
+	}
+
+}
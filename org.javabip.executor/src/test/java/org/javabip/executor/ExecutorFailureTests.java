@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.javabip.annotations.ComponentType;
+import org.javabip.annotations.Port;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.api.OrchestratedExecutor;
+import org.javabip.api.PortType;
+import org.junit.Test;
+
+/**
+ * Checks that a transition which fails does not stop the executor: the failure is logged and the next step is issued,
+ * so that the engine is informed again. Only the errors of the virtual machine are let through.
+ */
+public class ExecutorFailureTests {
+
+	@Test
+	public void failedTransitionIsFollowedByAStep() {
+		Failing component = new Failing();
+		StepCounter steps = new StepCounter();
+		ExecutorKernel kernel = new ExecutorKernel(component, "failing", true);
+		kernel.setProxy(steps.proxy());
+		ExecutorAllocationTests.CountingEngine engine = new ExecutorAllocationTests.CountingEngine();
+		kernel.register(engine);
+
+		int registered = steps.steps;
+
+		kernel.step();
+		kernel.execute("assert");
+		assertEquals(registered + 1, steps.steps);
+		kernel.step();
+		kernel.execute("fail");
+		assertEquals(registered + 2, steps.steps);
+		kernel.step();
+
+		assertEquals(2, component.invoked);
+		assertEquals(3, engine.informs);
+	}
+
+	@Test(expected = StackOverflowError.class)
+	public void virtualMachineErrorIsRethrown() {
+		ExecutorKernel kernel = new ExecutorKernel(new Failing(), "failing", true);
+		kernel.setProxy(new StepCounter().proxy());
+		kernel.register(new ExecutorAllocationTests.CountingEngine());
+
+		kernel.step();
+		kernel.execute("overflow");
+	}
+
+	/*
+	 * Counts the steps the kernel asks its proxy for, the other calls are ignored.
+	 */
+	static class StepCounter implements InvocationHandler {
+
+		int steps;
+
+		OrchestratedExecutor proxy() {
+			return (OrchestratedExecutor) Proxy.newProxyInstance(ExecutorFailureTests.class.getClassLoader(),
+					new Class<?>[] { OrchestratedExecutor.class }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("step")) {
+				steps++;
+			}
+			Class<?> type = method.getReturnType();
+			if (type == boolean.class) {
+				return false;
+			}
+			if (type.isPrimitive() && type != void.class) {
+				return 0;
+			}
+			return null;
+		}
+
+	}
+
+	@Ports({ @Port(name = "assert", type = PortType.enforceable), @Port(name = "fail", type = PortType.enforceable),
+			@Port(name = "overflow", type = PortType.enforceable) })
+	@ComponentType(initial = "idle", name = "org.javabip.executor.Failing")
+	public static class Failing {
+
+		int invoked;
+
+		@Transition(name = "assert", source = "idle", target = "done")
+		public void failAssertion() {
+			invoked++;
+			throw new AssertionError("failing transition");
+		}
+
+		@Transition(name = "fail", source = "idle", target = "done")
+		public void failWithException() {
+			invoked++;
+			throw new IllegalStateException("failing transition");
+		}
+
+		@Transition(name = "overflow", source = "idle", target = "done")
+		public void overflow() {
+			throw new StackOverflowError();
+		}
+
+	}
+
+}
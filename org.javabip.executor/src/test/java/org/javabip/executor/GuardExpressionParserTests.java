@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.javabip.executor.guardparser.boolLexer;
+import org.javabip.executor.guardparser.boolParser;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Compares the trees built by GuardExpressionParser with the trees built by the ANTLR parser generated from
+ * guardparser/bool.g4, for the guards of the transitions of the examples and for generated nested expressions.
+ */
+public class GuardExpressionParserTests {
+
+	private static final File EXAMPLES = new File("../org.javabip.spec.examples/src/main/java");
+
+	private static final Pattern TRANSITION_GUARD = Pattern.compile("guard\\s*=\\s*\"([^\"]*)\"");
+
+	private static final int GENERATED_EXPRESSIONS = 1000;
+
+	@Test
+	public void examplesGuardsGiveTheSameTrees() throws IOException {
+		Assume.assumeTrue(EXAMPLES.isDirectory());
+
+		Set<String> guards = new TreeSet<String>();
+		collectGuards(EXAMPLES, guards);
+		guards.remove("");
+		assertFalse("No guards found in " + EXAMPLES, guards.isEmpty());
+
+		for (String guard : guards) {
+			assertSameTree(guard);
+		}
+	}
+
+	@Test
+	public void generatedExpressionsGiveTheSameTrees() {
+		Random random = new Random(20161018L);
+		for (int i = 0; i < GENERATED_EXPRESSIONS; i++) {
+			StringBuilder expression = new StringBuilder();
+			expression(random, 3, expression);
+			assertSameTree(expression.toString());
+		}
+	}
+
+	@Test
+	public void trailingInputIsRejected() {
+		String[][] inputs = { { "a b", "a" }, { "a & b)", "a & b" }, { "(a | b) c", "(a | b)" },
+				{ "!a & b !c", "!a & b" }, { "a | b (c)", "a | b" } };
+		for (String[] input : inputs) {
+			// The ANTLR parser stops at the first token it cannot use and returns the tree of the prefix.
+			GuardTreeNode prefix = parseANTLR(input[0]);
+			assertNotNull(input[0], prefix);
+			assertEquals(input[0], render(prefix), render(GuardExpressionParser.parse(input[1])));
+			assertNull(input[0], GuardExpressionParser.parse(input[0]));
+		}
+	}
+
+	private static void assertSameTree(String expression) {
+		GuardTreeNode expected = parseANTLR(expression);
+		assertNotNull(expression, expected);
+		assertEquals(expression, render(expected), render(GuardExpressionParser.parse(expression)));
+	}
+
+	/*
+	 * expr : conjunction ( '|' expr )?, conjunction : term ( '&' conjunction )?, term : '!'? ident, ident : ID | '('
+	 * expr ')', with white space spread between the tokens.
+	 */
+	private static void expression(Random random, int depth, StringBuilder out) {
+		conjunction(random, depth, out);
+		if (random.nextInt(3) == 0) {
+			space(random, out);
+			out.append('|');
+			space(random, out);
+			expression(random, depth, out);
+		}
+	}
+
+	private static void conjunction(Random random, int depth, StringBuilder out) {
+		term(random, depth, out);
+		if (random.nextInt(3) == 0) {
+			space(random, out);
+			out.append('&');
+			space(random, out);
+			conjunction(random, depth, out);
+		}
+	}
+
+	private static void term(Random random, int depth, StringBuilder out) {
+		if (random.nextInt(3) == 0) {
+			out.append('!');
+			space(random, out);
+		}
+		if (depth > 0 && random.nextInt(3) == 0) {
+			out.append('(');
+			space(random, out);
+			expression(random, depth - 1, out);
+			space(random, out);
+			out.append(')');
+		} else {
+			identifier(random, out);
+		}
+	}
+
+	private static void identifier(Random random, StringBuilder out) {
+		String start = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_";
+		String part = start + "0123456789";
+		out.append(start.charAt(random.nextInt(start.length())));
+		for (int length = random.nextInt(8); length > 0; length--) {
+			out.append(part.charAt(random.nextInt(part.length())));
+		}
+	}
+
+	private static void space(Random random, StringBuilder out) {
+		String space = " \t\r\n";
+		for (int length = random.nextInt(3) - 1; length > 0; length--) {
+			out.append(space.charAt(random.nextInt(space.length())));
+		}
+	}
+
+	private static void collectGuards(File file, Set<String> guards) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				collectGuards(child, guards);
+			}
+		} else if (file.getName().endsWith(".java")) {
+			String source = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+			Matcher matcher = TRANSITION_GUARD.matcher(source);
+			while (matcher.find()) {
+				guards.add(matcher.group(1));
+			}
+		}
+	}
+
+	/*
+	 * As GuardExpressionCache parses with ANTLR, without reporting the syntax errors on the console.
+	 */
+	private static GuardTreeNode parseANTLR(String input) {
+		boolLexer lexer = new boolLexer(new ANTLRInputStream(input));
+		lexer.removeErrorListeners();
+		boolParser parser = new boolParser(new CommonTokenStream(lexer));
+		parser.removeErrorListeners();
+		parser.setBuildParseTree(true);
+		parser.formula();
+		return parser.stack.empty() ? null : parser.stack.pop();
+	}
+
+	/*
+	 * The tree with the children in order, for instance (& (b) (a)) for a & b.
+	 */
+	private static String render(GuardTreeNode node) {
+		if (node == null) {
+			return null;
+		}
+		StringBuilder out = new StringBuilder("(").append(node.data);
+		for (GuardTreeNode child : node.children) {
+			out.append(' ').append(render(child));
+		}
+		return out.append(')').toString();
+	}
+
+}
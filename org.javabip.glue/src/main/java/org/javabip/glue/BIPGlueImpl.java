@@ -52,6 +52,18 @@ class BIPGlueImpl implements BIPGlue {
 	@XmlElement(name = "wire")
 	private ArrayList<DataWireImpl> dataWires;
 
+	/**
+	 * The JAXB context of the glue, created once as its creation is costly. JAXB contexts are thread safe.
+	 */
+	private static JAXBContext context;
+
+	static synchronized JAXBContext getJAXBContext() throws JAXBException {
+		if (context == null) {
+			context = JAXBContext.newInstance(BIPGlueImpl.class);
+		}
+		return context;
+	}
+
 	public BIPGlueImpl() {
 		this.acceptConstraints = new ArrayList<AcceptImpl>();
 		this.requiresConstraints = new ArrayList<RequireImpl>();
@@ -97,11 +109,9 @@ class BIPGlueImpl implements BIPGlue {
 
 	public void toXML(OutputStream outputStream) {
 
-		// create JAXB context and instantiate marshaller
-		JAXBContext context;
+		// instantiate marshaller from the shared JAXB context
 		try {
-			context = JAXBContext.newInstance(BIPGlueImpl.class);
-			Marshaller m = context.createMarshaller();
+			Marshaller m = getJAXBContext().createMarshaller();
 			m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
 
 			// Write to outputStream
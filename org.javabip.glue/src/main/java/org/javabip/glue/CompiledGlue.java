@@ -0,0 +1,479 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.javabip.api.Accept;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.PortBase;
+import org.javabip.api.Require;
+
+/**
+ * The glue compiled for the engines, which do not have to interpret the ports identified by strings in each cycle.
+ * Each port of the glue, identified by its specification type and its id, is given an integer id. The causes of the
+ * require constraints and the ports accepted by the accept constraints are sets of port ids. A set of ports is an
+ * interaction if it is not empty, if each of its ports has the causes of one of its require alternatives in the set
+ * and if each of its ports accepts the other ports of the set.
+ * 
+ * A port may appear several times among the causes of a require alternative, the port is then needed from as many
+ * components. The sets of ports keep the port once, they tell which ports take part in an interaction but not from how
+ * many components. The multiplicity of the causes is kept by getRequiredPorts, and the require constraint is checked
+ * against the number of components taking part with each port by isRequireSatisfied(int, int[]).
+ * 
+ * The bitsets and the arrays provided are shared and must not be modified.
+ */
+public final class CompiledGlue {
+
+	private final BIPGlue glue;
+
+	private final Map<String, Map<String, Integer>> portIds = new HashMap<String, Map<String, Integer>>();
+
+	private final List<PortBase> ports = new ArrayList<PortBase>();
+
+	/**
+	 * The alternatives of the require constraint of each port, null if the port has no require constraint.
+	 */
+	private final BitSet[][] requires;
+
+	/**
+	 * The causes of the alternatives of the require constraint of each port, as port ids in increasing order, a port
+	 * needed several times appearing as many times. It is null if the port has no require constraint.
+	 */
+	private final int[][][] requiredPorts;
+
+	/**
+	 * The ports which each port does not accept, itself excepted, null if the port has no accept constraint.
+	 */
+	private final BitSet[] rejects;
+
+	/**
+	 * The ports whose accept constraint accepts the port itself, taken by another component.
+	 */
+	private final BitSet acceptsItself;
+
+	/**
+	 * The interactions involving each port, computed when first asked for since the search may explore many
+	 * combinations of require alternatives. The engines only query the constraints.
+	 */
+	private final List<List<BitSet>> interactions;
+
+	/**
+	 * Compiles the glue.
+	 * 
+	 * @param glue
+	 *            the glue.
+	 * @return the compiled glue.
+	 */
+	public static CompiledGlue compile(BIPGlue glue) {
+		if (glue == null) {
+			throw new IllegalArgumentException("The glue to be compiled cannot be null.");
+		}
+		return new CompiledGlue(glue);
+	}
+
+	private CompiledGlue(BIPGlue glue) {
+		this.glue = glue;
+
+		for (Require require : glue.getRequiresConstraints()) {
+			add(require.getEffect());
+			for (List<PortBase> option : require.getCauses()) {
+				for (PortBase cause : option) {
+					add(cause);
+				}
+			}
+		}
+		for (Accept accept : glue.getAcceptConstraints()) {
+			add(accept.getEffect());
+			for (PortBase cause : accept.getCauses()) {
+				add(cause);
+			}
+		}
+		int noOfPorts = ports.size();
+
+		this.requires = new BitSet[noOfPorts][];
+		this.requiredPorts = new int[noOfPorts][][];
+		for (Require require : glue.getRequiresConstraints()) {
+			int effect = getPortId(require.getEffect());
+			List<List<PortBase>> causes = require.getCauses();
+			int first = requires[effect] == null ? 0 : requires[effect].length;
+			BitSet[] options = new BitSet[first + causes.size()];
+			int[][] optionPorts = new int[first + causes.size()][];
+			for (int i = 0; i < first; i++) {
+				options[i] = requires[effect][i];
+				optionPorts[i] = requiredPorts[effect][i];
+			}
+			for (int i = 0; i < causes.size(); i++) {
+				List<PortBase> option = causes.get(i);
+				options[first + i] = toPortSet(option);
+				int[] ids = new int[option.size()];
+				for (int j = 0; j < ids.length; j++) {
+					ids[j] = getPortId(option.get(j));
+				}
+				Arrays.sort(ids);
+				optionPorts[first + i] = ids;
+			}
+			requires[effect] = options;
+			requiredPorts[effect] = optionPorts;
+		}
+
+		this.rejects = new BitSet[noOfPorts];
+		this.acceptsItself = new BitSet(noOfPorts);
+		for (Accept accept : glue.getAcceptConstraints()) {
+			int effect = getPortId(accept.getEffect());
+			BitSet accepted = toPortSet(accept.getCauses());
+			if (rejects[effect] == null) {
+				rejects[effect] = new BitSet(noOfPorts);
+				rejects[effect].set(0, noOfPorts);
+				rejects[effect].clear(effect);
+			}
+			rejects[effect].andNot(accepted);
+			if (accepted.get(effect)) {
+				acceptsItself.set(effect);
+			}
+		}
+
+		this.interactions = new ArrayList<List<BitSet>>(Collections.<List<BitSet>> nCopies(noOfPorts, null));
+	}
+
+	private void add(PortBase port) {
+		Map<String, Integer> ofType = portIds.get(port.getSpecType());
+		if (ofType == null) {
+			ofType = new HashMap<String, Integer>();
+			portIds.put(port.getSpecType(), ofType);
+		}
+		if (!ofType.containsKey(port.getId())) {
+			ofType.put(port.getId(), ports.size());
+			ports.add(new PortBaseImpl(port.getId(), port.getSpecType()));
+		}
+	}
+
+	/*
+	 * The causes of the first port of the set whose require constraint is not met are added, with each alternative in
+	 * turn, until every require constraint is met.
+	 */
+	private void extend(BitSet current, List<BitSet> found, Set<BitSet> visited) {
+		for (int port = current.nextSetBit(0); port >= 0; port = current.nextSetBit(port + 1)) {
+			if (isRequireSatisfied(port, current)) {
+				continue;
+			}
+			for (BitSet option : requires[port]) {
+				BitSet next = (BitSet) current.clone();
+				next.or(option);
+				if (isAccepted(next) && visited.add(next)) {
+					extend(next, found, visited);
+				}
+			}
+			return;
+		}
+		found.add(current);
+	}
+
+	/**
+	 * Provides the glue which was compiled.
+	 * 
+	 * @return the glue.
+	 */
+	public BIPGlue getGlue() {
+		return glue;
+	}
+
+	/**
+	 * Provides the number of ports of the glue, the port ids going from 0 to this number excluded.
+	 * 
+	 * @return the number of ports.
+	 */
+	public int getNoOfPorts() {
+		return ports.size();
+	}
+
+	/**
+	 * Provides the id of the port.
+	 * 
+	 * @param specType
+	 *            the specification type of the port.
+	 * @param portId
+	 *            the id of the port within its specification type.
+	 * @return the id of the port in the compiled glue, -1 if the glue does not mention it.
+	 */
+	public int getPortId(String specType, String portId) {
+		Map<String, Integer> ofType = portIds.get(specType);
+		if (ofType == null) {
+			return -1;
+		}
+		Integer id = ofType.get(portId);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Provides the id of the port.
+	 * 
+	 * @param port
+	 *            the port.
+	 * @return the id of the port in the compiled glue, -1 if the glue does not mention it.
+	 */
+	public int getPortId(PortBase port) {
+		return getPortId(port.getSpecType(), port.getId());
+	}
+
+	/**
+	 * Provides the port with the given id.
+	 * 
+	 * @param id
+	 *            the id of the port in the compiled glue.
+	 * @return the port.
+	 */
+	public PortBase getPort(int id) {
+		return ports.get(id);
+	}
+
+	/**
+	 * Provides the set of the ids of the ports.
+	 * 
+	 * @param ports
+	 *            the ports, which the glue must mention.
+	 * @return the set of port ids.
+	 */
+	public BitSet toPortSet(Collection<? extends PortBase> ports) {
+		BitSet result = new BitSet(this.ports.size());
+		for (PortBase port : ports) {
+			int id = getPortId(port);
+			if (id < 0) {
+				throw new IllegalArgumentException("The port " + port.getId() + " of specification type "
+						+ port.getSpecType() + " is not mentioned by the glue.");
+			}
+			result.set(id);
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether the port has a require constraint.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @return true if the port has a require constraint.
+	 */
+	public boolean hasRequire(int port) {
+		return requires[port] != null;
+	}
+
+	/**
+	 * Provides the causes of the alternatives of the require constraint of the port.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @return the sets of ports of the alternatives, empty if the port has no require constraint.
+	 */
+	public List<BitSet> getRequiredCauses(int port) {
+		if (requires[port] == null) {
+			return Collections.emptyList();
+		}
+		List<BitSet> result = new ArrayList<BitSet>(requires[port].length);
+		Collections.addAll(result, requires[port]);
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Provides the causes of the alternatives of the require constraint of the port, with their multiplicity.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @return for each alternative, the ids of its causes in increasing order, a port needed from several components
+	 *         appearing as many times. The list is empty if the port has no require constraint.
+	 */
+	public List<int[]> getRequiredPorts(int port) {
+		if (requiredPorts[port] == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(requiredPorts[port]));
+	}
+
+	/**
+	 * Tells whether the port has an accept constraint.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @return true if the port has an accept constraint.
+	 */
+	public boolean hasAccept(int port) {
+		return rejects[port] != null;
+	}
+
+	/**
+	 * Tells whether the port accepts the other port, taken by another component, in an interaction. A port without
+	 * accept constraint accepts any port. A port with an accept constraint accepts itself, taken by another
+	 * component, only if its accept constraint lists it, and it does not accept the ports the glue does not mention,
+	 * whose ids are beyond the ids of the glue.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @param other
+	 *            the id of the other port.
+	 * @return true if the port accepts the other port.
+	 */
+	public boolean accepts(int port, int other) {
+		if (port >= rejects.length || rejects[port] == null) {
+			return true;
+		}
+		if (other == port) {
+			return acceptsItself.get(port);
+		}
+		return other < rejects.length && !rejects[port].get(other);
+	}
+
+	/**
+	 * Tells whether the ports contain the causes of one of the alternatives of the require constraint of the port. A
+	 * port without require constraint is always satisfied.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @param ports
+	 *            the set of port ids.
+	 * @return true if the require constraint of the port is met.
+	 */
+	public boolean isRequireSatisfied(int port, BitSet ports) {
+		BitSet[] options = requires[port];
+		if (options == null) {
+			return true;
+		}
+		for (BitSet option : options) {
+			if (contains(ports, option)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the components taking part contain the causes of one of the alternatives of the require constraint
+	 * of the port, as many components as needed for each cause. The component of the port is not one of its causes.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @param counts
+	 *            the number of components taking part with each port, indexed by port id, the component of the port
+	 *            included.
+	 * @return true if the require constraint of the port is met.
+	 */
+	public boolean isRequireSatisfied(int port, int[] counts) {
+		int[][] options = requiredPorts[port];
+		if (options == null) {
+			return true;
+		}
+		for (int[] option : options) {
+			boolean satisfied = true;
+			int i = 0;
+			while (satisfied && i < option.length) {
+				int cause = option[i];
+				int needed = 0;
+				for (; i < option.length && option[i] == cause; i++) {
+					needed++;
+				}
+				int available = cause < counts.length ? counts[cause] : 0;
+				if (cause == port) {
+					available--;
+				}
+				satisfied = available >= needed;
+			}
+			if (satisfied) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the set of ports is an interaction allowed by the glue.
+	 * 
+	 * @param ports
+	 *            the set of port ids.
+	 * @return true if the ports form an interaction.
+	 */
+	public boolean isInteraction(BitSet ports) {
+		if (ports.isEmpty() || !isAccepted(ports)) {
+			return false;
+		}
+		for (int port = ports.nextSetBit(0); port >= 0; port = ports.nextSetBit(port + 1)) {
+			if (!isRequireSatisfied(port, ports)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Provides the interactions involving the port, obtained from the port by adding the causes of the require
+	 * constraints which are not met, under the accept constraints. They are computed on the first call for the port.
+	 * 
+	 * @param port
+	 *            the id of the port.
+	 * @return the interactions, as sets of port ids.
+	 */
+	public synchronized List<BitSet> getInteractions(int port) {
+		List<BitSet> result = interactions.get(port);
+		if (result == null) {
+			BitSet start = new BitSet(ports.size());
+			start.set(port);
+			List<BitSet> found = new ArrayList<BitSet>();
+			if (isAccepted(start)) {
+				extend(start, found, new HashSet<BitSet>());
+			}
+			result = Collections.unmodifiableList(found);
+			interactions.set(port, result);
+		}
+		return result;
+	}
+
+	private boolean isAccepted(BitSet ports) {
+		for (int port = ports.nextSetBit(0); port >= 0; port = ports.nextSetBit(port + 1)) {
+			if (port >= rejects.length || (rejects[port] != null && rejects[port].intersects(ports))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean contains(BitSet ports, BitSet subset) {
+		for (int port = subset.nextSetBit(0); port >= 0; port = subset.nextSetBit(port + 1)) {
+			if (!ports.get(port)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append("CompiledGlue=(");
+		result.append("noOfPorts = " + ports.size());
+		result.append(")");
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javabip.api.Accept;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.DataWire;
+import org.javabip.api.PortBase;
+import org.javabip.api.Require;
+import org.javabip.exceptions.BIPException;
+
+/**
+ * Reads and writes the BIP Glue in a compact binary form, which is faster to load than the xml form. Each string and
+ * each port is written once in a table and the constraints refer to the ports by their index in the table. The glue
+ * can be read from a memory-mapped file.
+ * 
+ * The format is made of big-endian ints: the magic number and the version of the format, the number of strings followed
+ * by each string as the length of its UTF-8 encoding and the encoding, the number of ports followed by the indices of
+ * the specification type and the id of each port, the number of accepts followed by the effect, the number of causes
+ * and the causes of each accept, the number of requires followed by the effect, the number of alternatives and, for
+ * each alternative, the number of causes and the causes of each require, and the number of data wires followed by the
+ * from and to ports of each data wire.
+ * 
+ */
+public final class GlueBinary {
+
+	private static final int MAGIC = 0x42495047;
+
+	private static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private GlueBinary() {
+	}
+
+	/**
+	 * Writes the BIP Glue in its binary form.
+	 * 
+	 * @param glue
+	 *            the BIP Glue.
+	 * @param outputStream
+	 *            the stream the glue is written to, which is left open.
+	 * @throws BIPException
+	 *             if the glue can not be written.
+	 */
+	public static void toBinary(BIPGlue glue, OutputStream outputStream) {
+		List<Accept> accepts = glue.getAcceptConstraints();
+		List<Require> requires = glue.getRequiresConstraints();
+		List<DataWire> wires = glue.getDataWires();
+
+		PortTable table = new PortTable();
+		for (Accept accept : accepts) {
+			table.add(accept.getEffect());
+			table.addAll(accept.getCauses());
+		}
+		for (Require require : requires) {
+			table.add(require.getEffect());
+			for (List<PortBase> option : require.getCauses()) {
+				table.addAll(option);
+			}
+		}
+		for (DataWire wire : wires) {
+			table.add(wire.getFrom());
+			table.add(wire.getTo());
+		}
+
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+
+			output.writeInt(table.strings.size());
+			for (String string : table.strings) {
+				byte[] bytes = string.getBytes(UTF8);
+				output.writeInt(bytes.length);
+				output.write(bytes);
+			}
+			output.writeInt(table.ports.size());
+			for (int[] port : table.ports) {
+				output.writeInt(port[0]);
+				output.writeInt(port[1]);
+			}
+
+			output.writeInt(accepts.size());
+			for (Accept accept : accepts) {
+				output.writeInt(table.indexOf(accept.getEffect()));
+				writePorts(output, table, accept.getCauses());
+			}
+			output.writeInt(requires.size());
+			for (Require require : requires) {
+				output.writeInt(table.indexOf(require.getEffect()));
+				List<List<PortBase>> causes = require.getCauses();
+				output.writeInt(causes.size());
+				for (List<PortBase> option : causes) {
+					writePorts(output, table, option);
+				}
+			}
+			output.writeInt(wires.size());
+			for (DataWire wire : wires) {
+				output.writeInt(table.indexOf(wire.getFrom()));
+				output.writeInt(table.indexOf(wire.getTo()));
+			}
+			output.flush();
+		} catch (IOException e) {
+			throw new BIPException("The binary glue can not be written: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the BIP Glue from a file holding its binary form, which is memory-mapped.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @return the BIP Glue.
+	 * @throws BIPException
+	 *             if the file can not be read or does not hold a binary glue.
+	 */
+	public static BIPGlue fromBinary(File file) {
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			FileChannel channel = input.getChannel();
+			return fromBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException e) {
+			throw new BIPException("The binary glue can not be read from " + file + ": " + e.getMessage(), e);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// the mapping stays valid once the file is closed.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the BIP Glue from a stream holding its binary form.
+	 * 
+	 * @param inputStream
+	 *            the stream, which is read to its end and left open.
+	 * @return the BIP Glue.
+	 * @throws BIPException
+	 *             if the stream can not be read or does not hold a binary glue.
+	 */
+	public static BIPGlue fromBinary(InputStream inputStream) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try {
+			for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+				bytes.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new BIPException("The binary glue can not be read: " + e.getMessage(), e);
+		}
+		return fromBinary(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Reads the BIP Glue from a buffer holding its binary form, starting at the position of the buffer. The position of
+	 * the buffer is left unchanged.
+	 * 
+	 * @param buffer
+	 *            the buffer.
+	 * @return the BIP Glue.
+	 * @throws BIPException
+	 *             if the buffer does not hold a binary glue.
+	 */
+	public static BIPGlue fromBinary(ByteBuffer buffer) {
+		ByteBuffer input = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		try {
+			if (input.getInt() != MAGIC) {
+				throw new BIPException("The data does not hold a binary glue.");
+			}
+			int version = input.getInt();
+			if (version != VERSION) {
+				throw new BIPException("The version " + version + " of the binary glue is not supported.");
+			}
+
+			String[] strings = new String[count(input)];
+			byte[] bytes = new byte[0];
+			for (int i = 0; i < strings.length; i++) {
+				int length = count(input);
+				if (input.hasArray()) {
+					strings[i] = new String(input.array(), input.arrayOffset() + input.position(), length, UTF8);
+					input.position(input.position() + length);
+				} else {
+					if (bytes.length < length) {
+						bytes = new byte[length];
+					}
+					input.get(bytes, 0, length);
+					strings[i] = new String(bytes, 0, length, UTF8);
+				}
+			}
+			PortBase[] ports = new PortBase[count(input)];
+			for (int i = 0; i < ports.length; i++) {
+				String specType = strings[index(input, strings.length)];
+				ports[i] = new PortBaseImpl(strings[index(input, strings.length)], specType);
+			}
+
+			BIPGlueImpl glue = new BIPGlueImpl();
+			for (int i = count(input); i > 0; i--) {
+				PortBase effect = ports[index(input, ports.length)];
+				glue.addAccept(new AcceptImpl(effect, readPorts(input, ports)));
+			}
+			for (int i = count(input); i > 0; i--) {
+				PortBase effect = ports[index(input, ports.length)];
+				int noOfOptions = count(input);
+				List<List<PortBase>> causes = new ArrayList<List<PortBase>>(noOfOptions);
+				for (int j = 0; j < noOfOptions; j++) {
+					causes.add(readPorts(input, ports));
+				}
+				glue.addRequire(new RequireImpl(effect, causes));
+			}
+			for (int i = count(input); i > 0; i--) {
+				PortBase from = ports[index(input, ports.length)];
+				glue.addDataWire(new DataWireImpl(from, ports[index(input, ports.length)]));
+			}
+			return glue;
+		} catch (BufferUnderflowException e) {
+			throw new BIPException("The binary glue is truncated.", e);
+		} catch (IllegalArgumentException e) {
+			throw new BIPException("The binary glue is truncated or corrupted: " + e.getMessage(), e);
+		}
+	}
+
+	private static void writePorts(DataOutputStream output, PortTable table, Collection<PortBase> ports)
+			throws IOException {
+		output.writeInt(ports.size());
+		for (PortBase port : ports) {
+			output.writeInt(table.indexOf(port));
+		}
+	}
+
+	private static List<PortBase> readPorts(ByteBuffer input, PortBase[] ports) {
+		int size = count(input);
+		List<PortBase> result = new ArrayList<PortBase>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(ports[index(input, ports.length)]);
+		}
+		return result;
+	}
+
+	private static int count(ByteBuffer input) {
+		int count = input.getInt();
+		if (count < 0 || count > input.remaining()) {
+			throw new IllegalArgumentException("invalid size " + count + " at position " + (input.position() - 4));
+		}
+		return count;
+	}
+
+	private static int index(ByteBuffer input, int size) {
+		int index = input.getInt();
+		if (index < 0 || index >= size) {
+			throw new IllegalArgumentException("invalid index " + index + " at position " + (input.position() - 4));
+		}
+		return index;
+	}
+
+	/*
+	 * The strings and the ports of the glue, each of them with its index in the tables written.
+	 */
+	private static final class PortTable {
+
+		final List<String> strings = new ArrayList<String>();
+
+		final List<int[]> ports = new ArrayList<int[]>();
+
+		private final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+
+		private final Map<String, Map<String, Integer>> portIndices = new HashMap<String, Map<String, Integer>>();
+
+		void add(PortBase port) {
+			Map<String, Integer> ofType = portIndices.get(port.getSpecType());
+			if (ofType == null) {
+				ofType = new HashMap<String, Integer>();
+				portIndices.put(port.getSpecType(), ofType);
+			}
+			if (!ofType.containsKey(port.getId())) {
+				ofType.put(port.getId(), ports.size());
+				ports.add(new int[] { intern(port.getSpecType()), intern(port.getId()) });
+			}
+		}
+
+		void addAll(Collection<PortBase> ports) {
+			for (PortBase port : ports) {
+				add(port);
+			}
+		}
+
+		int indexOf(PortBase port) {
+			return portIndices.get(port.getSpecType()).get(port.getId());
+		}
+
+		private int intern(String string) {
+			Integer index = stringIndices.get(string);
+			if (index == null) {
+				index = strings.size();
+				stringIndices.put(string, index);
+				strings.add(string);
+			}
+			return index;
+		}
+
+	}
+
+}
@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 
@@ -346,7 +345,8 @@ public abstract class GlueBuilder {
 	}
 
 	/**
-	 * Extracts the BIP Glue from an xml specification file.
+	 * Extracts the BIP Glue from an xml specification file. {@link GlueXml#fromXML(InputStream)} reads the same
+	 * specification without JAXB, faster for large glues.
 	 * 
 	 * @param inputStream
 	 *            the stream of the xml specification
@@ -354,10 +354,8 @@ public abstract class GlueBuilder {
 	 */
 	public static BIPGlue fromXML(InputStream inputStream) {
 
-		JAXBContext context;
 		try {
-			context = JAXBContext.newInstance(BIPGlueImpl.class);
-			Unmarshaller um = context.createUnmarshaller();
+			Unmarshaller um = BIPGlueImpl.getJAXBContext().createUnmarshaller();
 			return (BIPGlueImpl) um.unmarshal(new InputStreamReader(inputStream));
 		} catch (JAXBException e) {
 			e.printStackTrace();
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.javabip.api.Accept;
+import org.javabip.api.BIPGlue;
+import org.javabip.api.DataWire;
+import org.javabip.api.PortBase;
+import org.javabip.api.Require;
+import org.javabip.exceptions.BIPException;
+
+/**
+ * Reads and writes the xml form of the BIP Glue with StAX, in a single pass over the document and without JAXB. The
+ * documents are the ones of {@link GlueBuilder#fromXML(InputStream)} and {@link BIPGlue#toXML(OutputStream)}, the
+ * written document being the same as the one written by JAXB.
+ * 
+ */
+public final class GlueXml {
+
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+	private static final String INDENT = "    ";
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private GlueXml() {
+	}
+
+	/**
+	 * Extracts the BIP Glue from an xml specification.
+	 * 
+	 * @param inputStream
+	 *            the stream of the xml specification.
+	 * @return the BIP Glue.
+	 * @throws BIPException
+	 *             if the specification can not be read or is not a valid glue.
+	 */
+	public static BIPGlue fromXML(InputStream inputStream) {
+		XMLStreamReader reader = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(inputStream);
+			return new Reader(reader).readGlue();
+		} catch (XMLStreamException e) {
+			throw new BIPException("The xml specification of the glue can not be read: " + e.getMessage(), e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// the glue was read already.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the BIP Glue in its xml form.
+	 * 
+	 * @param glue
+	 *            the BIP Glue.
+	 * @param outputStream
+	 *            the stream the xml specification is written to, which is left open.
+	 * @throws BIPException
+	 *             if the specification can not be written.
+	 */
+	public static void toXML(BIPGlue glue, OutputStream outputStream) {
+		try {
+			outputStream.write(DECLARATION.getBytes("UTF-8"));
+			XMLStreamWriter writer = outputFactory.createXMLStreamWriter(outputStream, "UTF-8");
+			new Writer(writer).writeGlue(glue);
+			writer.writeCharacters("\n");
+			writer.close();
+			outputStream.flush();
+		} catch (XMLStreamException e) {
+			throw new BIPException("The xml specification of the glue can not be written: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new BIPException("The xml specification of the glue can not be written: " + e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * Reads the elements with nextTag, which skips whitespaces and comments. Each method is called on the start of its
+	 * element and returns on its end. The strings of the ports are shared between the constraints.
+	 */
+	private static final class Reader {
+
+		private final XMLStreamReader reader;
+
+		private final Map<String, Map<String, PortBase>> ports = new HashMap<String, Map<String, PortBase>>();
+
+		private final BIPGlueImpl glue = new BIPGlueImpl();
+
+		Reader(XMLStreamReader reader) {
+			this.reader = reader;
+		}
+
+		BIPGlue readGlue() throws XMLStreamException {
+			reader.nextTag();
+			reader.require(XMLStreamConstants.START_ELEMENT, null, "glue");
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals("accepts")) {
+					while (nextElement("accept")) {
+						readAccept();
+					}
+				} else if (name.equals("requires")) {
+					while (nextElement("require")) {
+						readRequire();
+					}
+				} else if (name.equals("data")) {
+					while (nextElement("wire")) {
+						readWire();
+					}
+				} else {
+					skip();
+				}
+			}
+			return glue;
+		}
+
+		private void readAccept() throws XMLStreamException {
+			PortBase effect = null;
+			List<PortBase> causes = new ArrayList<PortBase>();
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals("effect")) {
+					effect = readPort();
+				} else if (name.equals("causes")) {
+					readPorts(causes);
+				} else {
+					skip();
+				}
+			}
+			glue.addAccept(new AcceptImpl(checkEffect(effect), causes));
+		}
+
+		private void readRequire() throws XMLStreamException {
+			PortBase effect = null;
+			List<List<PortBase>> causes = new ArrayList<List<PortBase>>();
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals("effect")) {
+					effect = readPort();
+				} else if (name.equals("causes")) {
+					while (nextElement("option")) {
+						List<PortBase> option = new ArrayList<PortBase>();
+						while (nextElement("causes")) {
+							readPorts(option);
+						}
+						causes.add(option);
+					}
+				} else {
+					skip();
+				}
+			}
+			glue.addRequire(new RequireImpl(checkEffect(effect), causes));
+		}
+
+		private void readWire() throws XMLStreamException {
+			PortBase from = null;
+			PortBase to = null;
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals("from")) {
+					from = readPort();
+				} else if (name.equals("to")) {
+					to = readPort();
+				} else {
+					skip();
+				}
+			}
+			if (from == null || to == null) {
+				throw new XMLStreamException("A data wire needs both its from and to ports.", reader.getLocation());
+			}
+			glue.addDataWire(new DataWireImpl(from, to));
+		}
+
+		private void readPorts(List<PortBase> result) throws XMLStreamException {
+			while (nextElement("port")) {
+				result.add(readPort());
+			}
+		}
+
+		private PortBase readPort() throws XMLStreamException {
+			String id = reader.getAttributeValue(null, "id");
+			String specType = reader.getAttributeValue(null, "specType");
+			if (id == null || specType == null) {
+				throw new XMLStreamException("The element " + reader.getLocalName()
+						+ " needs both the id and specType attributes.", reader.getLocation());
+			}
+			skip();
+
+			Map<String, PortBase> ofType = ports.get(specType);
+			if (ofType == null) {
+				ofType = new HashMap<String, PortBase>();
+				ports.put(specType, ofType);
+			}
+			PortBase port = ofType.get(id);
+			if (port == null) {
+				port = new PortBaseImpl(id, specType);
+				ofType.put(id, port);
+			}
+			return port;
+		}
+
+		private PortBase checkEffect(PortBase effect) throws XMLStreamException {
+			if (effect == null) {
+				throw new XMLStreamException("A constraint needs an effect.", reader.getLocation());
+			}
+			return effect;
+		}
+
+		/*
+		 * Moves to the next child element with the given name, skipping the other ones. Returns false on the end of
+		 * the enclosing element.
+		 */
+		private boolean nextElement(String name) throws XMLStreamException {
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				if (reader.getLocalName().equals(name)) {
+					return true;
+				}
+				skip();
+			}
+			return false;
+		}
+
+		/*
+		 * Moves to the end of the current element.
+		 */
+		private void skip() throws XMLStreamException {
+			int depth = 1;
+			while (depth > 0) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+
+	}
+
+	/*
+	 * Writes the elements indented the way the JAXB marshaller formats them.
+	 */
+	private static final class Writer {
+
+		private final XMLStreamWriter writer;
+
+		private int depth;
+
+		Writer(XMLStreamWriter writer) {
+			this.writer = writer;
+		}
+
+		void writeGlue(BIPGlue glue) throws XMLStreamException {
+			start("glue");
+
+			List<Accept> accepts = glue.getAcceptConstraints();
+			if (startList("accepts", accepts)) {
+				for (Accept accept : accepts) {
+					start("accept");
+					writePort("effect", accept.getEffect());
+					writePorts(accept.getCauses());
+					end();
+				}
+				end();
+			}
+
+			List<Require> requires = glue.getRequiresConstraints();
+			if (startList("requires", requires)) {
+				for (Require require : requires) {
+					start("require");
+					writePort("effect", require.getEffect());
+					List<List<PortBase>> causes = require.getCauses();
+					if (startList("causes", causes)) {
+						for (List<PortBase> option : causes) {
+							start("option");
+							writePorts(option);
+							end();
+						}
+						end();
+					}
+					end();
+				}
+				end();
+			}
+
+			List<DataWire> wires = glue.getDataWires();
+			if (startList("data", wires)) {
+				for (DataWire wire : wires) {
+					start("wire");
+					writePort("from", wire.getFrom());
+					writePort("to", wire.getTo());
+					end();
+				}
+				end();
+			}
+
+			end();
+		}
+
+		private void writePorts(Collection<PortBase> ports) throws XMLStreamException {
+			if (startList("causes", ports)) {
+				for (PortBase port : ports) {
+					writePort("port", port);
+				}
+				end();
+			}
+		}
+
+		private void writePort(String name, PortBase port) throws XMLStreamException {
+			indent();
+			writer.writeEmptyElement(name);
+			writer.writeAttribute("id", port.getId());
+			writer.writeAttribute("specType", port.getSpecType());
+		}
+
+		/*
+		 * Writes an empty element for an empty list, or starts the element of the list otherwise.
+		 */
+		private boolean startList(String name, Collection<?> list) throws XMLStreamException {
+			if (list.isEmpty()) {
+				indent();
+				writer.writeEmptyElement(name);
+				return false;
+			}
+			start(name);
+			return true;
+		}
+
+		private void start(String name) throws XMLStreamException {
+			indent();
+			writer.writeStartElement(name);
+			depth++;
+		}
+
+		private void end() throws XMLStreamException {
+			depth--;
+			indent();
+			writer.writeEndElement();
+		}
+
+		private void indent() throws XMLStreamException {
+			writer.writeCharacters("\n");
+			for (int i = 0; i < depth; i++) {
+				writer.writeCharacters(INDENT);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.api.PortBase;
+import org.junit.Test;
+
+/**
+ * Checks the queries of CompiledGlue against the example glues and against a glue whose require constraints need a
+ * port from several components and whose accept constraints accept the port itself.
+ */
+public class CompiledGlueTests {
+
+	private static final String HANOI = "org.javabip.spec.hanoi.";
+
+	private static final String FORK = "org.bip.spec.diningphilosophers.Fork";
+
+	private static final String PHILOSOPHER = "org.bip.spec.diningphilosophers.Philosophers";
+
+	@Test
+	public void interactionsMeetTheConstraints() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			CompiledGlue compiled = CompiledGlue.compile(glue.getValue());
+			assertFalse(glue.getKey(), compiled.isInteraction(new BitSet()));
+			for (int port = 0; port < compiled.getNoOfPorts(); port++) {
+				assertEquals(glue.getKey(), port, compiled.getPortId(compiled.getPort(port)));
+				List<BitSet> interactions = compiled.getInteractions(port);
+				assertFalse(glue.getKey() + " " + compiled.getPort(port), interactions.isEmpty());
+				assertSame(interactions, compiled.getInteractions(port));
+				for (BitSet interaction : interactions) {
+					assertTrue(interaction.get(port));
+					assertTrue(glue.getKey() + " " + interaction, compiled.isInteraction(interaction));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void hanoiInteractions() throws IOException {
+		CompiledGlue compiled = CompiledGlue.compile(ExampleGlues.glues().get("hanoi.xml"));
+		int ab = port(compiled, HANOI + "HanoiMonitor", "ab");
+		int leftAdd = port(compiled, HANOI + "LeftHanoiPeg", "piece1Add");
+		int leftRemove = port(compiled, HANOI + "LeftHanoiPeg", "piece1Remove");
+		int middleRemove = port(compiled, HANOI + "MiddleHanoiPeg", "piece1Remove");
+		int rightRemove = port(compiled, HANOI + "RightHanoiPeg", "piece1Remove");
+
+		// one interaction for each move of each piece between the two pegs of the monitor port
+		assertEquals(6, compiled.getInteractions(ab).size());
+		// the peg is moved either through ab or through ac
+		assertEquals(2, compiled.getInteractions(leftAdd).size());
+
+		assertTrue(compiled.isInteraction(set(ab, leftAdd, middleRemove)));
+		assertFalse("the require of ab is not met", compiled.isInteraction(set(ab, leftAdd)));
+		assertFalse("ab does not accept the right peg", compiled.isInteraction(set(ab, leftAdd, middleRemove,
+				rightRemove)));
+
+		assertTrue(compiled.hasAccept(leftAdd));
+		assertTrue(compiled.accepts(leftAdd, ab));
+		assertFalse(compiled.accepts(leftAdd, leftRemove));
+		assertFalse("a peg does not accept another peg of its type", compiled.accepts(leftAdd, leftAdd));
+		assertFalse(compiled.accepts(leftAdd, compiled.getNoOfPorts()));
+		assertTrue("a port the glue does not mention has no constraint",
+				compiled.accepts(compiled.getNoOfPorts(), leftAdd));
+	}
+
+	@Test
+	public void diningInteractions() throws IOException {
+		CompiledGlue compiled = CompiledGlue.compile(ExampleGlues.glues().get("dining-philosophers.xml"));
+		int pickup = port(compiled, PHILOSOPHER, "pickupFork");
+		int hold = port(compiled, FORK, "hold");
+		int free = port(compiled, FORK, "free");
+
+		assertEquals(Arrays.asList(set(pickup, hold)), compiled.getInteractions(pickup));
+		assertFalse(compiled.isInteraction(set(pickup, hold, free)));
+		assertTrue(compiled.isRequireSatisfied(pickup, counts(compiled, hold, 1)));
+		assertFalse(compiled.isRequireSatisfied(pickup, counts(compiled, free, 1)));
+	}
+
+	@Test
+	public void emptyGlue() {
+		CompiledGlue compiled = CompiledGlue.compile(new BIPGlueImpl());
+		assertEquals(0, compiled.getNoOfPorts());
+		assertEquals(-1, compiled.getPortId(FORK, "hold"));
+		assertTrue(compiled.accepts(0, 1));
+		assertFalse(compiled.isInteraction(new BitSet()));
+	}
+
+	@Test
+	public void repeatedCausesAreCounted() {
+		CompiledGlue compiled = CompiledGlue.compile(multiplicityGlue());
+		int eat = port(compiled, PHILOSOPHER, "eat");
+		int use = port(compiled, FORK, "use");
+		int sync = port(compiled, FORK, "sync");
+
+		assertEquals(1, compiled.getRequiredPorts(eat).size());
+		assertArrayEquals(new int[] { use, use }, compiled.getRequiredPorts(eat).get(0));
+		assertEquals(1, compiled.getRequiredCauses(eat).size());
+		assertEquals(set(use), compiled.getRequiredCauses(eat).get(0));
+
+		assertFalse(compiled.isRequireSatisfied(eat, counts(compiled, use, 1)));
+		assertTrue(compiled.isRequireSatisfied(eat, counts(compiled, use, 2)));
+		assertTrue(compiled.isRequireSatisfied(eat, counts(compiled, use, 3)));
+		// the sets of ports do not tell from how many components each port is taken
+		assertTrue(compiled.isRequireSatisfied(eat, set(use)));
+
+		// the component of the port does not count as one of its causes
+		assertFalse(compiled.isRequireSatisfied(sync, counts(compiled, sync, 1)));
+		assertTrue(compiled.isRequireSatisfied(sync, counts(compiled, sync, 2)));
+
+		// a port without require is always satisfied, a port without count is taken as absent
+		assertTrue(compiled.isRequireSatisfied(use, new int[0]));
+		assertFalse(compiled.isRequireSatisfied(eat, new int[0]));
+	}
+
+	@Test
+	public void selfAcceptIsListed() {
+		CompiledGlue compiled = CompiledGlue.compile(multiplicityGlue());
+		int eat = port(compiled, PHILOSOPHER, "eat");
+		int use = port(compiled, FORK, "use");
+		int sync = port(compiled, FORK, "sync");
+
+		assertTrue(compiled.accepts(use, use));
+		assertTrue(compiled.accepts(use, eat));
+		assertFalse(compiled.accepts(eat, eat));
+		assertTrue(compiled.accepts(eat, use));
+		assertFalse(compiled.accepts(eat, sync));
+		assertFalse(compiled.hasAccept(sync));
+		assertTrue(compiled.accepts(sync, eat));
+		assertTrue(compiled.accepts(sync, sync));
+
+		assertTrue(compiled.isInteraction(set(eat, use)));
+		assertFalse(compiled.isInteraction(set(eat)));
+		assertFalse(compiled.isInteraction(set(eat, use, sync)));
+		assertEquals(Arrays.asList(set(eat, use)), compiled.getInteractions(eat));
+	}
+
+	/*
+	 * A philosopher eats with two forks, a fork accepts the other forks, and a fork syncs with another fork.
+	 */
+	private static BIPGlue multiplicityGlue() {
+		PortBase eat = new PortBaseImpl("eat", PHILOSOPHER);
+		PortBase use = new PortBaseImpl("use", FORK);
+		PortBase sync = new PortBaseImpl("sync", FORK);
+		BIPGlueImpl glue = new BIPGlueImpl();
+		glue.addRequire(require(eat, use, use));
+		glue.addRequire(require(sync, sync));
+		glue.addAccept(accept(eat, use));
+		glue.addAccept(accept(use, eat, use));
+		return glue;
+	}
+
+	private static RequireImpl require(PortBase effect, PortBase... causes) {
+		List<List<PortBase>> options = new ArrayList<List<PortBase>>();
+		options.add(Arrays.asList(causes));
+		return new RequireImpl(effect, options);
+	}
+
+	private static AcceptImpl accept(PortBase effect, PortBase... causes) {
+		return new AcceptImpl(effect, Arrays.asList(causes));
+	}
+
+	private static int port(CompiledGlue compiled, String specType, String id) {
+		int port = compiled.getPortId(specType, id);
+		assertTrue(specType + "." + id, port >= 0);
+		return port;
+	}
+
+	private static BitSet set(int... ports) {
+		BitSet result = new BitSet();
+		for (int port : ports) {
+			result.set(port);
+		}
+		return result;
+	}
+
+	private static int[] counts(CompiledGlue compiled, int port, int count) {
+		int[] counts = new int[compiled.getNoOfPorts()];
+		counts[port] = count;
+		return counts;
+	}
+
+}
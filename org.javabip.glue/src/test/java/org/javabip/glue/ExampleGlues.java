@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.javabip.api.BIPGlue;
+
+/**
+ * The glues of the examples, written by JAXB from the glue builders of org.javabip.spec.examples, and an empty glue.
+ */
+final class ExampleGlues {
+
+	static final String[] RESOURCES = { "hanoi.xml", "hanoi-optimal.xml", "hanoi-random.xml",
+			"dining-philosophers.xml" };
+
+	private ExampleGlues() {
+	}
+
+	/**
+	 * @return the glues by name, read by JAXB, the empty glue last.
+	 */
+	static Map<String, BIPGlue> glues() throws IOException {
+		Map<String, BIPGlue> glues = new LinkedHashMap<String, BIPGlue>();
+		for (String resource : RESOURCES) {
+			InputStream input = open(resource);
+			try {
+				glues.put(resource, GlueBuilder.fromXML(input));
+			} finally {
+				input.close();
+			}
+		}
+		glues.put("empty", new BIPGlueImpl());
+		return glues;
+	}
+
+	static InputStream open(String resource) {
+		InputStream input = ExampleGlues.class.getResourceAsStream(resource);
+		if (input == null) {
+			throw new IllegalStateException("The test resource " + resource + " is missing.");
+		}
+		return input;
+	}
+
+	static byte[] bytes(String resource) throws IOException {
+		InputStream input = open(resource);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * @return the xml form of the glue written by JAXB.
+	 */
+	static byte[] jaxb(BIPGlue glue) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		glue.toXML(output);
+		return output.toByteArray();
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.exceptions.BIPException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that GlueBinary reads back the glues it writes, whatever the source of the bytes, and that it rejects
+ * truncated or corrupted data with a BIPException.
+ */
+public class GlueBinaryTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripsThroughABuffer() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			BIPGlue read = GlueBinary.fromBinary(ByteBuffer.wrap(binary(glue.getValue())));
+			assertArrayEquals(glue.getKey(), ExampleGlues.jaxb(glue.getValue()), ExampleGlues.jaxb(read));
+		}
+	}
+
+	@Test
+	public void roundTripsThroughADirectBuffer() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			byte[] bytes = binary(glue.getValue());
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes).flip();
+			BIPGlue read = GlueBinary.fromBinary(buffer);
+			assertEquals(glue.getKey(), 0, buffer.position());
+			assertArrayEquals(glue.getKey(), ExampleGlues.jaxb(glue.getValue()), ExampleGlues.jaxb(read));
+		}
+	}
+
+	@Test
+	public void roundTripsThroughAStream() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			BIPGlue read = GlueBinary.fromBinary(new ByteArrayInputStream(binary(glue.getValue())));
+			assertArrayEquals(glue.getKey(), ExampleGlues.jaxb(glue.getValue()), ExampleGlues.jaxb(read));
+		}
+	}
+
+	@Test
+	public void roundTripsThroughAMappedFile() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			File file = folder.newFile();
+			FileOutputStream output = new FileOutputStream(file);
+			try {
+				GlueBinary.toBinary(glue.getValue(), output);
+			} finally {
+				output.close();
+			}
+			BIPGlue read = GlueBinary.fromBinary(file);
+			assertArrayEquals(glue.getKey(), ExampleGlues.jaxb(glue.getValue()), ExampleGlues.jaxb(read));
+		}
+	}
+
+	@Test
+	public void rejectsEveryTruncation() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			byte[] bytes = binary(glue.getValue());
+			for (int length = 0; length < bytes.length; length++) {
+				try {
+					GlueBinary.fromBinary(ByteBuffer.wrap(bytes, 0, length));
+					fail(glue.getKey() + " truncated to " + length + " bytes was read");
+				} catch (BIPException e) {
+					// expected.
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rejectsAWrongMagicNumber() throws IOException {
+		byte[] bytes = binary(hanoi());
+		bytes[0] ^= 1;
+		assertRejected(bytes, "does not hold a binary glue");
+	}
+
+	@Test
+	public void rejectsAnUnknownVersion() throws IOException {
+		byte[] bytes = binary(hanoi());
+		ByteBuffer.wrap(bytes).putInt(4, 2);
+		assertRejected(bytes, "version 2");
+	}
+
+	@Test
+	public void rejectsANegativeStringCount() throws IOException {
+		byte[] bytes = binary(hanoi());
+		ByteBuffer.wrap(bytes).putInt(8, -1);
+		assertRejected(bytes, "invalid size -1 at position 8");
+	}
+
+	@Test
+	public void rejectsAStringCountBeyondTheData() throws IOException {
+		byte[] bytes = binary(hanoi());
+		ByteBuffer.wrap(bytes).putInt(8, Integer.MAX_VALUE);
+		assertRejected(bytes, "invalid size " + Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void rejectsAStringLengthBeyondTheData() throws IOException {
+		byte[] bytes = binary(hanoi());
+		ByteBuffer.wrap(bytes).putInt(12, bytes.length);
+		assertRejected(bytes, "invalid size " + bytes.length + " at position 12");
+	}
+
+	@Test
+	public void rejectsAPortIndexBeyondTheStrings() throws IOException {
+		byte[] bytes = binary(hanoi());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int noOfStrings = buffer.getInt(8);
+		int position = 12;
+		for (int i = 0; i < noOfStrings; i++) {
+			position += 4 + buffer.getInt(position);
+		}
+		assertTrue(buffer.getInt(position) > 0);
+		buffer.putInt(position + 4, noOfStrings);
+		assertRejected(bytes, "invalid index " + noOfStrings + " at position " + (position + 4));
+	}
+
+	private static BIPGlue hanoi() throws IOException {
+		return ExampleGlues.glues().get(ExampleGlues.RESOURCES[0]);
+	}
+
+	private static byte[] binary(BIPGlue glue) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		GlueBinary.toBinary(glue, output);
+		return output.toByteArray();
+	}
+
+	private static void assertRejected(byte[] bytes, String message) {
+		try {
+			GlueBinary.fromBinary(ByteBuffer.wrap(bytes));
+			fail("the corrupted glue was read");
+		} catch (BIPException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+}
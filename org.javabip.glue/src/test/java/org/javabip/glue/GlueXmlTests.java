@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.glue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.javabip.api.BIPGlue;
+import org.javabip.exceptions.BIPException;
+import org.junit.Test;
+
+/**
+ * Checks that GlueXml reads and writes the same documents as JAXB.
+ */
+public class GlueXmlTests {
+
+	@Test
+	public void writesTheDocumentOfJAXB() throws IOException {
+		for (Map.Entry<String, BIPGlue> glue : ExampleGlues.glues().entrySet()) {
+			byte[] expected = ExampleGlues.jaxb(glue.getValue());
+			assertTrue(glue.getKey(), expected.length > 0);
+			assertArrayEquals(glue.getKey(), expected, stax(glue.getValue()));
+		}
+	}
+
+	@Test
+	public void readsTheDocumentOfJAXB() throws IOException {
+		for (String resource : ExampleGlues.RESOURCES) {
+			byte[] document = ExampleGlues.bytes(resource);
+			BIPGlue glue = GlueXml.fromXML(new ByteArrayInputStream(document));
+			assertArrayEquals(resource, document, ExampleGlues.jaxb(glue));
+		}
+	}
+
+	@Test
+	public void readsTheEmptyGlue() {
+		byte[] document = ExampleGlues.jaxb(new BIPGlueImpl());
+		BIPGlue glue = GlueXml.fromXML(new ByteArrayInputStream(document));
+		assertEquals(0, glue.getAcceptConstraints().size());
+		assertEquals(0, glue.getRequiresConstraints().size());
+		assertEquals(0, glue.getDataWires().size());
+		assertArrayEquals(document, ExampleGlues.jaxb(glue));
+	}
+
+	@Test(expected = BIPException.class)
+	public void rejectsATruncatedDocument() throws IOException {
+		byte[] document = ExampleGlues.bytes(ExampleGlues.RESOURCES[0]);
+		GlueXml.fromXML(new ByteArrayInputStream(document, 0, document.length / 2));
+	}
+
+	private static byte[] stax(BIPGlue glue) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		GlueXml.toXML(glue, output);
+		return output.toByteArray();
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import org.javabip.annotations.ComponentType;
+import org.javabip.annotations.Data;
+import org.javabip.annotations.Guard;
+import org.javabip.annotations.Port;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.annotations.Transitions;
+
+/**
+ * Generates, for every class annotated with ComponentType, a behaviour factory filling in the BehaviourBuilder the
+ * same way SpecificationParser does from the annotations at runtime. The annotations are validated while compiling, so
+ * that a missing port or guard is reported as a compilation error instead of an exception upon the creation of the
+ * executor.
+ * 
+ * The factory of the class a.b.Outer$Inner is the class a.b.Outer_Inner_BIPBehaviour extending
+ * org.javabip.executor.BehaviourFactory.
+ */
+@SupportedAnnotationTypes("org.javabip.annotations.ComponentType")
+public class BehaviourFactoryProcessor extends AbstractProcessor {
+
+	// It has to be the same as BehaviourFactory.SUFFIX, the executor is not a dependency of the processor.
+	private static final String SUFFIX = "_BIPBehaviour";
+
+	// Separator between method name and parameter number to generate default data in name, as in ReflectionHelper.
+	private static final String SEPARATOR = ".";
+
+	private static final Pattern GUARD_IDENTIFIER = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(ComponentType.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				continue;
+			}
+			TypeElement componentClass = (TypeElement) element;
+			String source = generate(componentClass);
+			if (source == null) {
+				continue;
+			}
+			String factoryName = factoryName(componentClass);
+			try {
+				Writer writer = processingEnv.getFiler().createSourceFile(factoryName, componentClass).openWriter();
+				try {
+					writer.write(source);
+				} finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR,
+						"Could not write the behaviour factory " + factoryName + ": " + e.getMessage(), componentClass);
+			}
+		}
+
+		// Other processors may be interested in the component types as well.
+		return false;
+	}
+
+	private String factoryName(TypeElement componentClass) {
+		return generatedName(processingEnv, componentClass, SUFFIX);
+	}
+
+	/*
+	 * The name of a class generated for the component class, in the package of the component class.
+	 */
+	static String generatedName(ProcessingEnvironment processingEnv, TypeElement componentClass, String suffix) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(componentClass).getQualifiedName()
+				.toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(componentClass).toString();
+		String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+		String generatedSimpleName = simpleName.replace('$', '_') + suffix;
+		return packageName.isEmpty() ? generatedSimpleName : packageName + "." + generatedSimpleName;
+	}
+
+	/*
+	 * Returns the source of the factory, or null if the annotations of the class are not valid. The errors are
+	 * reported to the messager.
+	 */
+	private String generate(TypeElement componentClass) {
+
+		boolean valid = true;
+		ComponentType componentType = componentClass.getAnnotation(ComponentType.class);
+		Ports classPorts = componentClass.getAnnotation(Ports.class);
+		if (classPorts == null) {
+			error(componentClass, "Port information for the BIP component is not specified.");
+			return null;
+		}
+
+		List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(
+				componentClass))) {
+			if (!hasBIPAnnotation(method)) {
+				continue;
+			}
+			// SpecificationParser only sees the public methods.
+			if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+				processingEnv.getMessager().printMessage(Kind.WARNING,
+						"The method " + method.getSimpleName() + " is not public, its BIP annotations are ignored.",
+						method);
+				continue;
+			}
+			methods.add(method);
+		}
+
+		Set<String> portNames = new HashSet<String>();
+		for (Port port : classPorts.value()) {
+			portNames.add(port.name());
+		}
+		Set<String> guardNames = new HashSet<String>();
+		for (ExecutableElement method : methods) {
+			for (Port port : methodPorts(method)) {
+				portNames.add(port.name());
+			}
+			Guard guard = method.getAnnotation(Guard.class);
+			if (guard != null) {
+				guardNames.add(guard.name());
+				TypeKind returnKind = method.getReturnType().getKind();
+				if (returnKind != TypeKind.BOOLEAN && !isType(method.getReturnType(), "java.lang.Boolean")) {
+					valid = error(method, "Guard method " + method.getSimpleName() + " should be a boolean function");
+				}
+			}
+			if (method.getAnnotation(Data.class) != null && method.getReturnType().getKind() == TypeKind.VOID) {
+				valid = error(method, "Data method " + method.getSimpleName() + " should return the data.");
+			}
+		}
+
+		for (ExecutableElement method : methods) {
+			for (Transition transition : transitions(method)) {
+				if (!transition.name().isEmpty() && !portNames.contains(transition.name())) {
+					valid = error(method, "In component " + componentType.name() + " transition " + transition.name()
+							+ " does not correspond to any port.");
+				}
+				Matcher matcher = GUARD_IDENTIFIER.matcher(transition.guard());
+				while (matcher.find()) {
+					if (!guardNames.contains(matcher.group())) {
+						valid = error(method, "The guard " + matcher.group() + " used by transition "
+								+ transition.name() + " is not defined in component " + componentType.name() + ".");
+					}
+				}
+			}
+		}
+
+		if (!valid) {
+			return null;
+		}
+
+		String factoryName = factoryName(componentClass);
+		int lastDot = factoryName.lastIndexOf('.');
+		StringBuilder source = new StringBuilder();
+		if (lastDot > 0) {
+			source.append("package ").append(factoryName.substring(0, lastDot)).append(";\n\n");
+		}
+		source.append("/**\n");
+		source.append(" * The behaviour factory of ").append(componentClass.getQualifiedName()).append(".\n");
+		source.append(" * Generated by ").append(getClass().getName()).append(", do not edit.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(factoryName.substring(lastDot + 1))
+				.append(" extends org.javabip.executor.BehaviourFactory {\n\n");
+		source.append("\tpublic org.javabip.executor.BehaviourBuilder create(Object component)\n");
+		source.append("\t\t\tthrows NoSuchMethodException {\n\n");
+		source.append("\t\tClass<?> componentClass = component.getClass();\n");
+		source.append("\t\torg.javabip.executor.BehaviourBuilder builder = new org.javabip.executor.BehaviourBuilder(component);\n");
+		source.append("\t\tjava.lang.reflect.Method method;\n");
+		source.append("\t\tjava.util.List<org.javabip.api.Data<?>> data;\n\n");
+		source.append("\t\tbuilder.setComponentType(").append(literal(componentType.name())).append(");\n");
+		source.append("\t\tbuilder.setInitialState(").append(literal(componentType.initial())).append(");\n");
+		for (Port port : classPorts.value()) {
+			source.append("\t\tbuilder.addPort(").append(literal(port.name())).append(", org.javabip.api.PortType.")
+					.append(port.type().name()).append(", ").append(literal(componentType.name())).append(");\n");
+		}
+
+		for (ExecutableElement method : methods) {
+			source.append("\n\t\tmethod = componentClass.getMethod(").append(literal(method.getSimpleName().toString()));
+			for (VariableElement parameter : method.getParameters()) {
+				source.append(", ").append(processingEnv.getTypeUtils().erasure(parameter.asType())).append(".class");
+			}
+			source.append(");\n");
+
+			List<Transition> transitions = transitions(method);
+			Guard guard = method.getAnnotation(Guard.class);
+			if (!transitions.isEmpty() || guard != null) {
+				appendData(source, method);
+			}
+			for (Transition transition : transitions) {
+				source.append("\t\tbuilder.addTransitionAndStates(").append(literal(transition.name())).append(", ")
+						.append(literal(transition.source())).append(", ").append(literal(transition.target()))
+						.append(", ").append(literal(transition.guard())).append(", method, data);\n");
+			}
+			if (guard != null) {
+				source.append("\t\tbuilder.addGuard(").append(literal(guard.name())).append(", method, data, ")
+						.append(guard.pure()).append(");\n");
+			}
+			Data data = method.getAnnotation(Data.class);
+			if (data != null) {
+				source.append("\t\tbuilder.addDataOut(method, ").append(literal(data.name()))
+						.append(", org.javabip.api.DataOut.AccessType.").append(data.accessTypePort().name())
+						.append(", new String[] {");
+				String separator = " ";
+				for (String port : data.ports()) {
+					source.append(separator).append(literal(port));
+					separator = ", ";
+				}
+				source.append(" }, ").append(data.cached()).append(");\n");
+			}
+			for (Port port : methodPorts(method)) {
+				source.append("\t\tbuilder.addPort(").append(literal(port.name()))
+						.append(", org.javabip.api.PortType.").append(port.type().name())
+						.append(", componentClass);\n");
+			}
+		}
+
+		source.append("\n\t\treturn builder;\n");
+		source.append("\t}\n\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/*
+	 * Data required by a transition or a guard, named by the Data annotation of the parameter or by default as in
+	 * ReflectionHelper.parseDataAnnotations.
+	 */
+	private void appendData(StringBuilder source, ExecutableElement method) {
+		source.append("\t\tdata = new java.util.ArrayList<org.javabip.api.Data<?>>();\n");
+		List<? extends VariableElement> parameters = method.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			VariableElement parameter = parameters.get(i);
+			String name = dataName(method, i);
+			source.append("\t\tdata.add(createData(").append(literal(name))
+					.append(", ").append(processingEnv.getTypeUtils().erasure(parameter.asType())).append(".class));\n");
+		}
+	}
+
+	/*
+	 * The name of the data given to the parameter of a transition or a guard.
+	 */
+	static String dataName(ExecutableElement method, int parameterIndex) {
+		Data data = method.getParameters().get(parameterIndex).getAnnotation(Data.class);
+		return data != null ? data.name() : method.getSimpleName() + SEPARATOR + parameterIndex;
+	}
+
+	private boolean hasBIPAnnotation(ExecutableElement method) {
+		return method.getAnnotation(Transition.class) != null || method.getAnnotation(Transitions.class) != null
+				|| method.getAnnotation(Guard.class) != null || method.getAnnotation(Data.class) != null
+				|| method.getAnnotation(Ports.class) != null || method.getAnnotation(Port.class) != null;
+	}
+
+	static List<Transition> transitions(ExecutableElement method) {
+		List<Transition> transitions = new ArrayList<Transition>();
+		Transition transition = method.getAnnotation(Transition.class);
+		if (transition != null) {
+			transitions.add(transition);
+		}
+		Transitions transitionsAnnotation = method.getAnnotation(Transitions.class);
+		if (transitionsAnnotation != null) {
+			for (Transition each : transitionsAnnotation.value()) {
+				transitions.add(each);
+			}
+		}
+		return transitions;
+	}
+
+	private List<Port> methodPorts(ExecutableElement method) {
+		List<Port> ports = new ArrayList<Port>();
+		Port port = method.getAnnotation(Port.class);
+		if (port != null) {
+			ports.add(port);
+		}
+		Ports portsAnnotation = method.getAnnotation(Ports.class);
+		if (portsAnnotation != null) {
+			for (Port each : portsAnnotation.value()) {
+				ports.add(each);
+			}
+		}
+		return ports;
+	}
+
+	private boolean isType(TypeMirror type, String qualifiedName) {
+		TypeElement element = processingEnv.getElementUtils().getTypeElement(qualifiedName);
+		return element != null && processingEnv.getTypeUtils().isSameType(type, element.asType());
+	}
+
+	private boolean error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+		return false;
+	}
+
+	static String literal(String value) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				literal.append("\\\"");
+				break;
+			case '\\':
+				literal.append("\\\\");
+				break;
+			case '\n':
+				literal.append("\\n");
+				break;
+			case '\r':
+				literal.append("\\r");
+				break;
+			case '\t':
+				literal.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					literal.append(String.format("\\u%04x", (int) c));
+				} else {
+					literal.append(c);
+				}
+			}
+		}
+		return literal.append('"').toString();
+	}
+
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import org.javabip.annotations.ComponentType;
+import org.javabip.annotations.Port;
+import org.javabip.annotations.Ports;
+import org.javabip.annotations.Transition;
+import org.javabip.api.PortType;
+
+/**
+ * Generates, for every class annotated with ComponentType which implements interfaces, the proxy which
+ * TunellingExecutorHandler would otherwise create with java.lang.reflect.Proxy. The proxy implements the interfaces of
+ * the class and OrchestratedExecutor. The methods of the interfaces implemented by a spontaneous transition of the
+ * class inform the executor of the spontaneous event, their arguments being the data of the event, the other methods of
+ * the interfaces are delegated to the component and the methods of OrchestratedExecutor to the executor. The proxy is
+ * thus a plain class whose calls the JIT can inline, without reflection nor boxing of the arguments into an array.
+ * 
+ * The proxy of the class a.b.Outer$Inner is the class a.b.Outer_Inner_BIPProxy. No proxy is generated if an interface
+ * is not accessible from the package of the class, TunellingExecutorHandler then falls back to the reflective proxy.
+ */
+@SupportedAnnotationTypes("org.javabip.annotations.ComponentType")
+public class ExecutorProxyProcessor extends AbstractProcessor {
+
+	// It has to be the same as TunellingExecutorHandler.PROXY_SUFFIX, the executor is not a dependency.
+	private static final String SUFFIX = "_BIPProxy";
+
+	private static final String EXECUTOR = "org.javabip.api.OrchestratedExecutor";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(ComponentType.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				continue;
+			}
+			TypeElement componentClass = (TypeElement) element;
+			if (componentClass.getInterfaces().isEmpty() || componentClass.getAnnotation(Ports.class) == null) {
+				continue;
+			}
+			String source = generate(componentClass);
+			if (source == null) {
+				continue;
+			}
+			String proxyName = BehaviourFactoryProcessor.generatedName(processingEnv, componentClass, SUFFIX);
+			try {
+				Writer writer = processingEnv.getFiler().createSourceFile(proxyName, componentClass).openWriter();
+				try {
+					writer.write(source);
+				} finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR,
+						"Could not write the executor proxy " + proxyName + ": " + e.getMessage(), componentClass);
+			}
+		}
+
+		// Other processors may be interested in the component types as well.
+		return false;
+	}
+
+	/*
+	 * Returns the source of the proxy, or null if the proxy can not be generated for the class.
+	 */
+	private String generate(TypeElement componentClass) {
+
+		Types types = processingEnv.getTypeUtils();
+		String packageName = processingEnv.getElementUtils().getPackageOf(componentClass).getQualifiedName()
+				.toString();
+
+		for (TypeMirror specInterface : componentClass.getInterfaces()) {
+			if (!isAccessible(((DeclaredType) specInterface).asElement(), packageName)) {
+				processingEnv.getMessager().printMessage(Kind.NOTE, "The interface " + specInterface
+						+ " is not accessible, the executor proxy of the component is created at runtime.",
+						componentClass);
+				return null;
+			}
+		}
+
+		// The spontaneous ports are given by the annotation of the class, as for TunellingExecutorHandler.
+		Set<String> spontaneousPorts = new HashSet<String>();
+		for (Port port : componentClass.getAnnotation(Ports.class).value()) {
+			if (port.type() == PortType.spontaneous) {
+				spontaneousPorts.add(port.name());
+			}
+		}
+		List<ExecutableElement> componentMethods = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(
+				componentClass))) {
+			if (method.getModifiers().contains(Modifier.PUBLIC)) {
+				componentMethods.add(method);
+			}
+		}
+
+		String proxyName = BehaviourFactoryProcessor.generatedName(processingEnv, componentClass, SUFFIX);
+		int lastDot = proxyName.lastIndexOf('.');
+		StringBuilder source = new StringBuilder();
+		if (lastDot > 0) {
+			source.append("package ").append(proxyName.substring(0, lastDot)).append(";\n\n");
+		}
+		source.append("/**\n");
+		source.append(" * The executor proxy of ").append(componentClass.getQualifiedName()).append(".\n");
+		source.append(" * Generated by ").append(getClass().getName()).append(", do not edit.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(proxyName.substring(lastDot + 1)).append(" implements ");
+		for (TypeMirror specInterface : componentClass.getInterfaces()) {
+			source.append(specInterface).append(", ");
+		}
+		source.append(EXECUTOR).append(" {\n\n");
+		source.append("\tprivate final ").append(EXECUTOR).append(" executor;\n\n");
+		source.append("\tprivate final Object component;\n\n");
+		source.append("\tpublic ").append(proxyName.substring(lastDot + 1)).append("(").append(EXECUTOR)
+				.append(" executor, Object component) {\n");
+		source.append("\t\tthis.executor = executor;\n");
+		source.append("\t\tthis.component = component;\n");
+		source.append("\t}\n");
+
+		/*
+		 * A method declared by several interfaces is implemented once, the first interface declaring it deciding how,
+		 * as for the reflective proxy where the interfaces of the component come before OrchestratedExecutor.
+		 */
+		Set<String> implemented = new HashSet<String>();
+		for (TypeMirror specInterface : componentClass.getInterfaces()) {
+			for (ExecutableElement method : abstractMethods((DeclaredType) specInterface)) {
+				ExecutableType type = (ExecutableType) types.asMemberOf((DeclaredType) specInterface, method);
+				if (!implemented.add(signature(method, type))) {
+					continue;
+				}
+				appendSignature(source, method, type);
+				ExecutableElement transition = spontaneousTransition(method, componentMethods, spontaneousPorts);
+				if (transition != null) {
+					appendTunneling(source, transition, spontaneousPort(transition, spontaneousPorts), type);
+				} else {
+					appendDelegation(source, "((" + types.erasure(specInterface) + ") component)", method, type);
+				}
+			}
+		}
+		TypeElement executorInterface = processingEnv.getElementUtils().getTypeElement(EXECUTOR);
+		if (executorInterface == null) {
+			return null;
+		}
+		DeclaredType executorType = (DeclaredType) executorInterface.asType();
+		for (ExecutableElement method : abstractMethods(executorType)) {
+			ExecutableType type = (ExecutableType) types.asMemberOf(executorType, method);
+			if (!implemented.add(signature(method, type))) {
+				continue;
+			}
+			appendSignature(source, method, type);
+			appendDelegation(source, "executor", method, type);
+		}
+
+		// As the reflective proxy, the proxy is equal to what the component is equal to.
+		source.append("\n\tpublic boolean equals(Object obj) {\n\t\treturn component.equals(obj);\n\t}\n");
+		source.append("\n\tpublic int hashCode() {\n\t\treturn component.hashCode();\n\t}\n");
+		source.append("\n\tpublic String toString() {\n\t\treturn component.toString();\n\t}\n\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/*
+	 * The abstract methods of the interface and of its super interfaces.
+	 */
+	private List<ExecutableElement> abstractMethods(DeclaredType specInterface) {
+		List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(
+				(TypeElement) specInterface.asElement()))) {
+			if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+
+	/*
+	 * The method of the component implementing the interface method if it is a spontaneous transition, matched by the
+	 * name and the parameter types as TunellingExecutorHandler does.
+	 */
+	private ExecutableElement spontaneousTransition(ExecutableElement method, List<ExecutableElement> componentMethods,
+			Set<String> spontaneousPorts) {
+		Types types = processingEnv.getTypeUtils();
+		for (ExecutableElement candidate : componentMethods) {
+			if (!candidate.getSimpleName().equals(method.getSimpleName())
+					|| candidate.getParameters().size() != method.getParameters().size()
+					|| spontaneousPort(candidate, spontaneousPorts) == null) {
+				continue;
+			}
+			boolean same = true;
+			for (int i = 0; i < method.getParameters().size(); i++) {
+				same &= types.isSameType(types.erasure(candidate.getParameters().get(i).asType()),
+						types.erasure(method.getParameters().get(i).asType()));
+			}
+			if (same) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * The spontaneous port of the transitions of the method, the last one if there are several.
+	 */
+	private String spontaneousPort(ExecutableElement method, Set<String> spontaneousPorts) {
+		String port = null;
+		for (Transition transition : BehaviourFactoryProcessor.transitions(method)) {
+			if (spontaneousPorts.contains(transition.name())) {
+				port = transition.name();
+			}
+		}
+		return port;
+	}
+
+	private void appendSignature(StringBuilder source, ExecutableElement method, ExecutableType type) {
+		source.append("\n\tpublic ");
+		if (!type.getTypeVariables().isEmpty()) {
+			source.append("<");
+			String separator = "";
+			for (TypeVariable variable : type.getTypeVariables()) {
+				source.append(separator).append(variable);
+				TypeMirror bound = variable.getUpperBound();
+				if (!isType(bound, "java.lang.Object")) {
+					source.append(" extends ").append(bound);
+				}
+				separator = ", ";
+			}
+			source.append("> ");
+		}
+		source.append(type.getReturnType()).append(" ").append(method.getSimpleName()).append("(");
+		List<? extends TypeMirror> parameters = type.getParameterTypes();
+		for (int i = 0; i < parameters.size(); i++) {
+			source.append(i == 0 ? "" : ", ").append(parameters.get(i)).append(" arg").append(i);
+		}
+		source.append(")");
+		String separator = " throws ";
+		for (TypeMirror thrown : type.getThrownTypes()) {
+			source.append(separator).append(thrown);
+			separator = ", ";
+		}
+		source.append(" {\n");
+	}
+
+	private void appendDelegation(StringBuilder source, String target, ExecutableElement method, ExecutableType type) {
+		source.append("\t\t");
+		if (type.getReturnType().getKind() != TypeKind.VOID) {
+			source.append("return ");
+		}
+		source.append(target).append(".").append(method.getSimpleName()).append("(");
+		for (int i = 0; i < type.getParameterTypes().size(); i++) {
+			source.append(i == 0 ? "" : ", ").append("arg").append(i);
+		}
+		source.append(");\n\t}\n");
+	}
+
+	/*
+	 * The arguments are named as the data of the transition, see ReflectionHelper.parseDataAnnotations.
+	 */
+	private void appendTunneling(StringBuilder source, ExecutableElement transition, String port, ExecutableType type) {
+		int noOfParameters = type.getParameterTypes().size();
+		if (noOfParameters == 0) {
+			source.append("\t\texecutor.inform(").append(BehaviourFactoryProcessor.literal(port)).append(");\n");
+		} else {
+			source.append("\t\tjava.util.Map<String, Object> data = new java.util.HashMap<String, Object>();\n");
+			for (int i = 0; i < noOfParameters; i++) {
+				source.append("\t\tdata.put(")
+						.append(BehaviourFactoryProcessor.literal(BehaviourFactoryProcessor.dataName(transition, i)))
+						.append(", arg").append(i).append(");\n");
+			}
+			source.append("\t\texecutor.inform(").append(BehaviourFactoryProcessor.literal(port))
+					.append(", data);\n");
+		}
+		if (type.getReturnType().getKind() != TypeKind.VOID) {
+			source.append("\t\treturn ").append(defaultValue(type.getReturnType())).append(";\n");
+		}
+		source.append("\t}\n");
+	}
+
+	/*
+	 * The value returned by a tunneled call, the reflective proxy returns null.
+	 */
+	private static String defaultValue(TypeMirror type) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+			return "false";
+		case CHAR:
+			return "'\\0'";
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+			return "(" + type + ") 0";
+		default:
+			return "null";
+		}
+	}
+
+	private String signature(ExecutableElement method, ExecutableType type) {
+		StringBuilder signature = new StringBuilder(method.getSimpleName());
+		for (TypeMirror parameter : type.getParameterTypes()) {
+			signature.append(',').append(processingEnv.getTypeUtils().erasure(parameter));
+		}
+		return signature.toString();
+	}
+
+	/*
+	 * Public types are accessible, as are the types of the package which are not private, their enclosing types
+	 * included.
+	 */
+	private boolean isAccessible(Element type, String packageName) {
+		Element element = type;
+		while (element.getKind() != ElementKind.PACKAGE) {
+			Set<Modifier> modifiers = element.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if (!modifiers.contains(Modifier.PUBLIC)
+					&& !processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().contentEquals(
+							packageName)) {
+				return false;
+			}
+			element = element.getEnclosingElement();
+		}
+		return true;
+	}
+
+	private boolean isType(TypeMirror type, String qualifiedName) {
+		TypeElement element = processingEnv.getElementUtils().getTypeElement(qualifiedName);
+		return element != null && processingEnv.getTypeUtils().isSameType(type, element.asType());
+	}
+
+}
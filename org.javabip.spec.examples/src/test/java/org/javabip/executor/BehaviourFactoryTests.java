@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2016 École polytechnique fédérale de Lausanne (EPFL), Switzerland
+ * Copyright 2012-2016 Crossing-Tech SA, Switzerland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author: Simon Bliudze, Anastasia Mavridou, Radoslaw Szymanek and Alina Zolotukhina
+ */
+package org.javabip.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.javabip.api.Data;
+import org.javabip.api.DataOut;
+import org.javabip.api.Guard;
+import org.javabip.api.Port;
+import org.javabip.spec.diningphilosophers.Fork;
+import org.junit.Test;
+
+/**
+ * Checks that the behaviour factories generated for the annotated components of the examples build the same behaviour
+ * template as the annotation parser: the states, the ports, the transitions with their guards and data, the guards
+ * and the data out with their ports. The components are found through their generated factories.
+ */
+public class BehaviourFactoryTests {
+
+	@Test
+	public void factoriesBuildTheTemplatesOfTheAnnotations() throws Exception {
+		List<String> components = generatedComponents();
+		assertFalse("No behaviour factory was generated for the examples.", components.isEmpty());
+		for (String componentName : components) {
+			Class<?> componentClass = Class.forName(componentName);
+			if (hasExecutableBehaviour(componentClass)) {
+				continue;
+			}
+			Object component = instantiate(componentClass);
+			BehaviourTemplate generated = SpecificationParser.factoryTemplate(component);
+			assertNotNull(componentName, generated);
+			assertEquals(componentName, describe(SpecificationParser.parseTemplate(component)), describe(generated));
+		}
+	}
+
+	/*
+	 * The components of the classes holding the examples, named after their generated factories.
+	 */
+	private static List<String> generatedComponents() throws Exception {
+		File classes = new File(Fork.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		List<String> result = new ArrayList<String>();
+		collect(classes, "", result);
+		Collections.sort(result);
+		return result;
+	}
+
+	private static void collect(File directory, String packagePrefix, List<String> result) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		String suffix = BehaviourFactory.SUFFIX + ".class";
+		for (File file : files) {
+			if (file.isDirectory()) {
+				collect(file, packagePrefix + file.getName() + ".", result);
+			} else if (file.getName().endsWith(suffix)) {
+				String name = file.getName();
+				result.add(packagePrefix + name.substring(0, name.length() - suffix.length()));
+			}
+		}
+	}
+
+	/*
+	 * The components giving their behaviour programmatically are not specified by their annotations, neither the
+	 * parser nor the factory builds a template for them.
+	 */
+	private static boolean hasExecutableBehaviour(Class<?> componentClass) {
+		for (Method method : componentClass.getMethods()) {
+			if (method.isAnnotationPresent(org.javabip.annotations.ExecutableBehaviour.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The template does not depend on the state of the component, the constructor with the fewest parameters is given
+	 * distinct numbers, false and names.
+	 */
+	private static Object instantiate(Class<?> componentClass) throws Exception {
+		Constructor<?> chosen = null;
+		for (Constructor<?> constructor : componentClass.getConstructors()) {
+			if (chosen == null || constructor.getParameterTypes().length < chosen.getParameterTypes().length) {
+				chosen = constructor;
+			}
+		}
+		assertNotNull("The component class " + componentClass.getName() + " has no public constructor.", chosen);
+		Class<?>[] types = chosen.getParameterTypes();
+		Object[] args = new Object[types.length];
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == int.class) {
+				args[i] = i + 1;
+			} else if (types[i] == boolean.class) {
+				args[i] = false;
+			} else if (types[i] == String.class) {
+				args[i] = "component" + i;
+			}
+		}
+		return chosen.newInstance(args);
+	}
+
+	/*
+	 * The template as sorted lines, so that the order in which the annotations and the factory declare the elements
+	 * does not matter.
+	 */
+	private static String describe(BehaviourTemplate template) {
+		StringBuilder result = new StringBuilder();
+		result.append("type ").append(template.componentType).append('\n');
+		result.append("initial ").append(template.initialState).append('\n');
+		result.append("states ").append(new TreeSet<String>(template.states)).append('\n');
+
+		List<String> lines = new ArrayList<String>();
+		for (Port port : template.ports) {
+			lines.add("port " + port.getId() + " " + port.getType() + " " + port.getSpecType());
+		}
+		for (ExecutableTransition transition : template.allTransitions) {
+			lines.add("transition " + transition.name() + " " + transition.source() + " -> " + transition.target()
+					+ " [" + transition.guard() + "] " + transition.getType() + " " + method(transition.method())
+					+ " " + data(transition.dataRequired()));
+		}
+		for (Guard guard : template.guards) {
+			lines.add("guard " + guard.name() + " " + method(((GuardImpl) guard).method()) + " "
+					+ data(guard.dataRequired()) + (((GuardImpl) guard).isPure() ? " pure" : ""));
+		}
+		for (DataOutImpl<?> dataOut : template.dataOut) {
+			TreeSet<String> ports = new TreeSet<String>();
+			for (Port port : dataOut.allowedPorts()) {
+				ports.add(port.getId());
+			}
+			lines.add("data out " + dataOut.name() + " " + dataOut.type().getName() + " " + dataOut.portAccessType()
+					+ " " + ports + (dataOut.isCached() ? " cached" : ""));
+		}
+		lines.add("data slots " + new TreeSet<String>(template.dataSlots.keySet()));
+		Collections.sort(lines);
+		for (String line : lines) {
+			result.append(line).append('\n');
+		}
+		return result.toString();
+	}
+
+	private static String method(Method method) {
+		if (method == null) {
+			return "-";
+		}
+		StringBuilder result = new StringBuilder(method.getName()).append('(');
+		for (Class<?> type : method.getParameterTypes()) {
+			result.append(type.getSimpleName()).append(' ');
+		}
+		return result.append(')').toString();
+	}
+
+	private static String data(Iterable<? extends Data<?>> data) {
+		List<String> result = new ArrayList<String>();
+		for (Data<?> item : data) {
+			result.add(item.name() + ":" + item.type().getName());
+		}
+		return result.toString();
+	}
+
+}